@@ -2,8 +2,10 @@ package com.restaurant.recommendation;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class RestaurantRecommendationApplication {
 
     public static void main(String[] args) {
@@ -1,8 +1,13 @@
 package com.restaurant.recommendation.controller;
 
+import com.restaurant.recommendation.dto.KeysetPage;
 import com.restaurant.recommendation.entity.Dish;
 import com.restaurant.recommendation.repository.DishRepository;
+import com.restaurant.recommendation.service.DishCatalogService;
+import com.restaurant.recommendation.service.DishIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
@@ -10,12 +15,21 @@ import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/dishes")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPage.NEXT_CURSOR_HEADER)
 public class DishController {
     
+    @Value("${recommendation.pagination.default-size:50}")
+    private int defaultPageSize;
+    
+    @Value("${recommendation.pagination.max-size:500}")
+    private int maxPageSize;
+    
     @Autowired
     private DishRepository dishRepository;
     
+    @Autowired
+    private DishCatalogService dishCatalogService;
+    
     /**
      * 创建菜品
      */
@@ -23,6 +37,7 @@ public class DishController {
     public ResponseEntity<Dish> createDish(@RequestBody Dish dish) {
         try {
             Dish savedDish = dishRepository.save(dish);
+            dishCatalogService.onDishSaved(savedDish);
             return ResponseEntity.ok(savedDish);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -30,12 +45,27 @@ public class DishController {
     }
     
     /**
-     * 获取所有菜品
+     * 分页获取菜品，按ID升序；下一页游标见 X-Next-Cursor 响应头
      */
     @GetMapping
-    public ResponseEntity<List<Dish>> getAllDishes() {
-        List<Dish> dishes = dishRepository.findAll();
-        return ResponseEntity.ok(dishes);
+    public ResponseEntity<List<Dish>> getAllDishes(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer limit) {
+        try {
+            int size = KeysetPage.limit(limit, defaultPageSize, maxPageSize);
+            long afterId = cursor != null ? KeysetPage.Cursor.decode(cursor).getId() : 0L;
+            List<Dish> dishes = dishRepository.findPageAfter(afterId, PageRequest.of(0, size + 1));
+            return KeysetPage.of(dishes, size, dish -> KeysetPage.Cursor.of(dish.getId())).toResponse();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 获取菜品总数（取自菜品目录快照）
+     */
+    @GetMapping("/count")
+    public ResponseEntity<Integer> getDishCount() {
+        return ResponseEntity.ok(dishCatalogService.current().size());
     }
     
     /**
@@ -53,7 +83,7 @@ public class DishController {
      */
     @GetMapping("/cuisine/{cuisine}")
     public ResponseEntity<List<Dish>> getDishesByCuisine(@PathVariable String cuisine) {
-        List<Dish> dishes = dishRepository.findByCuisine(cuisine);
+        List<Dish> dishes = dishCatalogService.findBy(DishIndex.Attribute.CUISINE, cuisine);
         return ResponseEntity.ok(dishes);
     }
     
@@ -62,7 +92,7 @@ public class DishController {
      */
     @GetMapping("/flavor/{flavor}")
     public ResponseEntity<List<Dish>> getDishesByFlavor(@PathVariable String flavor) {
-        List<Dish> dishes = dishRepository.findByFlavor(flavor);
+        List<Dish> dishes = dishCatalogService.findBy(DishIndex.Attribute.FLAVOR, flavor);
         return ResponseEntity.ok(dishes);
     }
     
@@ -73,7 +103,7 @@ public class DishController {
     public ResponseEntity<List<Dish>> getDishesByCaloriesRange(
             @RequestParam Double minCalories,
             @RequestParam Double maxCalories) {
-        List<Dish> dishes = dishRepository.findDishesByCaloriesRange(minCalories, maxCalories);
+        List<Dish> dishes = dishCatalogService.findByCaloriesRange(minCalories, maxCalories);
         return ResponseEntity.ok(dishes);
     }
     
@@ -83,7 +113,7 @@ public class DishController {
     @GetMapping("/high-protein")
     public ResponseEntity<List<Dish>> getHighProteinDishes(
             @RequestParam(defaultValue = "15.0") Double minProtein) {
-        List<Dish> dishes = dishRepository.findHighProteinDishes(minProtein);
+        List<Dish> dishes = dishCatalogService.findHighProtein(minProtein);
         return ResponseEntity.ok(dishes);
     }
     
@@ -93,7 +123,7 @@ public class DishController {
     @GetMapping("/low-fat")
     public ResponseEntity<List<Dish>> getLowFatDishes(
             @RequestParam(defaultValue = "10.0") Double maxFat) {
-        List<Dish> dishes = dishRepository.findLowFatDishes(maxFat);
+        List<Dish> dishes = dishCatalogService.findLowFat(maxFat);
         return ResponseEntity.ok(dishes);
     }
     
@@ -112,7 +142,7 @@ public class DishController {
      */
     @GetMapping("/dietary-tag/{tag}")
     public ResponseEntity<List<Dish>> getDishesByDietaryTag(@PathVariable String tag) {
-        List<Dish> dishes = dishRepository.findDishesByDietaryTag(tag);
+        List<Dish> dishes = dishCatalogService.findBy(DishIndex.Attribute.DIETARY_TAG, tag);
         return ResponseEntity.ok(dishes);
     }
     
@@ -121,7 +151,7 @@ public class DishController {
      */
     @GetMapping("/without-allergen/{allergen}")
     public ResponseEntity<List<Dish>> getDishesWithoutAllergen(@PathVariable String allergen) {
-        List<Dish> dishes = dishRepository.findDishesWithoutAllergen(allergen);
+        List<Dish> dishes = dishCatalogService.findWithout(DishIndex.Attribute.ALLERGEN, allergen);
         return ResponseEntity.ok(dishes);
     }
     
@@ -130,7 +160,26 @@ public class DishController {
      */
     @GetMapping("/for-disease/{disease}")
     public ResponseEntity<List<Dish>> getDishesForDisease(@PathVariable String disease) {
-        List<Dish> dishes = dishRepository.findDishesForDisease(disease);
+        List<Dish> dishes = dishCatalogService.findBy(DishIndex.Attribute.HEALTH_BENEFIT, disease);
+        return ResponseEntity.ok(dishes);
+    }
+    
+    /**
+     * 组合条件检索菜品：同一条件的多个取值满足其一即可（饮食标签需全部满足），不同条件及营养区间同时满足
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<Dish>> searchDishes(
+            @RequestParam(required = false) List<String> cuisine,
+            @RequestParam(required = false) List<String> flavor,
+            @RequestParam(required = false) List<String> tag,
+            @RequestParam(required = false) List<String> disease,
+            @RequestParam(required = false) List<String> excludeAllergen,
+            @RequestParam(required = false) Double minCalories,
+            @RequestParam(required = false) Double maxCalories,
+            @RequestParam(required = false) Double minProtein,
+            @RequestParam(required = false) Double maxFat) {
+        List<Dish> dishes = dishCatalogService.search(cuisine, flavor, tag, disease, excludeAllergen,
+                minCalories, maxCalories, minProtein, maxFat);
         return ResponseEntity.ok(dishes);
     }
     
@@ -196,6 +245,7 @@ public class DishController {
             }
             
             Dish updatedDish = dishRepository.save(dish);
+            dishCatalogService.onDishSaved(updatedDish);
             return ResponseEntity.ok(updatedDish);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -212,6 +262,7 @@ public class DishController {
                 return ResponseEntity.notFound().build();
             }
             dishRepository.deleteById(id);
+            dishCatalogService.onDishDeleted(id);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
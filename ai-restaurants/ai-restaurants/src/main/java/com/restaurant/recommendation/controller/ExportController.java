@@ -0,0 +1,40 @@
+package com.restaurant.recommendation.controller;
+
+import com.restaurant.recommendation.service.ColumnarExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/export")
+@CrossOrigin(origins = "*")
+public class ExportController {
+
+    @Autowired
+    private ColumnarExportService columnarExportService;
+
+    /**
+     * 将推荐记录、营养报告导出为本地列式文件（异步执行）；默认从上次导出的高水位增量导出全部表
+     */
+    @PostMapping("/run")
+    public ResponseEntity<String> runExport(@RequestParam(required = false) String table,
+                                            @RequestParam(defaultValue = "false") boolean full) {
+        try {
+            if (columnarExportService.trigger(table, full)) {
+                return ResponseEntity.ok("导出任务已启动");
+            }
+            return ResponseEntity.badRequest().body("导出任务正在运行");
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 导出状态：各表的高水位和最近一次导出结果
+     */
+    @GetMapping("/status")
+    public ResponseEntity<Map<String, Object>> getExportStatus() {
+        return ResponseEntity.ok(columnarExportService.getStatus());
+    }
+}
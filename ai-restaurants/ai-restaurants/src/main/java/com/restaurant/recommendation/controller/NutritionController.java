@@ -1,61 +1,125 @@
 package com.restaurant.recommendation.controller;
 
+import com.restaurant.recommendation.dto.KeysetPage;
+import com.restaurant.recommendation.dto.MealLogRequest;
 import com.restaurant.recommendation.entity.Dish;
+import com.restaurant.recommendation.entity.MealEvent;
 import com.restaurant.recommendation.entity.NutritionReport;
-import com.restaurant.recommendation.repository.DishRepository;
+import com.restaurant.recommendation.entity.NutritionRollup;
+import com.restaurant.recommendation.service.DishCatalogService;
+import com.restaurant.recommendation.service.HealthRulesService;
 import com.restaurant.recommendation.service.NutritionAnalysisService;
+import com.restaurant.recommendation.service.NutritionCohortService;
+import com.restaurant.recommendation.service.NutritionReportBatchService;
+import com.restaurant.recommendation.service.NutritionRollupService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/nutrition")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPage.NEXT_CURSOR_HEADER)
 public class NutritionController {
     
+    @Value("${recommendation.pagination.default-size:50}")
+    private int defaultPageSize;
+    
+    @Value("${recommendation.pagination.max-size:500}")
+    private int maxPageSize;
+    
     @Autowired
     private NutritionAnalysisService nutritionAnalysisService;
     
     @Autowired
-    private DishRepository dishRepository;
+    private DishCatalogService dishCatalogService;
+    
+    @Autowired
+    private HealthRulesService healthRulesService;
+    
+    @Autowired
+    private NutritionReportBatchService nutritionReportBatchService;
+    
+    @Autowired
+    private NutritionRollupService nutritionRollupService;
+    
+    @Autowired
+    private NutritionCohortService nutritionCohortService;
     
     /**
-     * 生成营养分析报告
+     * 生成营养分析报告，提交的菜品清单替换当天上次提交的清单；lang 指定警告和建议文本的语言（如 en），默认中文
      */
     @PostMapping("/report/{userId}")
     public ResponseEntity<NutritionReport> generateNutritionReport(
             @PathVariable Long userId,
             @RequestBody List<Long> dishIds,
-            @RequestParam(required = false) String reportDate) {
+            @RequestParam(required = false) String reportDate,
+            @RequestParam(required = false) String lang) {
         try {
-            List<Dish> dishes = dishIds.stream()
-                    .map(id -> dishRepository.findById(id))
-                    .filter(opt -> opt.isPresent())
-                    .map(opt -> opt.get())
-                    .collect(Collectors.toList());
+            List<Dish> dishes = dishCatalogService.resolve(dishIds);
             
             LocalDateTime date = reportDate != null ? 
                 LocalDateTime.parse(reportDate) : LocalDateTime.now();
             
             NutritionReport report = nutritionAnalysisService
                     .generateNutritionReport(userId, dishes, date);
-            return ResponseEntity.ok(report);
+            return ResponseEntity.ok(healthRulesService.render(report, lang));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 记录一次用餐，返回增量更新后的当日营养报告
+     */
+    @PostMapping("/meals/{userId}")
+    public ResponseEntity<NutritionReport> logMeal(@PathVariable Long userId,
+                                                   @RequestBody MealLogRequest request,
+                                                   @RequestParam(required = false) String lang) {
+        try {
+            double servings = request.getServings() != null ? request.getServings() : 1.0;
+            LocalDateTime consumedAt = request.getConsumedAt() != null ?
+                LocalDateTime.parse(request.getConsumedAt()) : LocalDateTime.now();
+            
+            NutritionReport report = nutritionAnalysisService.logMeal(
+                    userId, request.getDishId(), servings, request.getMealType(), consumedAt);
+            return ResponseEntity.ok(healthRulesService.render(report, lang));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 获取用户某天的用餐记录，默认当天
+     */
+    @GetMapping("/meals/{userId}")
+    public ResponseEntity<List<MealEvent>> getMeals(@PathVariable Long userId,
+                                                    @RequestParam(required = false) String date) {
+        try {
+            LocalDate day = date != null ? LocalDate.parse(date) : LocalDate.now();
+            return ResponseEntity.ok(nutritionAnalysisService.getMealEvents(userId, day));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
     
     /**
-     * 获取用户营养报告历史
+     * 分页获取用户营养报告历史，按报告日期降序；下一页游标见 X-Next-Cursor 响应头
      */
     @GetMapping("/history/{userId}")
-    public ResponseEntity<List<NutritionReport>> getNutritionHistory(@PathVariable Long userId) {
+    public ResponseEntity<List<NutritionReport>> getNutritionHistory(@PathVariable Long userId,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) Integer limit,
+                                                                     @RequestParam(required = false) String lang) {
         try {
-            List<NutritionReport> history = nutritionAnalysisService.getUserNutritionHistory(userId);
-            return ResponseEntity.ok(history);
+            KeysetPage<NutritionReport> page = nutritionAnalysisService.getUserNutritionHistory(userId, cursor,
+                    KeysetPage.limit(limit, defaultPageSize, maxPageSize));
+            healthRulesService.render(page.getItems(), lang);
+            return page.toResponse();
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -75,19 +139,133 @@ public class NutritionController {
     }
     
     /**
-     * 快速生成今日营养报告（使用示例菜品）
+     * 统计用户日期范围内（含首尾）的营养摄入与健康得分，默认最近30天
+     */
+    @GetMapping("/summary/{userId}")
+    public ResponseEntity<Map<String, Object>> getNutritionSummary(@PathVariable Long userId,
+                                                                   @RequestParam(required = false) String start,
+                                                                   @RequestParam(required = false) String end) {
+        try {
+            LocalDate endDay = end != null ? LocalDate.parse(end) : LocalDate.now();
+            LocalDate startDay = start != null ? LocalDate.parse(start) : endDay.minusDays(29);
+            return ResponseEntity.ok(nutritionAnalysisService.getUserNutritionSummary(userId, startDay, endDay));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 查看用户的周或月汇总，默认最近一年的月汇总
+     */
+    @GetMapping("/rollups/{userId}")
+    public ResponseEntity<List<NutritionRollup>> getNutritionRollups(@PathVariable Long userId,
+                                                                     @RequestParam(defaultValue = NutritionRollup.MONTH) String granularity,
+                                                                     @RequestParam(required = false) String start,
+                                                                     @RequestParam(required = false) String end) {
+        try {
+            LocalDate endDay = end != null ? LocalDate.parse(end) : LocalDate.now();
+            LocalDate startDay = start != null ? LocalDate.parse(start) : endDay.minusYears(1);
+            return ResponseEntity.ok(nutritionRollupService.getRollups(userId, granularity.toUpperCase(), startDay, endDay));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 统计分群用户命中某条健康规则条件的用户和天数占比，默认本周
+     * 例如 rule=hypertension-sodium 统计高血压用户钠摄入超标的占比
+     */
+    @GetMapping("/cohorts/rule-share")
+    public ResponseEntity<Map<String, Object>> getCohortRuleShare(@RequestParam String rule,
+                                                                  @RequestParam(required = false) String dimension,
+                                                                  @RequestParam(required = false) String value,
+                                                                  @RequestParam(required = false) String start,
+                                                                  @RequestParam(required = false) String end) {
+        try {
+            LocalDate endDay = end != null ? LocalDate.parse(end) : LocalDate.now();
+            LocalDate startDay = start != null ? LocalDate.parse(start)
+                    : endDay.minusDays(endDay.getDayOfWeek().getValue() - 1);
+            return ResponseEntity.ok(nutritionCohortService.ruleShare(rule, dimension, value, startDay, endDay));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 统计各分群的健康得分分布，默认最近30天
+     * 例如 dimension=cuisine 按喜欢的菜系分组
+     */
+    @GetMapping("/cohorts/score-histogram")
+    public ResponseEntity<Map<String, Object>> getCohortScoreHistogram(@RequestParam(required = false) String dimension,
+                                                                       @RequestParam(required = false) String value,
+                                                                       @RequestParam(required = false) String start,
+                                                                       @RequestParam(required = false) String end) {
+        try {
+            LocalDate endDay = end != null ? LocalDate.parse(end) : LocalDate.now();
+            LocalDate startDay = start != null ? LocalDate.parse(start) : endDay.minusDays(29);
+            return ResponseEntity.ok(nutritionCohortService.scoreHistogram(dimension, value, startDay, endDay));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 查看当前生效的健康评估规则
+     */
+    @GetMapping("/rules")
+    public ResponseEntity<List<Map<String, Object>>> getHealthRules() {
+        return ResponseEntity.ok(healthRulesService.current().describe());
+    }
+    
+    /**
+     * 重新加载健康评估规则
+     */
+    @PostMapping("/rules/reload")
+    public ResponseEntity<List<Map<String, Object>>> reloadHealthRules() {
+        try {
+            return ResponseEntity.ok(healthRulesService.reload().describe());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 按用餐记录批量重算某天全部用户的营养报告（异步执行），默认前一天
+     */
+    @PostMapping("/batch/run")
+    public ResponseEntity<String> runReportBatch(@RequestParam(required = false) String date) {
+        try {
+            LocalDate day = date != null ? LocalDate.parse(date) : LocalDate.now().minusDays(1);
+            if (nutritionReportBatchService.trigger(day)) {
+                return ResponseEntity.ok("营养报告批量任务已启动");
+            }
+            return ResponseEntity.badRequest().body("营养报告批量任务正在运行");
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 营养报告批量任务状态
+     */
+    @GetMapping("/batch/status")
+    public ResponseEntity<Map<String, Object>> getReportBatchStatus() {
+        return ResponseEntity.ok(nutritionReportBatchService.getStatus());
+    }
+    
+    /**
+     * 快速预览今日营养报告（使用示例菜品），不记录用餐也不修改当日报告
      */
     @PostMapping("/quick-report/{userId}")
-    public ResponseEntity<NutritionReport> generateQuickReport(@PathVariable Long userId) {
+    public ResponseEntity<NutritionReport> generateQuickReport(@PathVariable Long userId,
+                                                               @RequestParam(required = false) String lang) {
         try {
             // 获取一些示例菜品来生成报告
-            List<Dish> sampleDishes = dishRepository.findAll().stream()
-                    .limit(3)
-                    .collect(Collectors.toList());
+            List<Dish> sampleDishes = dishCatalogService.sample(3);
             
             NutritionReport report = nutritionAnalysisService
-                    .generateNutritionReport(userId, sampleDishes, LocalDateTime.now());
-            return ResponseEntity.ok(report);
+                    .previewNutritionReport(userId, sampleDishes, LocalDateTime.now());
+            return ResponseEntity.ok(healthRulesService.render(report, lang));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
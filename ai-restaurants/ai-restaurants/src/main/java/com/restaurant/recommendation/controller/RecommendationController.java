@@ -1,21 +1,81 @@
 package com.restaurant.recommendation.controller;
 
+import com.restaurant.recommendation.dto.FeedbackEvent;
+import com.restaurant.recommendation.dto.KeysetPage;
 import com.restaurant.recommendation.dto.RecommendationRequest;
 import com.restaurant.recommendation.entity.Recommendation;
+import com.restaurant.recommendation.service.EngagementCounterService;
+import com.restaurant.recommendation.service.FeedbackIngestionService;
+import com.restaurant.recommendation.service.ItemSimilarityService;
+import com.restaurant.recommendation.service.RecommendationCache;
+import com.restaurant.recommendation.service.RecommendationMaterializationService;
 import com.restaurant.recommendation.service.RecommendationService;
+import com.restaurant.recommendation.service.RecommendationWriteBehindService;
+import com.restaurant.recommendation.service.ScoringWeights;
+import com.restaurant.recommendation.service.ScoringWeightsService;
+import com.restaurant.recommendation.service.UserProfileService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/recommendations")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPage.NEXT_CURSOR_HEADER)
 public class RecommendationController {
     
+    @Value("${recommendation.pagination.default-size:50}")
+    private int defaultPageSize;
+    
+    @Value("${recommendation.pagination.max-size:500}")
+    private int maxPageSize;
+    
     @Autowired
     private RecommendationService recommendationService;
     
+    @Autowired
+    private RecommendationCache recommendationCache;
+    
+    @Autowired
+    private RecommendationMaterializationService materializationService;
+    
+    @Autowired
+    private UserProfileService userProfileService;
+    
+    @Autowired
+    private ScoringWeightsService scoringWeightsService;
+    
+    @Autowired
+    private ItemSimilarityService itemSimilarityService;
+    
+    @Autowired
+    private FeedbackIngestionService feedbackIngestionService;
+    
+    @Autowired
+    private RecommendationWriteBehindService writeBehindService;
+    
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private AsyncTaskExecutor taskExecutor;
+    
     /**
      * 获取个性化推荐
      */
@@ -31,20 +91,103 @@ public class RecommendationController {
     }
     
     /**
-     * 获取用户推荐历史
+     * 流式获取个性化推荐（NDJSON），每行一条推荐记录，按得分降序边生成边输出
+     */
+    @PostMapping(value = "/generate/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRecommendations(@RequestBody RecommendationRequest request) {
+        try {
+            // 输出开始后无法再返回错误状态，先校验用户
+            userProfileService.getProfile(request.getUserId());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> recommendationService.streamRecommendations(request, chunk -> {
+            for (Recommendation recommendation : chunk) {
+                writeLine(out, recommendation);
+            }
+            flush(out);
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+    
+    /**
+     * 流式获取个性化推荐（SSE），每条推荐作为一个 recommendation 事件，结束时发送 complete 事件
+     */
+    @PostMapping(value = "/generate/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamRecommendationEvents(@RequestBody RecommendationRequest request) {
+        try {
+            userProfileService.getProfile(request.getUserId());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+        SseEmitter emitter = new SseEmitter();
+        taskExecutor.execute(() -> {
+            try {
+                recommendationService.streamRecommendations(request, chunk -> {
+                    for (Recommendation recommendation : chunk) {
+                        try {
+                            emitter.send(SseEmitter.event().name("recommendation").data(recommendation));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+                emitter.send(SseEmitter.event().name("complete").data(""));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return ResponseEntity.ok(emitter);
+    }
+    
+    /**
+     * 批量生成推荐，返回结果与请求顺序一一对应
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<List<Recommendation>>> generateBatchRecommendations(
+            @RequestBody List<RecommendationRequest> requests) {
+        try {
+            return ResponseEntity.ok(recommendationService.generateBatchRecommendations(requests));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 流式批量生成推荐（NDJSON），每个用户完成后输出一行 {"index": 请求序号, "recommendations": [...]}
+     */
+    @PostMapping(value = "/batch/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamBatchRecommendations(
+            @RequestBody List<RecommendationRequest> requests) {
+        StreamingResponseBody body = out -> recommendationService.streamBatchRecommendations(requests,
+                (index, recommendations) -> {
+                    Map<String, Object> line = new LinkedHashMap<>();
+                    line.put("index", index);
+                    line.put("recommendations", recommendations);
+                    writeLine(out, line);
+                    flush(out);
+                });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+    
+    /**
+     * 分页获取用户推荐历史，按推荐时间降序；下一页游标见 X-Next-Cursor 响应头
      */
     @GetMapping("/history/{userId}")
-    public ResponseEntity<List<Recommendation>> getRecommendationHistory(@PathVariable Long userId) {
+    public ResponseEntity<List<Recommendation>> getRecommendationHistory(@PathVariable Long userId,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(required = false) Integer limit) {
         try {
-            List<Recommendation> history = recommendationService.getUserRecommendationHistory(userId);
-            return ResponseEntity.ok(history);
+            return recommendationService.getUserRecommendationHistory(userId, cursor,
+                    KeysetPage.limit(limit, defaultPageSize, maxPageSize)).toResponse();
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
     
     /**
-     * 更新推荐反馈
+     * 更新推荐反馈，与批量提交的反馈经同一服务按到达顺序写入；未提供的评分和文字反馈保持原值
      */
     @PutMapping("/{recommendationId}/feedback")
     public ResponseEntity<String> updateFeedback(
@@ -54,14 +197,62 @@ public class RecommendationController {
             @RequestParam(required = false) Integer rating,
             @RequestParam(required = false) String feedback) {
         try {
-            recommendationService.updateRecommendationFeedback(
-                recommendationId, clicked, ordered, rating, feedback);
+            // 正反馈状态变化时由反馈服务使该用户的推荐缓存和离线物化结果失效
+            feedbackIngestionService.applyNow(
+                new FeedbackEvent(recommendationId, clicked, ordered, rating, feedback));
             return ResponseEntity.ok("反馈更新成功");
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("更新失败：" + e.getMessage());
         }
     }
     
+    /**
+     * 批量提交反馈事件：事件按推荐记录合并后异步批量写入，返回接收数和当前队列状态
+     */
+    @PostMapping("/feedback/batch")
+    public ResponseEntity<Map<String, Object>> submitFeedbackBatch(@RequestBody List<FeedbackEvent> events) {
+        try {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("accepted", feedbackIngestionService.submit(events));
+            result.putAll(feedbackIngestionService.getStats());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 获取反馈批量写入的队列深度与延迟统计
+     */
+    @GetMapping("/feedback/stats")
+    public ResponseEntity<Map<String, Object>> getFeedbackStats() {
+        return ResponseEntity.ok(feedbackIngestionService.getStats());
+    }
+    
+    /**
+     * 获取推荐记录异步写入的队列深度、重试与死信统计
+     */
+    @GetMapping("/write-behind/stats")
+    public ResponseEntity<Map<String, Object>> getWriteBehindStats() {
+        return ResponseEntity.ok(writeBehindService.getStats());
+    }
+    
+    /**
+     * 获取用户的推荐曝光、点击、下单次数及点击率、转化率
+     */
+    @GetMapping("/engagement/user/{userId}")
+    public ResponseEntity<Map<String, Object>> getUserEngagement(@PathVariable Long userId) {
+        return ResponseEntity.ok(engagementCounterService.getUserStats(userId));
+    }
+    
+    /**
+     * 获取菜品的推荐曝光、点击、下单次数及点击率、转化率
+     */
+    @GetMapping("/engagement/dish/{dishId}")
+    public ResponseEntity<Map<String, Object>> getDishEngagement(@PathVariable Long dishId) {
+        return ResponseEntity.ok(engagementCounterService.getDishStats(dishId));
+    }
+    
     /**
      * 简化版推荐接口 - 只需要用户ID
      */
@@ -74,10 +265,109 @@ public class RecommendationController {
             request.setUserId(userId);
             request.setCount(count);
             
-            List<Recommendation> recommendations = recommendationService.generateRecommendations(request);
+            // 优先使用离线物化的排序结果，不可用时实时计算
+            List<Recommendation> recommendations = null;
+            long[] ranking = materializationService.lookup(userId, count);
+            if (ranking != null) {
+                recommendations = recommendationService.generateFromRanking(request, ranking);
+            }
+            if (recommendations == null) {
+                recommendations = recommendationService.generateRecommendations(request);
+            }
             return ResponseEntity.ok(recommendations);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 获取推荐结果缓存统计
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(recommendationCache.getStats());
+    }
+    
+    /**
+     * 获取协同过滤模型统计
+     */
+    @GetMapping("/similarity/stats")
+    public ResponseEntity<Map<String, Object>> getSimilarityStats() {
+        return ResponseEntity.ok(itemSimilarityService.getStats());
+    }
+    
+    /**
+     * 手动触发推荐物化任务
+     */
+    @PostMapping("/materialization/run")
+    public ResponseEntity<String> runMaterialization() {
+        if (materializationService.trigger()) {
+            return ResponseEntity.ok("物化任务已启动");
+        }
+        return ResponseEntity.badRequest().body("物化任务正在运行");
+    }
+    
+    /**
+     * 获取推荐物化任务状态
+     */
+    @GetMapping("/materialization/status")
+    public ResponseEntity<Map<String, Object>> getMaterializationStatus() {
+        return ResponseEntity.ok(materializationService.getStatus());
+    }
+    
+    /**
+     * 获取评分权重组及当前生效的权重组
+     */
+    @GetMapping("/weights")
+    public ResponseEntity<Map<String, Object>> getScoringWeights() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("active", scoringWeightsService.current().getName());
+        Map<String, Object> sets = new LinkedHashMap<>();
+        for (ScoringWeights weights : scoringWeightsService.getWeightSets().values()) {
+            sets.put(weights.getName(), weights.toMap());
+        }
+        result.put("sets", sets);
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * 切换生效的评分权重组
+     */
+    @PutMapping("/weights/active/{name}")
+    public ResponseEntity<Map<String, Double>> activateScoringWeights(@PathVariable String name) {
+        try {
+            return ResponseEntity.ok(scoringWeightsService.activate(name).toMap());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 重新加载评分权重配置
+     */
+    @PostMapping("/weights/reload")
+    public ResponseEntity<Map<String, Double>> reloadScoringWeights() {
+        try {
+            return ResponseEntity.ok(scoringWeightsService.reload().toMap());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private void flush(OutputStream out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
\ No newline at end of file
@@ -1,8 +1,14 @@
 package com.restaurant.recommendation.controller;
 
+import com.restaurant.recommendation.dto.KeysetPage;
 import com.restaurant.recommendation.entity.User;
 import com.restaurant.recommendation.repository.UserRepository;
+import com.restaurant.recommendation.service.RecommendationCache;
+import com.restaurant.recommendation.service.RecommendationMaterializationService;
+import com.restaurant.recommendation.service.UserProfileService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
@@ -10,12 +16,27 @@ import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/users")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPage.NEXT_CURSOR_HEADER)
 public class UserController {
     
+    @Value("${recommendation.pagination.default-size:50}")
+    private int defaultPageSize;
+    
+    @Value("${recommendation.pagination.max-size:500}")
+    private int maxPageSize;
+    
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private UserProfileService userProfileService;
+    
+    @Autowired
+    private RecommendationCache recommendationCache;
+    
+    @Autowired
+    private RecommendationMaterializationService materializationService;
+    
     /**
      * 创建用户
      */
@@ -38,12 +59,27 @@ public class UserController {
     }
     
     /**
-     * 获取所有用户
+     * 分页获取用户，按ID升序；下一页游标见 X-Next-Cursor 响应头
      */
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userRepository.findAll();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<List<User>> getAllUsers(@RequestParam(required = false) String cursor,
+                                                  @RequestParam(required = false) Integer limit) {
+        try {
+            int size = KeysetPage.limit(limit, defaultPageSize, maxPageSize);
+            long afterId = cursor != null ? KeysetPage.Cursor.decode(cursor).getId() : 0L;
+            List<User> users = userRepository.findPageAfter(afterId, PageRequest.of(0, size + 1));
+            return KeysetPage.of(users, size, user -> KeysetPage.Cursor.of(user.getId())).toResponse();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * 获取用户总数
+     */
+    @GetMapping("/count")
+    public ResponseEntity<Long> getUserCount() {
+        return ResponseEntity.ok(userRepository.count());
     }
     
     /**
@@ -122,6 +158,9 @@ public class UserController {
             }
             
             User updatedUser = userRepository.save(user);
+            userProfileService.invalidate(id);
+            recommendationCache.invalidateUser(id);
+            materializationService.evict(id);
             return ResponseEntity.ok(updatedUser);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -138,6 +177,9 @@ public class UserController {
                 return ResponseEntity.notFound().build();
             }
             userRepository.deleteById(id);
+            userProfileService.invalidate(id);
+            recommendationCache.invalidateUser(id);
+            materializationService.evict(id);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
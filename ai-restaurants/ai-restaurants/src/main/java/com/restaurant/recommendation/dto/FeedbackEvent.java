@@ -0,0 +1,49 @@
+package com.restaurant.recommendation.dto;
+
+/**
+ * 推荐反馈事件，未提供的字段保持原值不变
+ */
+public class FeedbackEvent {
+    private Long recommendationId;
+    private Boolean clicked;
+    private Boolean ordered;
+    private Integer rating;
+    private String feedback;
+
+    public FeedbackEvent() {}
+
+    public FeedbackEvent(Long recommendationId, Boolean clicked, Boolean ordered, Integer rating, String feedback) {
+        this.recommendationId = recommendationId;
+        this.clicked = clicked;
+        this.ordered = ordered;
+        this.rating = rating;
+        this.feedback = feedback;
+    }
+
+    /**
+     * 合并同一推荐记录的后续事件：后到事件中提供的字段覆盖先前的取值
+     */
+    public FeedbackEvent merge(FeedbackEvent later) {
+        return new FeedbackEvent(recommendationId,
+                later.clicked != null ? later.clicked : clicked,
+                later.ordered != null ? later.ordered : ordered,
+                later.rating != null ? later.rating : rating,
+                later.feedback != null ? later.feedback : feedback);
+    }
+
+    // Getters and Setters
+    public Long getRecommendationId() { return recommendationId; }
+    public void setRecommendationId(Long recommendationId) { this.recommendationId = recommendationId; }
+
+    public Boolean getClicked() { return clicked; }
+    public void setClicked(Boolean clicked) { this.clicked = clicked; }
+
+    public Boolean getOrdered() { return ordered; }
+    public void setOrdered(Boolean ordered) { this.ordered = ordered; }
+
+    public Integer getRating() { return rating; }
+    public void setRating(Integer rating) { this.rating = rating; }
+
+    public String getFeedback() { return feedback; }
+    public void setFeedback(String feedback) { this.feedback = feedback; }
+}
@@ -0,0 +1,98 @@
+package com.restaurant.recommendation.dto;
+
+import org.springframework.http.ResponseEntity;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 键集分页的一页结果
+ * 查询时多取一条判断是否还有下一页；下一页游标为本页最后一条记录的排序键（时间 + 主键，或仅主键），
+ * 编码为 URL 安全的 Base64 字符串。响应体仍是数组，游标通过 X-Next-Cursor 响应头返回，没有下一页时不返回该头
+ */
+public class KeysetPage<T> {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    private KeysetPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * 由按 limit + 1 条查询的结果构建一页，cursorOf 生成最后一条记录的游标
+     */
+    public static <T> KeysetPage<T> of(List<T> fetched, int limit, Function<T, Cursor> cursorOf) {
+        if (fetched.size() <= limit) {
+            return new KeysetPage<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new KeysetPage<>(items, cursorOf.apply(items.get(limit - 1)).encode());
+    }
+
+    /**
+     * 请求的每页条数，未指定时取默认值，并限制在 1 到上限之间
+     */
+    public static int limit(Integer requested, int defaultSize, int maxSize) {
+        int size = requested != null ? requested : defaultSize;
+        return Math.max(1, Math.min(size, maxSize));
+    }
+
+    public ResponseEntity<List<T>> toResponse() {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (nextCursor != null) {
+            builder.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return builder.body(items);
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+
+    /**
+     * 分页游标：排序时间（可为空）和主键
+     */
+    public static final class Cursor {
+        private final LocalDateTime time;
+        private final long id;
+
+        private Cursor(LocalDateTime time, long id) {
+            this.time = time;
+            this.id = id;
+        }
+
+        public static Cursor of(long id) {
+            return new Cursor(null, id);
+        }
+
+        public static Cursor of(LocalDateTime time, long id) {
+            return new Cursor(time, id);
+        }
+
+        public static Cursor decode(String token) {
+            try {
+                String text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = text.lastIndexOf('|');
+                if (separator < 0) {
+                    return new Cursor(null, Long.parseLong(text));
+                }
+                return new Cursor(LocalDateTime.parse(text.substring(0, separator)),
+                        Long.parseLong(text.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("分页游标无效");
+            }
+        }
+
+        public String encode() {
+            String text = time != null ? time + "|" + id : Long.toString(id);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public LocalDateTime getTime() { return time; }
+        public long getId() { return id; }
+    }
+}
@@ -0,0 +1,21 @@
+package com.restaurant.recommendation.dto;
+
+public class MealLogRequest {
+    private Long dishId;
+    private Double servings;      // 份数，默认1份
+    private String mealType;      // 早餐、午餐、晚餐、加餐
+    private String consumedAt;    // 用餐时间（ISO格式），默认当前时间
+    
+    // Getters and Setters
+    public Long getDishId() { return dishId; }
+    public void setDishId(Long dishId) { this.dishId = dishId; }
+    
+    public Double getServings() { return servings; }
+    public void setServings(Double servings) { this.servings = servings; }
+    
+    public String getMealType() { return mealType; }
+    public void setMealType(String mealType) { this.mealType = mealType; }
+    
+    public String getConsumedAt() { return consumedAt; }
+    public void setConsumedAt(String consumedAt) { this.consumedAt = consumedAt; }
+}
@@ -0,0 +1,72 @@
+package com.restaurant.recommendation.entity;
+
+import org.springframework.data.domain.Persistable;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "engagement_counters")
+public class EngagementCounter implements Persistable<String> {
+    public static final String SCOPE_USER = "USER";
+    public static final String SCOPE_DISH = "DISH";
+    
+    @Id
+    private String counterKey;               // 计数对象，格式为 范围:ID，如 USER:12
+    
+    private String scope;                    // 计数范围 (USER、DISH)
+    private Long targetId;                   // 用户ID或菜品ID
+    private Long impressions;                // 推荐曝光次数
+    private Long clicks;                     // 点击次数
+    private Long orders;                     // 下单次数
+    private LocalDateTime updatedAt;         // 最近一次刷新时间
+    
+    @Transient
+    private boolean isNew = true;            // 主键由调用方指定，用于区分插入与更新
+    
+    // 构造函数
+    public EngagementCounter() {}
+    
+    public EngagementCounter(String scope, Long targetId) {
+        this.counterKey = key(scope, targetId);
+        this.scope = scope;
+        this.targetId = targetId;
+    }
+    
+    public static String key(String scope, Long targetId) {
+        return scope + ":" + targetId;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+    
+    @Override
+    public String getId() { return counterKey; }
+    
+    @Override
+    public boolean isNew() { return isNew; }
+    
+    // Getters and Setters
+    public String getCounterKey() { return counterKey; }
+    public void setCounterKey(String counterKey) { this.counterKey = counterKey; }
+    
+    public String getScope() { return scope; }
+    public void setScope(String scope) { this.scope = scope; }
+    
+    public Long getTargetId() { return targetId; }
+    public void setTargetId(Long targetId) { this.targetId = targetId; }
+    
+    public Long getImpressions() { return impressions; }
+    public void setImpressions(Long impressions) { this.impressions = impressions; }
+    
+    public Long getClicks() { return clicks; }
+    public void setClicks(Long clicks) { this.clicks = clicks; }
+    
+    public Long getOrders() { return orders; }
+    public void setOrders(Long orders) { this.orders = orders; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
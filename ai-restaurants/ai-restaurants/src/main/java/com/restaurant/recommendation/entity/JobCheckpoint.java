@@ -0,0 +1,59 @@
+package com.restaurant.recommendation.entity;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "job_checkpoints")
+public class JobCheckpoint {
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+    
+    @Id
+    private String jobName;                  // 任务名称
+    
+    private String status;                   // 运行状态 (RUNNING、COMPLETED、FAILED)
+    private Long lastProcessedId;            // 已处理的最大主键，用于断点续跑
+    private LocalDateTime watermarkAt;       // 按修改时间推进的任务的高水位时间，与 lastProcessedId 组成 (时间, 主键) 键集
+    private Long processedCount;             // 本轮已处理数量
+    private LocalDateTime startedAt;         // 本轮开始时间
+    private LocalDateTime updatedAt;         // 最近一次检查点时间
+    
+    // 构造函数
+    public JobCheckpoint() {}
+    
+    public JobCheckpoint(String jobName) {
+        this.jobName = jobName;
+        this.status = STATUS_COMPLETED;
+        this.lastProcessedId = 0L;
+        this.processedCount = 0L;
+    }
+    
+    // 是否为中断后待续跑的任务
+    public boolean isInterrupted() {
+        return STATUS_RUNNING.equals(status) || STATUS_FAILED.equals(status);
+    }
+    
+    // Getters and Setters
+    public String getJobName() { return jobName; }
+    public void setJobName(String jobName) { this.jobName = jobName; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public Long getLastProcessedId() { return lastProcessedId; }
+    public void setLastProcessedId(Long lastProcessedId) { this.lastProcessedId = lastProcessedId; }
+    
+    public LocalDateTime getWatermarkAt() { return watermarkAt; }
+    public void setWatermarkAt(LocalDateTime watermarkAt) { this.watermarkAt = watermarkAt; }
+    
+    public Long getProcessedCount() { return processedCount; }
+    public void setProcessedCount(Long processedCount) { this.processedCount = processedCount; }
+    
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
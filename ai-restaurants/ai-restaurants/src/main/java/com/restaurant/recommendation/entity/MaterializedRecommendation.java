@@ -0,0 +1,57 @@
+package com.restaurant.recommendation.entity;
+
+import org.springframework.data.domain.Persistable;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "materialized_recommendations")
+public class MaterializedRecommendation implements Persistable<Long> {
+    @Id
+    private Long userId;
+    
+    @Column(length = 2000)
+    private String dishIds;                  // 按得分降序排列的菜品ID，逗号分隔
+    
+    private Long catalogVersion;             // 计算时的菜品目录版本
+    private String weightsKey;               // 计算时使用的评分权重
+    private LocalDateTime computedAt;        // 计算时间
+    
+    @Transient
+    private boolean isNew = true;            // 主键由调用方指定，用于区分插入与更新
+    
+    // 构造函数
+    public MaterializedRecommendation() {}
+    
+    public MaterializedRecommendation(Long userId) {
+        this.userId = userId;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+    
+    @Override
+    public Long getId() { return userId; }
+    
+    @Override
+    public boolean isNew() { return isNew; }
+    
+    // Getters and Setters
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    
+    public String getDishIds() { return dishIds; }
+    public void setDishIds(String dishIds) { this.dishIds = dishIds; }
+    
+    public Long getCatalogVersion() { return catalogVersion; }
+    public void setCatalogVersion(Long catalogVersion) { this.catalogVersion = catalogVersion; }
+    
+    public String getWeightsKey() { return weightsKey; }
+    public void setWeightsKey(String weightsKey) { this.weightsKey = weightsKey; }
+    
+    public LocalDateTime getComputedAt() { return computedAt; }
+    public void setComputedAt(LocalDateTime computedAt) { this.computedAt = computedAt; }
+}
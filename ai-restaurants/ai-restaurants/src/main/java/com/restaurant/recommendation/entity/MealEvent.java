@@ -0,0 +1,105 @@
+package com.restaurant.recommendation.entity;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "meal_events", indexes = @Index(name = "idx_meal_events_user_time", columnList = "userId, consumedAt"))
+public class MealEvent {
+    
+    public static final String SOURCE_MEAL = "MEAL";       // 逐条记录的用餐
+    public static final String SOURCE_REPORT = "REPORT";   // 生成报告时提交的菜品清单，再次提交同一天时整体替换
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    private Long userId;                     // 用户ID
+    private Long dishId;                     // 菜品ID
+    private String dishName;                 // 菜品名称
+    private String mealType;                 // 早餐、午餐、晚餐、加餐
+    private Double servings;                 // 份数
+    private LocalDateTime consumedAt;        // 用餐时间
+    private Long reportId;                   // 计入的当日营养报告
+    private String source = SOURCE_MEAL;     // 来源
+    
+    // 按份数折算后的营养摄入，记录时的快照，菜品后续修改不影响已记录的事件
+    private Double calories;                 // 热量 (kcal)
+    private Double protein;                  // 蛋白质 (g)
+    private Double fat;                      // 脂肪 (g)
+    private Double carbohydrate;             // 碳水化合物 (g)
+    private Double fiber;                    // 膳食纤维 (g)
+    private Double sodium;                   // 钠 (mg)
+    private Double cholesterol;              // 胆固醇 (mg)
+    
+    // 构造函数
+    public MealEvent() {}
+    
+    public MealEvent(Long userId, Dish dish, double servings, String mealType, LocalDateTime consumedAt) {
+        this.userId = userId;
+        this.dishId = dish.getId();
+        this.dishName = dish.getName();
+        this.mealType = mealType;
+        this.servings = servings;
+        this.consumedAt = consumedAt;
+        this.calories = scale(dish.getCalories(), servings);
+        this.protein = scale(dish.getProtein(), servings);
+        this.fat = scale(dish.getFat(), servings);
+        this.carbohydrate = scale(dish.getCarbohydrate(), servings);
+        this.fiber = scale(dish.getFiber(), servings);
+        this.sodium = scale(dish.getSodium(), servings);
+        this.cholesterol = scale(dish.getCholesterol(), servings);
+    }
+    
+    private static Double scale(Double value, double servings) {
+        return value != null ? value * servings : null;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    
+    public Long getDishId() { return dishId; }
+    public void setDishId(Long dishId) { this.dishId = dishId; }
+    
+    public String getDishName() { return dishName; }
+    public void setDishName(String dishName) { this.dishName = dishName; }
+    
+    public String getMealType() { return mealType; }
+    public void setMealType(String mealType) { this.mealType = mealType; }
+    
+    public Double getServings() { return servings; }
+    public void setServings(Double servings) { this.servings = servings; }
+    
+    public LocalDateTime getConsumedAt() { return consumedAt; }
+    public void setConsumedAt(LocalDateTime consumedAt) { this.consumedAt = consumedAt; }
+    
+    public Long getReportId() { return reportId; }
+    public void setReportId(Long reportId) { this.reportId = reportId; }
+    
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+    
+    public Double getCalories() { return calories; }
+    public void setCalories(Double calories) { this.calories = calories; }
+    
+    public Double getProtein() { return protein; }
+    public void setProtein(Double protein) { this.protein = protein; }
+    
+    public Double getFat() { return fat; }
+    public void setFat(Double fat) { this.fat = fat; }
+    
+    public Double getCarbohydrate() { return carbohydrate; }
+    public void setCarbohydrate(Double carbohydrate) { this.carbohydrate = carbohydrate; }
+    
+    public Double getFiber() { return fiber; }
+    public void setFiber(Double fiber) { this.fiber = fiber; }
+    
+    public Double getSodium() { return sodium; }
+    public void setSodium(Double sodium) { this.sodium = sodium; }
+    
+    public Double getCholesterol() { return cholesterol; }
+    public void setCholesterol(Double cholesterol) { this.cholesterol = cholesterol; }
+}
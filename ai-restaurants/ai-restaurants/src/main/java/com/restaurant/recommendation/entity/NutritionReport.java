@@ -1,12 +1,19 @@
 package com.restaurant.recommendation.entity;
 
 import javax.persistence.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "nutrition_reports")
+@Table(name = "nutrition_reports",
+       uniqueConstraints = @UniqueConstraint(name = "uk_nutrition_reports_user_day", columnNames = {"user_id", "report_day"}),
+       indexes = {@Index(name = "idx_nutrition_reports_day", columnList = "report_day"),
+                  @Index(name = "idx_nutrition_reports_user_date", columnList = "user_id, reportDate, id"),
+                  @Index(name = "idx_nutrition_reports_generated", columnList = "generatedAt, id")})
 public class NutritionReport {
+    
+    public static final int CODES_LENGTH = 500;   // 建议码、警告码列长度，健康规则表解析时据此校验
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -15,9 +22,15 @@ public class NutritionReport {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
     
-    private LocalDateTime generatedAt;       // 报告生成时间
+    private LocalDateTime generatedAt;       // 报告生成时间，每次更新报告时刷新
     private LocalDateTime reportDate;        // 报告日期
     
+    @Column(name = "report_day", nullable = false)
+    private LocalDate reportDay;             // 报告所属自然日，每个用户每天一份报告
+    
+    @Version
+    private Long version;                    // 乐观锁版本号
+    
     // 当日营养摄入汇总
     private Double totalCalories;            // 总热量 (kcal)
     private Double totalProtein;             // 总蛋白质 (g)
@@ -42,16 +55,27 @@ public class NutritionReport {
     private String healthStatus;             // 健康状态 (健康、需改善、不健康)
     private Integer healthScore;             // 健康得分 (0-100)
     
-    @Column(length = 2000)
-    private String recommendations;          // 营养建议
+    // 命中健康规则的消息键和数值参数，格式见 HealthRules，文本在读取时按模板渲染
+    @Column(length = CODES_LENGTH)
+    private String adviceCodes;              // 营养建议码
+    
+    @Column(length = CODES_LENGTH)
+    private String warningCodes;             // 健康警告码
     
-    @Column(length = 1000)
-    private String warnings;                 // 健康警告
+    @Transient
+    private String recommendations;          // 营养建议（由建议码渲染，不存储）
     
-    // 包含的菜品列表
+    @Transient
+    private String warnings;                 // 健康警告（由警告码渲染，不存储）
+    
+    @Column(name = "dish_count")
+    private Integer dishCount;               // 菜品数，追加菜品时作为新一行的序号
+    
+    // 包含的菜品列表（带序号列），延迟加载；已有报告追加菜品时直接插入一行，不加载集合
     @ElementCollection
     @CollectionTable(name = "report_dishes", joinColumns = @JoinColumn(name = "report_id"))
     @Column(name = "dish_name")
+    @OrderColumn(name = "dish_order")
     private List<String> includedDishes;
     
     // 构造函数
@@ -62,7 +86,39 @@ public class NutritionReport {
     public NutritionReport(User user, LocalDateTime reportDate) {
         this();
         this.user = user;
-        this.reportDate = reportDate;
+        setReportDate(reportDate);
+    }
+    
+    // 累加一次用餐的营养摄入
+    public void addIntake(MealEvent event) {
+        totalCalories = add(totalCalories, event.getCalories());
+        totalProtein = add(totalProtein, event.getProtein());
+        totalFat = add(totalFat, event.getFat());
+        totalCarbohydrate = add(totalCarbohydrate, event.getCarbohydrate());
+        totalFiber = add(totalFiber, event.getFiber());
+        totalSodium = add(totalSodium, event.getSodium());
+        totalCholesterol = add(totalCholesterol, event.getCholesterol());
+        dishCount = getDishCount() + 1;
+    }
+    
+    // 扣除一次用餐的营养摄入，用于替换已提交的菜品清单
+    public void removeIntake(MealEvent event) {
+        totalCalories = subtract(totalCalories, event.getCalories());
+        totalProtein = subtract(totalProtein, event.getProtein());
+        totalFat = subtract(totalFat, event.getFat());
+        totalCarbohydrate = subtract(totalCarbohydrate, event.getCarbohydrate());
+        totalFiber = subtract(totalFiber, event.getFiber());
+        totalSodium = subtract(totalSodium, event.getSodium());
+        totalCholesterol = subtract(totalCholesterol, event.getCholesterol());
+        dishCount = getDishCount() - 1;
+    }
+    
+    private static Double add(Double total, Double value) {
+        return (total != null ? total : 0.0) + (value != null ? value : 0.0);
+    }
+    
+    private static Double subtract(Double total, Double value) {
+        return (total != null ? total : 0.0) - (value != null ? value : 0.0);
     }
     
     // 计算营养摄入是否超标
@@ -86,7 +142,12 @@ public class NutritionReport {
         if (proteinPercentage == null || fatPercentage == null || carbohydratePercentage == null) {
             return null;
         }
-        
+        return nutritionBalance(proteinPercentage, fatPercentage, carbohydratePercentage);
+    }
+    
+    // 由三大营养素热量占比计算营养平衡度，供不加载实体的统计直接使用
+    public static double nutritionBalance(double proteinPercentage, double fatPercentage,
+                                          double carbohydratePercentage) {
         // 理想比例：蛋白质10-35%，脂肪20-35%，碳水化合物45-65%
         double proteinDeviation = Math.abs(proteinPercentage - 22.5); // 理想值22.5%
         double fatDeviation = Math.abs(fatPercentage - 27.5);          // 理想值27.5%
@@ -107,7 +168,15 @@ public class NutritionReport {
     public void setGeneratedAt(LocalDateTime generatedAt) { this.generatedAt = generatedAt; }
     
     public LocalDateTime getReportDate() { return reportDate; }
-    public void setReportDate(LocalDateTime reportDate) { this.reportDate = reportDate; }
+    public void setReportDate(LocalDateTime reportDate) {
+        this.reportDate = reportDate;
+        this.reportDay = reportDate != null ? reportDate.toLocalDate() : null;
+    }
+    
+    public LocalDate getReportDay() { return reportDay; }
+    
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
     
     public Double getTotalCalories() { return totalCalories; }
     public void setTotalCalories(Double totalCalories) { this.totalCalories = totalCalories; }
@@ -157,12 +226,21 @@ public class NutritionReport {
     public Integer getHealthScore() { return healthScore; }
     public void setHealthScore(Integer healthScore) { this.healthScore = healthScore; }
     
+    public String getAdviceCodes() { return adviceCodes; }
+    public void setAdviceCodes(String adviceCodes) { this.adviceCodes = adviceCodes; }
+    
+    public String getWarningCodes() { return warningCodes; }
+    public void setWarningCodes(String warningCodes) { this.warningCodes = warningCodes; }
+    
     public String getRecommendations() { return recommendations; }
     public void setRecommendations(String recommendations) { this.recommendations = recommendations; }
     
     public String getWarnings() { return warnings; }
     public void setWarnings(String warnings) { this.warnings = warnings; }
     
+    public int getDishCount() { return dishCount != null ? dishCount : 0; }
+    public void setDishCount(Integer dishCount) { this.dishCount = dishCount; }
+    
     public List<String> getIncludedDishes() { return includedDishes; }
     public void setIncludedDishes(List<String> includedDishes) { this.includedDishes = includedDishes; }
 } 
\ No newline at end of file
@@ -0,0 +1,189 @@
+package com.restaurant.recommendation.entity;
+
+import org.springframework.data.domain.Persistable;
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "nutrition_rollups",
+       indexes = @Index(name = "idx_nutrition_rollups_user_period", columnList = "user_id, granularity, period_start"))
+public class NutritionRollup implements Persistable<String> {
+    public static final String WEEK = "WEEK";
+    public static final String MONTH = "MONTH";
+    public static final int SCORE_BUCKETS = 10;
+
+    @Id
+    private String rollupKey;                // 汇总对象，格式为 粒度:用户ID:周期起始日，如 WEEK:12:2026-10-12
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;                     // 用户ID
+
+    @Column(nullable = false)
+    private String granularity;              // 汇总粒度 (WEEK、MONTH)
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;           // 周期起始日（周一或每月1日）
+    private LocalDate periodEnd;             // 周期结束日（含）
+
+    @Version
+    private Long version;                    // 乐观锁版本号
+
+    private Integer reportCount;             // 周期内报告天数
+
+    // 周期内营养摄入合计
+    private Double totalCalories;            // 总热量 (kcal)
+    private Double totalProtein;             // 总蛋白质 (g)
+    private Double totalFat;                 // 总脂肪 (g)
+    private Double totalCarbohydrate;        // 总碳水化合物 (g)
+    private Double totalFiber;               // 总膳食纤维 (g)
+    private Double totalSodium;              // 总钠 (mg)
+    private Double totalCholesterol;         // 总胆固醇 (mg)
+
+    private Double minCalories;              // 单日最低热量
+    private Double maxCalories;              // 单日最高热量
+
+    // 健康得分分布
+    private Integer scoredCount;             // 有健康得分的报告天数
+    private Long healthScoreSum;             // 健康得分合计
+    private Integer minHealthScore;          // 最低健康得分
+    private Integer maxHealthScore;          // 最高健康得分
+    private String scoreHistogram;           // 得分分布，10个分段（0-9、10-19……90-100）的天数，逗号分隔
+
+    private LocalDateTime updatedAt;         // 最近一次刷新时间
+
+    @Transient
+    private boolean isNew = true;            // 主键由调用方指定，用于区分插入与更新
+
+    // 构造函数
+    public NutritionRollup() {}
+
+    public NutritionRollup(String granularity, Long userId, LocalDate periodStart) {
+        this.rollupKey = key(granularity, userId, periodStart);
+        this.granularity = granularity;
+        this.userId = userId;
+        this.periodStart = periodStart;
+        this.periodEnd = periodEnd(granularity, periodStart);
+    }
+
+    public static String key(String granularity, Long userId, LocalDate periodStart) {
+        return granularity + ":" + userId + ":" + periodStart;
+    }
+
+    // 某天所在周期的起始日
+    public static LocalDate periodStart(String granularity, LocalDate day) {
+        return WEEK.equals(granularity)
+                ? day.minusDays(day.getDayOfWeek().getValue() - 1)
+                : day.withDayOfMonth(1);
+    }
+
+    public static LocalDate periodEnd(String granularity, LocalDate periodStart) {
+        return WEEK.equals(granularity) ? periodStart.plusDays(6) : periodStart.plusMonths(1).minusDays(1);
+    }
+
+    // 健康得分所在分段，100分归入最高分段
+    public static int scoreBucket(int score) {
+        return Math.max(0, Math.min(score / 10, SCORE_BUCKETS - 1));
+    }
+
+    public int[] histogram() {
+        int[] counts = new int[SCORE_BUCKETS];
+        if (scoreHistogram != null && !scoreHistogram.isEmpty()) {
+            String[] parts = scoreHistogram.split(",");
+            for (int i = 0; i < parts.length && i < SCORE_BUCKETS; i++) {
+                counts[i] = Integer.parseInt(parts[i]);
+            }
+        }
+        return counts;
+    }
+
+    public void setHistogram(int[] counts) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(counts[i]);
+        }
+        this.scoreHistogram = text.toString();
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public String getId() { return rollupKey; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    // Getters and Setters
+    public String getRollupKey() { return rollupKey; }
+    public void setRollupKey(String rollupKey) { this.rollupKey = rollupKey; }
+
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public String getGranularity() { return granularity; }
+    public void setGranularity(String granularity) { this.granularity = granularity; }
+
+    public LocalDate getPeriodStart() { return periodStart; }
+    public void setPeriodStart(LocalDate periodStart) { this.periodStart = periodStart; }
+
+    public LocalDate getPeriodEnd() { return periodEnd; }
+    public void setPeriodEnd(LocalDate periodEnd) { this.periodEnd = periodEnd; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    public Integer getReportCount() { return reportCount; }
+    public void setReportCount(Integer reportCount) { this.reportCount = reportCount; }
+
+    public Double getTotalCalories() { return totalCalories; }
+    public void setTotalCalories(Double totalCalories) { this.totalCalories = totalCalories; }
+
+    public Double getTotalProtein() { return totalProtein; }
+    public void setTotalProtein(Double totalProtein) { this.totalProtein = totalProtein; }
+
+    public Double getTotalFat() { return totalFat; }
+    public void setTotalFat(Double totalFat) { this.totalFat = totalFat; }
+
+    public Double getTotalCarbohydrate() { return totalCarbohydrate; }
+    public void setTotalCarbohydrate(Double totalCarbohydrate) { this.totalCarbohydrate = totalCarbohydrate; }
+
+    public Double getTotalFiber() { return totalFiber; }
+    public void setTotalFiber(Double totalFiber) { this.totalFiber = totalFiber; }
+
+    public Double getTotalSodium() { return totalSodium; }
+    public void setTotalSodium(Double totalSodium) { this.totalSodium = totalSodium; }
+
+    public Double getTotalCholesterol() { return totalCholesterol; }
+    public void setTotalCholesterol(Double totalCholesterol) { this.totalCholesterol = totalCholesterol; }
+
+    public Double getMinCalories() { return minCalories; }
+    public void setMinCalories(Double minCalories) { this.minCalories = minCalories; }
+
+    public Double getMaxCalories() { return maxCalories; }
+    public void setMaxCalories(Double maxCalories) { this.maxCalories = maxCalories; }
+
+    public Integer getScoredCount() { return scoredCount; }
+    public void setScoredCount(Integer scoredCount) { this.scoredCount = scoredCount; }
+
+    public Long getHealthScoreSum() { return healthScoreSum; }
+    public void setHealthScoreSum(Long healthScoreSum) { this.healthScoreSum = healthScoreSum; }
+
+    public Integer getMinHealthScore() { return minHealthScore; }
+    public void setMinHealthScore(Integer minHealthScore) { this.minHealthScore = minHealthScore; }
+
+    public Integer getMaxHealthScore() { return maxHealthScore; }
+    public void setMaxHealthScore(Integer maxHealthScore) { this.maxHealthScore = maxHealthScore; }
+
+    public String getScoreHistogram() { return scoreHistogram; }
+    public void setScoreHistogram(String scoreHistogram) { this.scoreHistogram = scoreHistogram; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -4,10 +4,17 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "recommendations")
+@Table(name = "recommendations",
+       indexes = {@Index(name = "idx_recommendations_user_time", columnList = "user_id, recommendedAt, id"),
+                  @Index(name = "idx_recommendations_updated", columnList = "updated_at, id")})
 public class Recommendation {
+    public static final int ID_ALLOCATION_SIZE = 50;
+    
+    // 使用池化序列分配主键，批量插入时无需逐条回读自增ID
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recommendation_seq")
+    @SequenceGenerator(name = "recommendation_seq", sequenceName = "recommendation_seq",
+                       allocationSize = Recommendation.ID_ALLOCATION_SIZE)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -22,6 +29,9 @@ public class Recommendation {
     private String reason;                   // 推荐理由
     private LocalDateTime recommendedAt;     // 推荐时间
     
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;         // 最近修改时间（创建或反馈），用于增量导出
+    
     // 匹配度详情
     private Double cuisineMatch;             // 菜系匹配度
     private Double flavorMatch;              // 口味匹配度
@@ -37,6 +47,7 @@ public class Recommendation {
     // 构造函数
     public Recommendation() {
         this.recommendedAt = LocalDateTime.now();
+        this.updatedAt = recommendedAt;
         this.isClicked = false;
         this.isOrdered = false;
     }
@@ -82,6 +93,9 @@ public class Recommendation {
     public LocalDateTime getRecommendedAt() { return recommendedAt; }
     public void setRecommendedAt(LocalDateTime recommendedAt) { this.recommendedAt = recommendedAt; }
     
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    
     public Double getCuisineMatch() { return cuisineMatch; }
     public void setCuisineMatch(Double cuisineMatch) { this.cuisineMatch = cuisineMatch; }
     
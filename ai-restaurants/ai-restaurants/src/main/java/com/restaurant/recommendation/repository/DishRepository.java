@@ -1,6 +1,7 @@
 package com.restaurant.recommendation.repository;
 
 import com.restaurant.recommendation.entity.Dish;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -80,4 +81,10 @@ public interface DishRepository extends JpaRepository<Dish, Long> {
      */
     @Query("SELECT d FROM Dish d JOIN d.dietaryTags t WHERE t = :tag")
     List<Dish> findDishesByDietaryTag(@Param("tag") String tag);
+    
+    /**
+     * 按主键顺序获取主键大于 afterId 的菜品（键集分页）
+     */
+    @Query("SELECT d FROM Dish d WHERE d.id > :afterId ORDER BY d.id")
+    List<Dish> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
 } 
\ No newline at end of file
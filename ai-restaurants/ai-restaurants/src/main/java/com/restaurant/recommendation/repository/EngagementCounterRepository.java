@@ -0,0 +1,9 @@
+package com.restaurant.recommendation.repository;
+
+import com.restaurant.recommendation.entity.EngagementCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EngagementCounterRepository extends JpaRepository<EngagementCounter, String> {
+}
@@ -0,0 +1,9 @@
+package com.restaurant.recommendation.repository;
+
+import com.restaurant.recommendation.entity.MaterializedRecommendation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MaterializedRecommendationRepository extends JpaRepository<MaterializedRecommendation, Long> {
+}
@@ -0,0 +1,23 @@
+package com.restaurant.recommendation.repository;
+
+import com.restaurant.recommendation.entity.MealEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MealEventRepository extends JpaRepository<MealEvent, Long> {
+    
+    /**
+     * 查找用户在时间范围内的用餐记录，按用餐时间升序
+     */
+    List<MealEvent> findByUserIdAndConsumedAtBetweenOrderByConsumedAtAsc(Long userId, LocalDateTime start,
+                                                                        LocalDateTime end);
+    
+    /**
+     * 查找用户在时间范围内某一来源的用餐记录
+     */
+    List<MealEvent> findByUserIdAndSourceAndConsumedAtBetween(Long userId, String source, LocalDateTime start,
+                                                             LocalDateTime end);
+}
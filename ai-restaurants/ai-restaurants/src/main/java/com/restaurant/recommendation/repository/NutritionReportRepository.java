@@ -2,11 +2,14 @@ package com.restaurant.recommendation.repository;
 
 import com.restaurant.recommendation.entity.NutritionReport;
 import com.restaurant.recommendation.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,12 +22,24 @@ public interface NutritionReportRepository extends JpaRepository<NutritionReport
     List<NutritionReport> findByUserOrderByReportDateDesc(User user);
     
     /**
-     * 查找用户特定日期的营养报告
+     * 用户营养报告的第一页，按报告日期、主键降序（键集分页）
      */
-    @Query("SELECT n FROM NutritionReport n WHERE n.user = :user AND " +
-           "DATE(n.reportDate) = DATE(:reportDate)")
-    Optional<NutritionReport> findByUserAndReportDate(@Param("user") User user, 
-                                                      @Param("reportDate") LocalDateTime reportDate);
+    @Query("SELECT n FROM NutritionReport n WHERE n.user.id = :userId ORDER BY n.reportDate DESC, n.id DESC")
+    List<NutritionReport> findHistoryPage(@Param("userId") Long userId, Pageable pageable);
+    
+    /**
+     * 用户营养报告中排在游标（报告日期、主键）之后的一页
+     */
+    @Query("SELECT n FROM NutritionReport n WHERE n.user.id = :userId AND (n.reportDate < :reportDate " +
+           "OR (n.reportDate = :reportDate AND n.id < :id)) ORDER BY n.reportDate DESC, n.id DESC")
+    List<NutritionReport> findHistoryPageAfter(@Param("userId") Long userId,
+                                               @Param("reportDate") LocalDateTime reportDate,
+                                               @Param("id") Long id, Pageable pageable);
+    
+    /**
+     * 查找用户某天的营养报告（用户与日期唯一）
+     */
+    Optional<NutritionReport> findByUserAndReportDay(User user, LocalDate reportDay);
     
     /**
      * 查找用户在特定时间范围内的营养报告
@@ -35,6 +50,41 @@ public interface NutritionReportRepository extends JpaRepository<NutritionReport
                                                  @Param("startDate") LocalDateTime startDate,
                                                  @Param("endDate") LocalDateTime endDate);
     
+    /**
+     * 读取一批用户在日期范围内各天的营养总量和健康得分，用于重算周、月汇总
+     */
+    @Query("SELECT n.user.id, n.reportDay, n.totalCalories, n.totalProtein, n.totalFat, n.totalCarbohydrate, " +
+           "n.totalFiber, n.totalSodium, n.totalCholesterol, n.healthScore FROM NutritionReport n " +
+           "WHERE n.user.id IN :userIds AND n.reportDay BETWEEN :startDay AND :endDay")
+    List<Object[]> findRollupRows(@Param("userIds") Collection<Long> userIds,
+                                  @Param("startDay") LocalDate startDay,
+                                  @Param("endDay") LocalDate endDay);
+    
+    /**
+     * 读取用户指定几天的营养总量和健康得分，列与 findRollupRows 相同
+     */
+    @Query("SELECT n.user.id, n.reportDay, n.totalCalories, n.totalProtein, n.totalFat, n.totalCarbohydrate, " +
+           "n.totalFiber, n.totalSodium, n.totalCholesterol, n.healthScore FROM NutritionReport n " +
+           "WHERE n.user.id = :userId AND n.reportDay IN :days")
+    List<Object[]> findRollupRowsByDays(@Param("userId") Long userId,
+                                        @Param("days") Collection<LocalDate> days);
+    
+    /**
+     * 用户在日期范围内各天报告的最低最高热量和健康得分
+     */
+    @Query("SELECT MIN(n.totalCalories), MAX(n.totalCalories), MIN(n.healthScore), MAX(n.healthScore) " +
+           "FROM NutritionReport n WHERE n.user.id = :userId AND n.reportDay BETWEEN :startDay AND :endDay")
+    List<Object[]> findExtremes(@Param("userId") Long userId,
+                                @Param("startDay") LocalDate startDay,
+                                @Param("endDay") LocalDate endDay);
+    
+    /**
+     * 全部用户在指定几天有健康得分的报告（用户ID、健康得分）
+     */
+    @Query("SELECT n.user.id, n.healthScore FROM NutritionReport n " +
+           "WHERE n.reportDay IN :days AND n.healthScore IS NOT NULL")
+    List<Object[]> findHealthScoresByDays(@Param("days") Collection<LocalDate> days);
+    
     /**
      * 查找用户最近的营养报告
      */
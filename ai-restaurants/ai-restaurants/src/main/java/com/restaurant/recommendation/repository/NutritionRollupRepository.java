@@ -0,0 +1,35 @@
+package com.restaurant.recommendation.repository;
+
+import com.restaurant.recommendation.entity.NutritionRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NutritionRollupRepository extends JpaRepository<NutritionRollup, String> {
+    
+    /**
+     * 查找用户某一粒度、起始日在特定范围内的汇总，按周期升序排列
+     */
+    List<NutritionRollup> findByUserIdAndGranularityAndPeriodStartBetweenOrderByPeriodStartAsc(
+            Long userId, String granularity, LocalDate from, LocalDate to);
+    
+    /**
+     * 合计用户某一粒度全部汇总的健康得分与有得分的天数
+     */
+    @Query("SELECT SUM(r.healthScoreSum), SUM(r.scoredCount) FROM NutritionRollup r " +
+           "WHERE r.userId = :userId AND r.granularity = :granularity")
+    List<Object[]> sumHealthScores(@Param("userId") Long userId, @Param("granularity") String granularity);
+    
+    /**
+     * 全部用户在指定周期内的健康得分分布（用户ID、分布）
+     */
+    @Query("SELECT r.userId, r.scoreHistogram FROM NutritionRollup r " +
+           "WHERE r.granularity = :granularity AND r.periodStart IN :periodStarts")
+    List<Object[]> findScoreHistograms(@Param("granularity") String granularity,
+                                       @Param("periodStarts") Collection<LocalDate> periodStarts);
+}
@@ -2,6 +2,7 @@ package com.restaurant.recommendation.repository;
 
 import com.restaurant.recommendation.entity.Recommendation;
 import com.restaurant.recommendation.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -17,6 +18,21 @@ public interface RecommendationRepository extends JpaRepository<Recommendation,
      */
     List<Recommendation> findByUserOrderByRecommendedAtDesc(User user);
     
+    /**
+     * 用户推荐记录的第一页，按推荐时间、主键降序（键集分页），菜品一并加载
+     */
+    @Query("SELECT r FROM Recommendation r JOIN FETCH r.dish WHERE r.user.id = :userId ORDER BY r.recommendedAt DESC, r.id DESC")
+    List<Recommendation> findHistoryPage(@Param("userId") Long userId, Pageable pageable);
+    
+    /**
+     * 用户推荐记录中排在游标（推荐时间、主键）之后的一页
+     */
+    @Query("SELECT r FROM Recommendation r JOIN FETCH r.dish WHERE r.user.id = :userId AND (r.recommendedAt < :recommendedAt " +
+           "OR (r.recommendedAt = :recommendedAt AND r.id < :id)) ORDER BY r.recommendedAt DESC, r.id DESC")
+    List<Recommendation> findHistoryPageAfter(@Param("userId") Long userId,
+                                              @Param("recommendedAt") LocalDateTime recommendedAt,
+                                              @Param("id") Long id, Pageable pageable);
+    
     /**
      * 查找用户在特定时间范围内的推荐记录
      */
@@ -43,23 +59,16 @@ public interface RecommendationRepository extends JpaRepository<Recommendation,
     @Query("SELECT r FROM Recommendation r WHERE r.score >= :minScore ORDER BY r.score DESC")
     List<Recommendation> findHighScoreRecommendations(@Param("minScore") Double minScore);
     
-    /**
-     * 统计用户的推荐点击率
-     */
-    @Query("SELECT COUNT(r) * 1.0 / (SELECT COUNT(r2) FROM Recommendation r2 WHERE r2.user = :user) " +
-           "FROM Recommendation r WHERE r.user = :user AND r.isClicked = true")
-    Double calculateClickRateByUser(@Param("user") User user);
-    
-    /**
-     * 统计用户的推荐转化率
-     */
-    @Query("SELECT COUNT(r) * 1.0 / (SELECT COUNT(r2) FROM Recommendation r2 WHERE r2.user = :user) " +
-           "FROM Recommendation r WHERE r.user = :user AND r.isOrdered = true")
-    Double calculateConversionRateByUser(@Param("user") User user);
-    
     /**
      * 查找最近的推荐记录
      */
     @Query("SELECT r FROM Recommendation r WHERE r.user = :user ORDER BY r.recommendedAt DESC")
     List<Recommendation> findRecentRecommendationsByUser(@Param("user") User user);
-} 
\ No newline at end of file
+    
+    /**
+     * 查找全部正反馈（点击、下单或高评分）的推荐记录，每行为 推荐记录ID、用户ID、菜品ID
+     */
+    @Query("SELECT r.id, r.user.id, r.dish.id FROM Recommendation r " +
+           "WHERE r.isClicked = true OR r.isOrdered = true OR r.userRating >= :minRating")
+    List<Object[]> findPositiveFeedbackPairs(@Param("minRating") Integer minRating);
+}
@@ -1,6 +1,7 @@
 package com.restaurant.recommendation.repository;
 
 import com.restaurant.recommendation.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -39,6 +40,48 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u JOIN u.allergies a WHERE a = :allergy")
     List<User> findUsersByAllergy(@Param("allergy") String allergy);
     
+    /**
+     * 查找具有特定疾病的用户ID（不加载实体）
+     */
+    @Query("SELECT u.id FROM User u JOIN u.diseases d WHERE d = :disease")
+    List<Long> findIdsByDisease(@Param("disease") String disease);
+    
+    /**
+     * 查找喜欢特定菜系的用户ID（不加载实体）
+     */
+    @Query("SELECT u.id FROM User u JOIN u.preferredCuisines c WHERE c = :cuisine")
+    List<Long> findIdsByPreferredCuisine(@Param("cuisine") String cuisine);
+    
+    /**
+     * 查找有特定过敏的用户ID（不加载实体）
+     */
+    @Query("SELECT u.id FROM User u JOIN u.allergies a WHERE a = :allergy")
+    List<Long> findIdsByAllergy(@Param("allergy") String allergy);
+    
+    /**
+     * 全部 用户ID-疾病 对
+     */
+    @Query("SELECT u.id, d FROM User u JOIN u.diseases d")
+    List<Object[]> findDiseasePairs();
+    
+    /**
+     * 全部 用户ID-喜欢的菜系 对
+     */
+    @Query("SELECT u.id, c FROM User u JOIN u.preferredCuisines c")
+    List<Object[]> findPreferredCuisinePairs();
+    
+    /**
+     * 全部 用户ID-过敏食物 对
+     */
+    @Query("SELECT u.id, a FROM User u JOIN u.allergies a")
+    List<Object[]> findAllergyPairs();
+    
+    /**
+     * 全部用户ID
+     */
+    @Query("SELECT u.id FROM User u")
+    List<Long> findAllIds();
+    
     /**
      * 检查用户名是否存在
      */
@@ -48,4 +91,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * 检查邮箱是否存在
      */
     boolean existsByEmail(String email);
-} 
\ No newline at end of file
+    
+    /**
+     * 按主键顺序获取主键大于 afterId 的用户（键集分页）
+     */
+    @Query("SELECT u FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<User> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * 按主键顺序分页获取用户ID（键集分页）
+     */
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * 按主键顺序分页获取某个分区（主键对分区数取模）内的用户ID
+     */
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId AND MOD(u.id, :partitions) = :partition ORDER BY u.id")
+    List<Long> findIdsAfterInPartition(@Param("afterId") Long afterId, @Param("partitions") Integer partitions,
+                                       @Param("partition") Integer partition, Pageable pageable);
+}
@@ -0,0 +1,379 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.JobCheckpoint;
+import com.restaurant.recommendation.repository.JobCheckpointRepository;
+import com.restaurant.recommendation.service.ColumnarFileWriter.Column;
+import com.restaurant.recommendation.service.ColumnarFileWriter.ColumnType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 推荐记录和营养报告的列式批量导出
+ * 每张表按修改时间和主键顺序用只进游标读取，逐行交给 {@link ColumnarFileWriter} 写入本地的 GZIP 列式文件，
+ * 内存占用只与行组大小和字典上限有关。每张表在任务检查点中记录已导出的 (修改时间, 主键) 高水位，
+ * 增量导出只读取高水位之后的记录；同一记录被修改后会以新的修改时间再次导出，下游按主键取最后一次即可。
+ * 只导出修改时间早于当前时间减安全延迟的记录，避免遗漏修改时间较早、但提交较晚的事务写入的行。
+ * 文件先写入临时文件，成功后再改名并推进高水位；导出失败时删除临时文件，高水位保持不变
+ */
+@Service
+public class ColumnarExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ColumnarExportService.class);
+
+    public static final String RECOMMENDATIONS = "recommendations";
+    public static final String NUTRITION_REPORTS = "nutrition_reports";
+
+    private static final String JOB_PREFIX = "columnar-export:";
+    private static final String FILE_SUFFIX = ".rcol.gz";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssSSS");
+
+    private static final List<ExportTable> TABLES = Arrays.asList(
+            new ExportTable(RECOMMENDATIONS, "updated_at", Arrays.asList(
+                    new Column("id", ColumnType.LONG),
+                    new Column("updated_at", ColumnType.TIMESTAMP),
+                    new Column("user_id", ColumnType.LONG),
+                    new Column("dish_id", ColumnType.LONG),
+                    new Column("recommended_at", ColumnType.TIMESTAMP),
+                    new Column("score", ColumnType.DOUBLE),
+                    new Column("reason", ColumnType.STRING),
+                    new Column("cuisine_match", ColumnType.DOUBLE),
+                    new Column("flavor_match", ColumnType.DOUBLE),
+                    new Column("ingredient_match", ColumnType.DOUBLE),
+                    new Column("health_match", ColumnType.DOUBLE),
+                    new Column("nutrition_match", ColumnType.DOUBLE),
+                    new Column("is_clicked", ColumnType.BOOLEAN),
+                    new Column("is_ordered", ColumnType.BOOLEAN),
+                    new Column("user_rating", ColumnType.INT),
+                    new Column("user_feedback", ColumnType.STRING))),
+            new ExportTable(NUTRITION_REPORTS, "generated_at", Arrays.asList(
+                    new Column("id", ColumnType.LONG),
+                    new Column("generated_at", ColumnType.TIMESTAMP),
+                    new Column("user_id", ColumnType.LONG),
+                    new Column("report_day", ColumnType.DATE),
+                    new Column("report_date", ColumnType.TIMESTAMP),
+                    new Column("version", ColumnType.LONG),
+                    new Column("total_calories", ColumnType.DOUBLE),
+                    new Column("total_protein", ColumnType.DOUBLE),
+                    new Column("total_fat", ColumnType.DOUBLE),
+                    new Column("total_carbohydrate", ColumnType.DOUBLE),
+                    new Column("total_fiber", ColumnType.DOUBLE),
+                    new Column("total_sodium", ColumnType.DOUBLE),
+                    new Column("total_cholesterol", ColumnType.DOUBLE),
+                    new Column("recommended_calories", ColumnType.DOUBLE),
+                    new Column("recommended_protein", ColumnType.DOUBLE),
+                    new Column("recommended_fat", ColumnType.DOUBLE),
+                    new Column("recommended_carbohydrate", ColumnType.DOUBLE),
+                    new Column("protein_percentage", ColumnType.DOUBLE),
+                    new Column("fat_percentage", ColumnType.DOUBLE),
+                    new Column("carbohydrate_percentage", ColumnType.DOUBLE),
+                    new Column("health_status", ColumnType.STRING),
+                    new Column("health_score", ColumnType.INT),
+                    new Column("advice_codes", ColumnType.STRING),
+                    new Column("warning_codes", ColumnType.STRING))));
+
+    @Value("${recommendation.export.enabled:false}")
+    private boolean enabled;
+
+    @Value("${recommendation.export.directory:exports}")
+    private String directory;
+
+    @Value("${recommendation.export.row-group-size:8192}")
+    private int rowGroupSize;
+
+    @Value("${recommendation.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${recommendation.export.max-dictionary-size:65536}")
+    private int maxDictionarySize;
+
+    @Value("${recommendation.export.safety-lag-seconds:60}")
+    private long safetyLagSeconds;
+
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readTemplate;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "columnar-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // 各表最近一次导出的结果
+    private final Map<String, Map<String, Object>> lastRuns = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    @PostConstruct
+    public void init() {
+        // 只读事务：部分数据库（如 PostgreSQL）只在事务内按 fetch size 分批读取游标
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+    }
+
+    /**
+     * 定时增量导出全部表；提交到导出线程执行，不占用定时调度线程
+     */
+    @Scheduled(cron = "${recommendation.export.cron:0 0 4 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            trigger(null, false);
+        }
+    }
+
+    /**
+     * 手动触发导出（异步执行）；table 为空时导出全部表，full 为 true 时忽略高水位全量导出。
+     * 已有导出在运行时返回 false
+     */
+    public boolean trigger(String table, boolean full) {
+        if (table != null && findTable(table) == null) {
+            throw new RuntimeException("不支持导出的表：" + table);
+        }
+        if (running.get()) {
+            return false;
+        }
+        coordinator.submit(() -> run(table, full));
+        return true;
+    }
+
+    /**
+     * 依次导出指定表（为空时全部表），单张表失败不影响其他表
+     */
+    public void run(String table, boolean full) {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (ExportTable export : TABLES) {
+                if (table == null || export.name.equals(table)) {
+                    try {
+                        exportTable(export, full);
+                    } catch (RuntimeException e) {
+                        log.error("列式导出失败：{}，高水位保持不变", export.name, e);
+                    }
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void exportTable(ExportTable table, boolean full) {
+        String jobName = JOB_PREFIX + table.name;
+        JobCheckpoint checkpoint = checkpointRepository.findById(jobName).orElseGet(() -> new JobCheckpoint(jobName));
+        LocalDateTime after = full ? null : checkpoint.getWatermarkAt();
+        long afterId = after != null ? checkpoint.getLastProcessedId() : 0L;
+        LocalDateTime upper = LocalDateTime.now().minusSeconds(safetyLagSeconds);
+        long startedAt = System.nanoTime();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("table", table.name);
+        result.put("full", full);
+        result.put("status", JobCheckpoint.STATUS_RUNNING);
+        result.put("from", after);
+        result.put("upTo", upper);
+        lastRuns.put(table.name, result);
+
+        checkpoint.setStatus(JobCheckpoint.STATUS_RUNNING);
+        checkpoint.setStartedAt(LocalDateTime.now());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpoint = checkpointRepository.save(checkpoint);
+
+        Path dir = Paths.get(directory);
+        Path target = dir.resolve(table.name + "-" + FILE_TIME.format(LocalDateTime.now()) + FILE_SUFFIX);
+        Path part = dir.resolve(target.getFileName() + ".part");
+        Watermark watermark = new Watermark(after, afterId);
+        try {
+            Files.createDirectories(dir);
+            try (OutputStream out = Files.newOutputStream(part);
+                 ColumnarFileWriter writer = new ColumnarFileWriter(out, table.name, table.columns,
+                         rowGroupSize, maxDictionarySize)) {
+                readTemplate.execute(status -> {
+                    stream(table, after, afterId, upper, writer, watermark);
+                    return null;
+                });
+            }
+            long rows = watermark.rows;
+            if (rows > 0) {
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+                result.put("file", target.toAbsolutePath().toString());
+                result.put("bytes", Files.size(target));
+            } else {
+                Files.delete(part);
+            }
+
+            checkpoint.setWatermarkAt(watermark.time);
+            checkpoint.setLastProcessedId(watermark.id);
+            checkpoint.setProcessedCount(rows);
+            checkpoint.setStatus(JobCheckpoint.STATUS_COMPLETED);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+
+            long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+            result.put("status", JobCheckpoint.STATUS_COMPLETED);
+            result.put("rows", rows);
+            result.put("elapsedMs", elapsedMs);
+            log.info("列式导出完成：{} 导出 {} 行，耗时 {} ms", table.name, rows, elapsedMs);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ignored) {
+                // 临时文件删除失败不影响检查点
+            }
+            result.put("status", JobCheckpoint.STATUS_FAILED);
+            result.put("error", e.getMessage());
+            checkpoint.setStatus(JobCheckpoint.STATUS_FAILED);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+            throw e instanceof RuntimeException ? (RuntimeException) e : new UncheckedIOException((IOException) e);
+        }
+    }
+
+    /**
+     * 用只进、只读游标按 (修改时间, 主键) 升序读取高水位之后、上界之前的记录
+     */
+    private void stream(ExportTable table, LocalDateTime after, long afterId, LocalDateTime upper,
+                        ColumnarFileWriter writer, Watermark watermark) {
+        String sql = after != null ? table.incrementalSql : table.fullSql;
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            int i = 1;
+            if (after != null) {
+                Timestamp afterTime = Timestamp.valueOf(after);
+                ps.setTimestamp(i++, afterTime);
+                ps.setTimestamp(i++, afterTime);
+                ps.setLong(i++, afterId);
+            }
+            ps.setTimestamp(i, Timestamp.valueOf(upper));
+            return ps;
+        }, rs -> {
+            try {
+                writer.addRow(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            watermark.advance(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime());
+        });
+    }
+
+    private static ExportTable findTable(String name) {
+        for (ExportTable table : TABLES) {
+            if (table.name.equals(name)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 导出状态：是否运行中、各表的高水位和最近一次导出结果
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("directory", Paths.get(directory).toAbsolutePath().toString());
+        List<Map<String, Object>> tables = new ArrayList<>(TABLES.size());
+        for (ExportTable table : TABLES) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("table", table.name);
+            checkpointRepository.findById(JOB_PREFIX + table.name).ifPresent(checkpoint -> {
+                row.put("status", checkpoint.getStatus());
+                row.put("watermarkAt", checkpoint.getWatermarkAt());
+                row.put("watermarkId", checkpoint.getLastProcessedId());
+                row.put("updatedAt", checkpoint.getUpdatedAt());
+            });
+            Map<String, Object> lastRun = lastRuns.get(table.name);
+            if (lastRun != null) {
+                row.put("lastRun", lastRun);
+            }
+            tables.add(row);
+        }
+        status.put("tables", tables);
+        return status;
+    }
+
+    /**
+     * 导出表定义：前两列固定为主键和修改时间
+     */
+    private static final class ExportTable {
+        final String name;
+        final List<Column> columns;
+        final String fullSql;
+        final String incrementalSql;
+
+        ExportTable(String name, String changeColumn, List<Column> columns) {
+            this.name = name;
+            this.columns = columns;
+            StringBuilder select = new StringBuilder("SELECT ");
+            for (int i = 0; i < columns.size(); i++) {
+                select.append(i > 0 ? ", " : "").append(columns.get(i).getName());
+            }
+            select.append(" FROM ").append(name).append(" WHERE ");
+            String order = changeColumn + " < ? ORDER BY " + changeColumn + ", id";
+            this.fullSql = select + order;
+            this.incrementalSql = select + "(" + changeColumn + " > ? OR (" + changeColumn + " = ? AND id > ?)) AND "
+                    + order;
+        }
+    }
+
+    /**
+     * 已写入的行数和最后一行的 (修改时间, 主键)
+     */
+    private static final class Watermark {
+        LocalDateTime time;
+        long id;
+        long rows;
+
+        Watermark(LocalDateTime time, long id) {
+            this.time = time;
+            this.id = id;
+        }
+
+        void advance(long id, LocalDateTime time) {
+            this.id = id;
+            this.time = time;
+            this.rows++;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.service.ColumnarFileWriter.Column;
+import com.restaurant.recommendation.service.ColumnarFileWriter.ColumnType;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 列式导出文件读取器，格式见 ColumnarFileWriter
+ * 按行组解码到各列的基本类型数组，next() 逐行前进，get() 读取当前行某列的值；
+ * 内存占用只与行组大小和字符串字典大小有关。读完全部行组后核对文件尾记录的总行数
+ */
+public final class ColumnarFileReader implements Closeable {
+
+    private final DataInputStream in;
+    private final String table;
+    private final List<Column> columns;
+
+    // 当前行组的列数据：浮点列用 doubles，其余列（含字典编码）用 longs
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final boolean[][] nulls;
+    private final List<List<String>> dictionaries;
+    private int groupRows;
+    private int row;
+    private long rowsRead;
+    private boolean finished;
+    private int pendingBits;
+    private int pendingBitCount;
+
+    public ColumnarFileReader(InputStream source) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(source, 1 << 16), 1 << 16));
+        byte[] magic = new byte[ColumnarFileWriter.MAGIC.length()];
+        in.readFully(magic);
+        if (!ColumnarFileWriter.MAGIC.equals(new String(magic, StandardCharsets.US_ASCII))) {
+            throw new IOException("不是列式导出文件");
+        }
+        int version = in.readInt();
+        if (version != ColumnarFileWriter.FORMAT_VERSION) {
+            throw new IOException("不支持的列式文件版本：" + version);
+        }
+        this.table = readString();
+        int count = (int) readVarint();
+        List<Column> parsed = new ArrayList<>(count);
+        for (int c = 0; c < count; c++) {
+            String name = readString();
+            int code = in.readUnsignedByte();
+            ColumnType type = ColumnType.of(code);
+            if (type == null) {
+                throw new IOException("未知的列类型编码：" + code);
+            }
+            parsed.add(new Column(name, type));
+        }
+        this.columns = Collections.unmodifiableList(parsed);
+        this.longs = new long[count][0];
+        this.doubles = new double[count][0];
+        this.nulls = new boolean[count][0];
+        this.dictionaries = new ArrayList<>(count);
+        for (int c = 0; c < count; c++) {
+            dictionaries.add(new ArrayList<>());
+        }
+    }
+
+    public String getTable() { return table; }
+    public List<Column> getColumns() { return columns; }
+
+    /**
+     * 前进到下一行，没有更多行时返回 false
+     */
+    public boolean next() throws IOException {
+        if (++row < groupRows) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        groupRows = (int) readVarint();
+        row = 0;
+        if (groupRows == 0) {
+            finished = true;
+            long totalRows = in.readLong();
+            if (totalRows != rowsRead) {
+                throw new IOException("文件尾记录的行数 " + totalRows + " 与实际行数 " + rowsRead + " 不一致");
+            }
+            return false;
+        }
+        readRowGroup();
+        rowsRead += groupRows;
+        return true;
+    }
+
+    /**
+     * 当前行第 c 列的值：LONG 为 Long，INT 为 Integer，DOUBLE 为 Double，BOOLEAN 为 Boolean，
+     * TIMESTAMP 为 LocalDateTime，DATE 为 LocalDate，STRING 为 String；空值为 null
+     */
+    public Object get(int c) {
+        if (nulls[c][row]) {
+            return null;
+        }
+        ColumnType type = columns.get(c).getType();
+        if (type == ColumnType.DOUBLE) {
+            return doubles[c][row];
+        }
+        long value = longs[c][row];
+        switch (type) {
+            case LONG:
+                return value;
+            case INT:
+                return (int) value;
+            case BOOLEAN:
+                return value != 0;
+            case TIMESTAMP:
+                return Instant.ofEpochMilli(value).atOffset(ZoneOffset.UTC).toLocalDateTime();
+            case DATE:
+                return LocalDate.ofEpochDay(value);
+            default:
+                return dictionaries.get(c).get((int) value);
+        }
+    }
+
+    /**
+     * 已读取的行数
+     */
+    public long getRowsRead() { return rowsRead; }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readRowGroup() throws IOException {
+        for (int c = 0; c < columns.size(); c++) {
+            if (nulls[c].length < groupRows) {
+                nulls[c] = new boolean[groupRows];
+                if (columns.get(c).getType() == ColumnType.DOUBLE) {
+                    doubles[c] = new double[groupRows];
+                } else {
+                    longs[c] = new long[groupRows];
+                }
+            }
+            readNulls(nulls[c]);
+            switch (columns.get(c).getType()) {
+                case DOUBLE:
+                    for (int r = 0; r < groupRows; r++) {
+                        if (!nulls[c][r]) {
+                            doubles[c][r] = in.readDouble();
+                        }
+                    }
+                    break;
+                case BOOLEAN:
+                    for (int r = 0; r < groupRows; r++) {
+                        if (!nulls[c][r]) {
+                            longs[c][r] = readBit() ? 1 : 0;
+                        }
+                    }
+                    skipBits();
+                    break;
+                case STRING:
+                    readDictionaryCodes(dictionaries.get(c), longs[c], nulls[c]);
+                    break;
+                default:
+                    readDeltas(longs[c], nulls[c]);
+                    break;
+            }
+        }
+    }
+
+    private void readNulls(boolean[] isNull) throws IOException {
+        boolean any = in.readByte() != 0;
+        for (int r = 0; r < groupRows; r++) {
+            isNull[r] = any && readBit();
+        }
+        skipBits();
+    }
+
+    // 位图每个字节含8位，低位在前
+    private boolean readBit() throws IOException {
+        if (pendingBitCount == 0) {
+            pendingBits = in.readUnsignedByte();
+            pendingBitCount = 8;
+        }
+        boolean value = (pendingBits & 1) != 0;
+        pendingBits >>>= 1;
+        pendingBitCount--;
+        return value;
+    }
+
+    // 位图按字节对齐，丢弃最后一个字节中未用的位
+    private void skipBits() {
+        pendingBits = 0;
+        pendingBitCount = 0;
+    }
+
+    private void readDeltas(long[] values, boolean[] isNull) throws IOException {
+        long previous = 0;
+        for (int r = 0; r < groupRows; r++) {
+            if (!isNull[r]) {
+                long zigzag = readVarint();
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                values[r] = previous;
+            }
+        }
+    }
+
+    private void readDictionaryCodes(List<String> dictionary, long[] codes, boolean[] isNull) throws IOException {
+        if (in.readByte() != 0) {
+            dictionary.clear();
+        }
+        long added = readVarint();
+        for (long i = 0; i < added; i++) {
+            dictionary.add(readString());
+        }
+        for (int r = 0; r < groupRows; r++) {
+            if (!isNull[r]) {
+                long code = readVarint();
+                if (code >= dictionary.size()) {
+                    throw new IOException("字典编码越界：" + code);
+                }
+                codes[r] = code;
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[(int) readVarint()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("varint 超过64位");
+    }
+}
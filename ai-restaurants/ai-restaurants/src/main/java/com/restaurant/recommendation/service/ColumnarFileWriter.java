@@ -0,0 +1,351 @@
+package com.restaurant.recommendation.service;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 列式导出文件写入器
+ * 行按行组（每组至多 rowGroupSize 行）缓存在各列的基本类型数组中，行组写满后逐列写出，整个文件以 GZIP 压缩。
+ * 内存占用只与行组大小和字符串字典上限有关，与导出的总行数无关。
+ *
+ * 文件格式（GZIP 解压后，多字节整数均为大端序）：
+ * 文件头为魔数 "RCOL"、格式版本 (int)、表名、列数 (varint)，以及每列的列名和类型编码 (byte)；
+ * 之后是若干行组，每组以行数 (varint) 开头，随后依次是各列的数据块；行数为 0 表示行组结束，
+ * 其后是文件总行数 (long)。字符串（表名、列名、字典项）均为 varint 字节长度加 UTF-8 字节。
+ *
+ * 每个列数据块先写空值标记 (byte)：0 表示本组无空值，1 表示其后是本组的空值位图（每行1位，低位在前）；
+ * 然后只写非空值：整数、时间、日期列写与上一个非空值之差的 zigzag varint（每组从0开始），
+ * 浮点列写 8 字节 IEEE 754，布尔列写位图，字符串列先写字典重置标记 (byte) 和本组新增的字典项
+ * （varint 项数加各项），再写各值的字典编码 (varint)。字典跨行组累积，超过上限后在下一组开头重置。
+ * 读取见 ColumnarFileReader
+ */
+public final class ColumnarFileWriter implements Closeable {
+
+    public static final String MAGIC = "RCOL";
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * 列类型，编码写入文件头
+     */
+    public enum ColumnType {
+        LONG(1),            // 64位整数
+        INT(2),             // 32位整数
+        DOUBLE(3),          // 双精度浮点
+        BOOLEAN(4),         // 布尔
+        TIMESTAMP(5),       // 时间，本地时间按 UTC 换算的毫秒数
+        DATE(6),            // 日期，距 1970-01-01 的天数
+        STRING(7);          // 字典编码字符串
+
+        private final int code;
+
+        ColumnType(int code) {
+            this.code = code;
+        }
+
+        public int getCode() { return code; }
+
+        /**
+         * 按编码查找列类型，未知编码返回 null
+         */
+        public static ColumnType of(int code) {
+            for (ColumnType type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 导出列定义
+     */
+    public static final class Column {
+        private final String name;
+        private final ColumnType type;
+
+        public Column(String name, ColumnType type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getName() { return name; }
+        public ColumnType getType() { return type; }
+    }
+
+    private final DataOutputStream out;
+    private final List<Column> columns;
+    private final int rowGroupSize;
+    private final int maxDictionarySize;
+
+    // 当前行组的列缓冲：浮点列用 doubles，其余列（含字典编码）用 longs
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final boolean[][] nulls;
+    private final Dictionary[] dictionaries;
+    private int rows;
+    private long totalRows;
+    private int pendingBits;
+    private int pendingBitCount;
+
+    public ColumnarFileWriter(OutputStream target, String table, List<Column> columns,
+                              int rowGroupSize, int maxDictionarySize) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(target, 1 << 16), 1 << 16));
+        this.columns = new ArrayList<>(columns);
+        this.rowGroupSize = rowGroupSize;
+        this.maxDictionarySize = maxDictionarySize;
+        int count = columns.size();
+        this.longs = new long[count][];
+        this.doubles = new double[count][];
+        this.nulls = new boolean[count][rowGroupSize];
+        this.dictionaries = new Dictionary[count];
+        for (int c = 0; c < count; c++) {
+            ColumnType type = columns.get(c).getType();
+            if (type == ColumnType.DOUBLE) {
+                doubles[c] = new double[rowGroupSize];
+            } else {
+                longs[c] = new long[rowGroupSize];
+            }
+            if (type == ColumnType.STRING) {
+                dictionaries[c] = new Dictionary();
+            }
+        }
+        writeHeader(table);
+    }
+
+    /**
+     * 按列定义的顺序和类型读取结果集的当前行（第 i 列对应结果集第 i + 1 列）
+     */
+    public void addRow(ResultSet rs) throws SQLException, IOException {
+        for (int c = 0; c < columns.size(); c++) {
+            int index = c + 1;
+            boolean isNull;
+            switch (columns.get(c).getType()) {
+                case LONG:
+                    longs[c][rows] = rs.getLong(index);
+                    isNull = rs.wasNull();
+                    break;
+                case INT:
+                    longs[c][rows] = rs.getInt(index);
+                    isNull = rs.wasNull();
+                    break;
+                case DOUBLE:
+                    doubles[c][rows] = rs.getDouble(index);
+                    isNull = rs.wasNull();
+                    break;
+                case BOOLEAN:
+                    longs[c][rows] = rs.getBoolean(index) ? 1 : 0;
+                    isNull = rs.wasNull();
+                    break;
+                case TIMESTAMP: {
+                    Timestamp value = rs.getTimestamp(index);
+                    isNull = value == null;
+                    longs[c][rows] = isNull ? 0 : value.toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+                    break;
+                }
+                case DATE: {
+                    Date value = rs.getDate(index);
+                    isNull = value == null;
+                    longs[c][rows] = isNull ? 0 : value.toLocalDate().toEpochDay();
+                    break;
+                }
+                default: {
+                    String value = rs.getString(index);
+                    isNull = value == null;
+                    longs[c][rows] = isNull ? 0 : dictionaries[c].intern(value);
+                    break;
+                }
+            }
+            nulls[c][rows] = isNull;
+        }
+        if (++rows == rowGroupSize) {
+            flushRowGroup();
+        }
+    }
+
+    public long getTotalRows() { return totalRows; }
+
+    /**
+     * 写出未满的行组和文件尾并关闭输出
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushRowGroup();
+            writeVarint(0);
+            out.writeLong(totalRows);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeHeader(String table) throws IOException {
+        out.write(MAGIC.getBytes(StandardCharsets.US_ASCII));
+        out.writeInt(FORMAT_VERSION);
+        writeString(table);
+        writeVarint(columns.size());
+        for (Column column : columns) {
+            writeString(column.getName());
+            out.writeByte(column.getType().getCode());
+        }
+    }
+
+    private void flushRowGroup() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        writeVarint(rows);
+        for (int c = 0; c < columns.size(); c++) {
+            writeNulls(nulls[c]);
+            switch (columns.get(c).getType()) {
+                case DOUBLE:
+                    for (int r = 0; r < rows; r++) {
+                        if (!nulls[c][r]) {
+                            out.writeDouble(doubles[c][r]);
+                        }
+                    }
+                    break;
+                case BOOLEAN:
+                    writeBooleans(longs[c], nulls[c]);
+                    break;
+                case STRING:
+                    writeDictionaryCodes(dictionaries[c], longs[c], nulls[c]);
+                    break;
+                default:
+                    writeDeltas(longs[c], nulls[c]);
+                    break;
+            }
+        }
+        totalRows += rows;
+        rows = 0;
+    }
+
+    private void writeNulls(boolean[] isNull) throws IOException {
+        boolean any = false;
+        for (int r = 0; r < rows && !any; r++) {
+            any = isNull[r];
+        }
+        out.writeByte(any ? 1 : 0);
+        if (any) {
+            for (int r = 0; r < rows; r++) {
+                writeBit(isNull[r]);
+            }
+            flushBits();
+        }
+    }
+
+    private void writeBooleans(long[] values, boolean[] isNull) throws IOException {
+        for (int r = 0; r < rows; r++) {
+            if (!isNull[r]) {
+                writeBit(values[r] != 0);
+            }
+        }
+        flushBits();
+    }
+
+    // 位图每8位打包为一个字节，低位在前
+    private void writeBit(boolean value) throws IOException {
+        if (value) {
+            pendingBits |= 1 << pendingBitCount;
+        }
+        if (++pendingBitCount == 8) {
+            flushBits();
+        }
+    }
+
+    private void flushBits() throws IOException {
+        if (pendingBitCount > 0) {
+            out.writeByte(pendingBits);
+            pendingBits = 0;
+            pendingBitCount = 0;
+        }
+    }
+
+    private void writeDeltas(long[] values, boolean[] isNull) throws IOException {
+        long previous = 0;
+        for (int r = 0; r < rows; r++) {
+            if (!isNull[r]) {
+                long delta = values[r] - previous;
+                writeVarint((delta << 1) ^ (delta >> 63));
+                previous = values[r];
+            }
+        }
+    }
+
+    private void writeDictionaryCodes(Dictionary dictionary, long[] codes, boolean[] isNull) throws IOException {
+        out.writeByte(dictionary.reset ? 1 : 0);
+        writeVarint(dictionary.size() - dictionary.written);
+        for (int i = dictionary.written; i < dictionary.size(); i++) {
+            writeString(dictionary.terms.get(i));
+        }
+        for (int r = 0; r < rows; r++) {
+            if (!isNull[r]) {
+                writeVarint(codes[r]);
+            }
+        }
+        dictionary.written = dictionary.size();
+        dictionary.reset = false;
+        if (dictionary.size() >= maxDictionarySize) {
+            dictionary.clear();
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * 单列的字符串字典，按首次出现顺序分配编码；written 为已写入文件的项数
+     */
+    private static final class Dictionary {
+        final List<String> terms = new ArrayList<>();
+        final Map<String, Integer> codes = new HashMap<>();
+        int written;
+        boolean reset;
+
+        int intern(String term) {
+            Integer code = codes.get(term);
+            if (code == null) {
+                code = terms.size();
+                terms.add(term);
+                codes.put(term, code);
+            }
+            return code;
+        }
+
+        int size() {
+            return terms.size();
+        }
+
+        void clear() {
+            terms.clear();
+            codes.clear();
+            written = 0;
+            reset = true;
+        }
+    }
+}
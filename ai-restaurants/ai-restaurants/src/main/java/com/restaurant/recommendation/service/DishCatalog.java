@@ -0,0 +1,294 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.Dish;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 菜品目录快照（不可变，按列存储）
+ * 营养成分存为基本类型数组，菜系、口味做字典编码，过敏原等多值标签存为位图；
+ * 空值统一用 Double.NaN 表示，任何与 NaN 的比较结果均为 false。
+ * 菜品按ID升序存放，下标顺序与倒排表顺序一致
+ */
+public final class DishCatalog {
+
+    // 新增或修改日志保留的条数
+    private static final int UPSERT_LOG_SIZE = 64;
+
+    private final long version;
+    private final long upsertVersion;    // 最近一次新增或修改菜品时的版本，仅删除菜品不改变该值
+
+    // 最近新增或修改的菜品ID及其版本（版本升序）；upsertLogBase 之后的每次新增或修改都在日志中
+    private final long upsertLogBase;
+    private final long[] upsertedVersions;
+    private final long[] upsertedIds;
+    private final int size;
+
+    private final Dish[] dishes;
+    private final long[] ids;
+    private final Map<Long, Integer> indexById;
+
+    // 营养成分列
+    private final double[] calories;
+    private final double[] protein;
+    private final double[] fat;
+    private final double[] carbohydrate;
+    private final double[] fiber;
+    private final double[] sodium;
+    private final double[] cholesterol;
+    private final double[] rating;
+
+    // 字典编码列
+    private final TermDictionary cuisines;
+    private final int[] cuisineCodes;
+    private final TermDictionary flavors;
+    private final int[] flavorCodes;
+
+    // 标签位图列
+    private final TagColumn allergens;
+    private final TagColumn dietaryTags;
+    private final TagColumn healthBenefits;
+    private final TagColumn healthWarnings;
+    private final boolean[] containsMeat;    // 食材含肉或鱼，用于素食限制
+
+    // 食材列：字典编码后按菜品连续存放，第 i 道菜品的食材编码位于 [ingredientOffsets[i], ingredientOffsets[i+1])
+    private final TermDictionary ingredients;
+    private final int[] ingredientOffsets;
+    private final int[] ingredientCodes;
+    private final boolean[] hasIngredients;  // 食材列表是否非空值（空列表也算有值）
+
+    // 属性倒排索引，与快照同步更新
+    private final DishIndex index;
+
+    private DishCatalog(long version, long upsertVersion, long upsertLogBase, long[] upsertedVersions,
+                        long[] upsertedIds, List<Dish> source, DishIndex index) {
+        this.version = version;
+        this.upsertVersion = upsertVersion;
+        this.upsertLogBase = upsertLogBase;
+        this.upsertedVersions = upsertedVersions;
+        this.upsertedIds = upsertedIds;
+        this.index = index;
+        this.size = source.size();
+        this.dishes = source.toArray(new Dish[0]);
+        this.ids = new long[size];
+        this.indexById = new HashMap<>(size * 2);
+        this.calories = new double[size];
+        this.protein = new double[size];
+        this.fat = new double[size];
+        this.carbohydrate = new double[size];
+        this.fiber = new double[size];
+        this.sodium = new double[size];
+        this.cholesterol = new double[size];
+        this.rating = new double[size];
+        this.cuisineCodes = new int[size];
+        this.flavorCodes = new int[size];
+        this.containsMeat = new boolean[size];
+        this.ingredientOffsets = new int[size + 1];
+        this.hasIngredients = new boolean[size];
+
+        TermDictionary.Builder cuisineBuilder = new TermDictionary.Builder();
+        TermDictionary.Builder flavorBuilder = new TermDictionary.Builder();
+        TermDictionary.Builder ingredientBuilder = new TermDictionary.Builder();
+        List<Integer> ingredientCodeList = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            Dish dish = dishes[i];
+            ids[i] = dish.getId();
+            indexById.put(dish.getId(), i);
+
+            calories[i] = valueOf(dish.getCalories());
+            protein[i] = valueOf(dish.getProtein());
+            fat[i] = valueOf(dish.getFat());
+            carbohydrate[i] = valueOf(dish.getCarbohydrate());
+            fiber[i] = valueOf(dish.getFiber());
+            sodium[i] = valueOf(dish.getSodium());
+            cholesterol[i] = valueOf(dish.getCholesterol());
+            rating[i] = valueOf(dish.getRating());
+
+            cuisineCodes[i] = cuisineBuilder.intern(dish.getCuisine());
+            flavorCodes[i] = flavorBuilder.intern(dish.getFlavor());
+
+            containsMeat[i] = DishIndex.containsMeat(dish);
+
+            hasIngredients[i] = dish.getIngredients() != null;
+            if (hasIngredients[i]) {
+                for (String ingredient : dish.getIngredients()) {
+                    ingredientCodeList.add(ingredientBuilder.intern(ingredient));
+                }
+            }
+            ingredientOffsets[i + 1] = ingredientCodeList.size();
+        }
+
+        this.cuisines = cuisineBuilder.build();
+        this.flavors = flavorBuilder.build();
+        this.ingredients = ingredientBuilder.build();
+        this.ingredientCodes = ingredientCodeList.stream().mapToInt(Integer::intValue).toArray();
+
+        List<Dish> all = Arrays.asList(dishes);
+        this.allergens = TagColumn.of(all.stream().map(Dish::getAllergens).collect(Collectors.toList()));
+        this.dietaryTags = TagColumn.of(all.stream().map(Dish::getDietaryTags).collect(Collectors.toList()));
+        this.healthBenefits = TagColumn.of(all.stream().map(Dish::getHealthBenefits).collect(Collectors.toList()));
+        this.healthWarnings = TagColumn.of(all.stream().map(Dish::getHealthWarnings).collect(Collectors.toList()));
+    }
+
+    /**
+     * 根据菜品列表构建快照，菜品按ID升序排列
+     */
+    public static DishCatalog of(long version, List<Dish> dishes) {
+        List<Dish> sorted = new ArrayList<>(dishes);
+        sorted.sort(Comparator.comparing(Dish::getId));
+        return new DishCatalog(version, version, version, new long[0], new long[0], sorted, DishIndex.build(sorted));
+    }
+
+    /**
+     * 空目录
+     */
+    public static DishCatalog empty() {
+        List<Dish> none = Collections.emptyList();
+        return new DishCatalog(0, 0, 0, new long[0], new long[0], none, DishIndex.build(none));
+    }
+
+    /**
+     * 新增或替换一道菜品，返回新版本快照；新增菜品按ID插入到有序位置
+     */
+    public DishCatalog withDish(Dish dish) {
+        List<Dish> next = new ArrayList<>(Arrays.asList(dishes));
+        int position = indexOf(dish.getId());
+        Dish previous = null;
+        if (position >= 0) {
+            previous = next.set(position, dish);
+        } else {
+            position = -Arrays.binarySearch(ids, dish.getId()) - 1;
+            next.add(position, dish);
+        }
+        // 日志满时丢弃最早的记录，日志起点前移到被丢弃记录的版本
+        int keep = Math.min(upsertedIds.length, UPSERT_LOG_SIZE - 1);
+        int drop = upsertedIds.length - keep;
+        long logBase = drop > 0 ? upsertedVersions[drop - 1] : upsertLogBase;
+        long[] versions = Arrays.copyOfRange(upsertedVersions, drop, upsertedVersions.length + 1);
+        long[] logIds = Arrays.copyOfRange(upsertedIds, drop, upsertedIds.length + 1);
+        versions[keep] = version + 1;
+        logIds[keep] = dish.getId();
+        return new DishCatalog(version + 1, version + 1, logBase, versions, logIds, next,
+                index.withDish(previous, dish));
+    }
+
+    /**
+     * 移除一道菜品，返回新版本快照
+     */
+    public DishCatalog withoutDish(Long dishId) {
+        int position = indexOf(dishId);
+        if (position < 0) {
+            return this;
+        }
+        List<Dish> next = new ArrayList<>(Arrays.asList(dishes));
+        Dish previous = next.remove(position);
+        return new DishCatalog(version + 1, upsertVersion, upsertLogBase, upsertedVersions, upsertedIds, next,
+                index.withoutDish(previous));
+    }
+
+    private static double valueOf(Number value) {
+        return value != null ? value.doubleValue() : Double.NaN;
+    }
+
+    public long getVersion() { return version; }
+    public long getUpsertVersion() { return upsertVersion; }
+
+    /**
+     * 指定版本之后新增或修改过的菜品ID（可能重复，菜品可能已被删除）；日志已不能覆盖该版本时返回 null
+     */
+    public long[] upsertedSince(long sinceVersion) {
+        if (sinceVersion < upsertLogBase) {
+            return null;
+        }
+        int from = upsertedVersions.length;
+        while (from > 0 && upsertedVersions[from - 1] > sinceVersion) {
+            from--;
+        }
+        return Arrays.copyOfRange(upsertedIds, from, upsertedIds.length);
+    }
+    public int size() { return size; }
+
+    public Dish dish(int index) { return dishes[index]; }
+    public long id(int index) { return ids[index]; }
+
+    /**
+     * 根据菜品ID查找下标，不存在返回 -1
+     */
+    public int indexOf(Long dishId) {
+        Integer index = indexById.get(dishId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 将升序的菜品ID倒排表转换为目录下标（同为升序），不在目录中的ID被忽略
+     */
+    public int[] indexesOf(long[] sortedIds) {
+        int[] result = new int[sortedIds.length];
+        int n = 0;
+        int from = 0;
+        for (long id : sortedIds) {
+            int position = Arrays.binarySearch(ids, from, size, id);
+            if (position >= 0) {
+                result[n++] = position;
+                from = position + 1;
+            } else {
+                from = -position - 1;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 按升序的菜品ID倒排表取出菜品
+     */
+    public List<Dish> dishesOf(long[] sortedIds) {
+        int[] indexes = indexesOf(sortedIds);
+        List<Dish> result = new ArrayList<>(indexes.length);
+        for (int i : indexes) {
+            result.add(dishes[i]);
+        }
+        return result;
+    }
+
+    public DishIndex getIndex() { return index; }
+
+    public List<Dish> dishes() {
+        return Collections.unmodifiableList(Arrays.asList(dishes));
+    }
+
+    public double calories(int index) { return calories[index]; }
+    public double protein(int index) { return protein[index]; }
+    public double fat(int index) { return fat[index]; }
+    public double carbohydrate(int index) { return carbohydrate[index]; }
+    public double fiber(int index) { return fiber[index]; }
+    public double sodium(int index) { return sodium[index]; }
+    public double cholesterol(int index) { return cholesterol[index]; }
+    public double rating(int index) { return rating[index]; }
+
+    public TermDictionary getCuisines() { return cuisines; }
+    public int cuisineCode(int index) { return cuisineCodes[index]; }
+    public String cuisine(int index) { return cuisines.term(cuisineCodes[index]); }
+
+    public TermDictionary getFlavors() { return flavors; }
+    public int flavorCode(int index) { return flavorCodes[index]; }
+    public String flavor(int index) { return flavors.term(flavorCodes[index]); }
+
+    public TagColumn getAllergens() { return allergens; }
+    public TagColumn getDietaryTags() { return dietaryTags; }
+    public TagColumn getHealthBenefits() { return healthBenefits; }
+    public TagColumn getHealthWarnings() { return healthWarnings; }
+    public boolean containsMeat(int index) { return containsMeat[index]; }
+
+    public TermDictionary getIngredients() { return ingredients; }
+    public boolean hasIngredients(int index) { return hasIngredients[index]; }
+    public int ingredientStart(int index) { return ingredientOffsets[index]; }
+    public int ingredientEnd(int index) { return ingredientOffsets[index + 1]; }
+    public int ingredientCode(int position) { return ingredientCodes[position]; }
+}
@@ -0,0 +1,239 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.Dish;
+import com.restaurant.recommendation.repository.DishRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 菜品目录服务
+ * 维护当前生效的 {@link DishCatalog} 快照；菜品增删改时生成新快照并整体替换，
+ * 正在执行的推荐请求继续使用旧快照，读路径不访问数据库；按属性、营养区间查询菜品走快照内的倒排索引和范围索引；
+ * 按ID批量取菜品时只有快照中不存在的ID才合并为一次数据库查询
+ */
+@Service
+public class DishCatalogService {
+
+    @Autowired
+    private DishRepository dishRepository;
+
+    private volatile DishCatalog catalog = DishCatalog.empty();
+
+    /**
+     * 获取当前快照
+     */
+    public DishCatalog current() {
+        return catalog;
+    }
+
+    /**
+     * 按ID批量取菜品，结果保持请求中的顺序和重复项，不存在的ID被忽略；
+     * 快照未命中的ID合并为一次 findAllById 查询。查到的菜品不补入快照，快照只由菜品增删改和全量重建更新，
+     * 避免与并发删除交错时把已删除的菜品写回快照
+     */
+    @Transactional(readOnly = true)
+    public List<Dish> resolve(List<Long> dishIds) {
+        DishCatalog snapshot = catalog;
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long dishId : dishIds) {
+            if (dishId != null && snapshot.indexOf(dishId) < 0) {
+                missing.add(dishId);
+            }
+        }
+        Map<Long, Dish> loaded = new HashMap<>();
+        if (!missing.isEmpty()) {
+            for (Dish dish : dishRepository.findAllById(missing)) {
+                initializeCollections(dish);
+                loaded.put(dish.getId(), dish);
+            }
+        }
+        List<Dish> result = new ArrayList<>(dishIds.size());
+        for (Long dishId : dishIds) {
+            int index = dishId != null ? snapshot.indexOf(dishId) : -1;
+            Dish dish = index >= 0 ? snapshot.dish(index) : loaded.get(dishId);
+            if (dish != null) {
+                result.add(dish);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按ID取单个菜品，不存在时抛出异常
+     */
+    public Dish resolve(Long dishId) {
+        List<Dish> dishes = resolve(Collections.singletonList(dishId));
+        if (dishes.isEmpty()) {
+            throw new RuntimeException("菜品不存在");
+        }
+        return dishes.get(0);
+    }
+
+    /**
+     * 取快照中ID最小的若干道菜品作为示例，不访问数据库
+     */
+    public List<Dish> sample(int count) {
+        DishCatalog snapshot = catalog;
+        int n = Math.max(0, Math.min(count, snapshot.size()));
+        List<Dish> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(snapshot.dish(i));
+        }
+        return result;
+    }
+
+    /**
+     * 按属性组合检索菜品：同一属性的多个取值取并集，饮食标签要求全部满足，
+     * 不同属性之间取交集，最后排除含指定过敏原的菜品；参数为空表示不限制
+     */
+    public List<Dish> search(Collection<String> cuisines, Collection<String> flavors, Collection<String> tags,
+                             Collection<String> diseases, Collection<String> excludedAllergens,
+                             Double minCalories, Double maxCalories, Double minProtein, Double maxFat) {
+        DishCatalog snapshot = catalog;
+        DishIndex index = snapshot.getIndex();
+        long[] ids = index.all();
+        if (!isEmpty(cuisines)) {
+            ids = PostingList.intersect(ids, index.any(DishIndex.Attribute.CUISINE, cuisines));
+        }
+        if (!isEmpty(flavors)) {
+            ids = PostingList.intersect(ids, index.any(DishIndex.Attribute.FLAVOR, flavors));
+        }
+        if (!isEmpty(tags)) {
+            ids = PostingList.intersect(ids, index.every(DishIndex.Attribute.DIETARY_TAG, tags));
+        }
+        if (!isEmpty(diseases)) {
+            ids = PostingList.intersect(ids, index.any(DishIndex.Attribute.HEALTH_BENEFIT, diseases));
+        }
+        if (!isEmpty(excludedAllergens)) {
+            ids = PostingList.difference(ids, index.any(DishIndex.Attribute.ALLERGEN, excludedAllergens));
+        }
+        if (minCalories != null || maxCalories != null) {
+            ids = PostingList.intersect(ids, index.range(DishIndex.Nutrient.CALORIES).between(
+                    minCalories != null ? minCalories : Double.NEGATIVE_INFINITY,
+                    maxCalories != null ? maxCalories : Double.POSITIVE_INFINITY));
+        }
+        if (minProtein != null) {
+            ids = PostingList.intersect(ids, index.range(DishIndex.Nutrient.PROTEIN).atLeast(minProtein));
+        }
+        if (maxFat != null) {
+            ids = PostingList.intersect(ids, index.range(DishIndex.Nutrient.FAT).atMost(maxFat));
+        }
+        return snapshot.dishesOf(ids);
+    }
+
+    /**
+     * 热量在 [min, max] 内的菜品，按ID升序
+     */
+    public List<Dish> findByCaloriesRange(double minCalories, double maxCalories) {
+        DishCatalog snapshot = catalog;
+        return snapshot.dishesOf(snapshot.getIndex().range(DishIndex.Nutrient.CALORIES)
+                .between(minCalories, maxCalories));
+    }
+
+    /**
+     * 蛋白质高于阈值的菜品，按蛋白质降序
+     */
+    public List<Dish> findHighProtein(double minProtein) {
+        DishCatalog snapshot = catalog;
+        NutrientRangeIndex protein = snapshot.getIndex().range(DishIndex.Nutrient.PROTEIN);
+        return inOrder(snapshot, protein.descending(protein.upperBound(minProtein), protein.size()));
+    }
+
+    /**
+     * 脂肪低于阈值的菜品，按脂肪升序
+     */
+    public List<Dish> findLowFat(double maxFat) {
+        DishCatalog snapshot = catalog;
+        NutrientRangeIndex fat = snapshot.getIndex().range(DishIndex.Nutrient.FAT);
+        return inOrder(snapshot, fat.ascending(0, fat.lowerBound(maxFat)));
+    }
+
+    private static List<Dish> inOrder(DishCatalog snapshot, long[] ids) {
+        List<Dish> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            int index = snapshot.indexOf(id);
+            if (index >= 0) {
+                result.add(snapshot.dish(index));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 属性等于某个取值的菜品
+     */
+    public List<Dish> findBy(DishIndex.Attribute attribute, String value) {
+        DishCatalog snapshot = catalog;
+        return snapshot.dishesOf(snapshot.getIndex().lookup(attribute, value));
+    }
+
+    /**
+     * 不含某个属性取值的菜品
+     */
+    public List<Dish> findWithout(DishIndex.Attribute attribute, String value) {
+        DishCatalog snapshot = catalog;
+        DishIndex index = snapshot.getIndex();
+        return snapshot.dishesOf(PostingList.difference(index.all(), index.lookup(attribute, value)));
+    }
+
+    private static boolean isEmpty(Collection<String> values) {
+        return values == null || values.isEmpty();
+    }
+
+    /**
+     * 从数据库全量重建快照；启动时先于其他依赖菜品快照的监听器执行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional(readOnly = true)
+    public synchronized void reload() {
+        List<Dish> dishes = dishRepository.findAll();
+        dishes.forEach(DishCatalogService::initializeCollections);
+        catalog = DishCatalog.of(catalog.getVersion() + 1, dishes);
+    }
+
+    /**
+     * 新增或更新菜品后刷新快照
+     */
+    public synchronized void onDishSaved(Dish dish) {
+        initializeCollections(dish);
+        catalog = catalog.withDish(dish);
+    }
+
+    /**
+     * 删除菜品后刷新快照
+     */
+    public synchronized void onDishDeleted(Long dishId) {
+        catalog = catalog.withoutDish(dishId);
+    }
+
+    /**
+     * 快照中的实体会脱离持久化上下文，需提前加载延迟集合
+     */
+    private static void initializeCollections(Dish dish) {
+        touch(dish.getIngredients());
+        touch(dish.getAllergens());
+        touch(dish.getDietaryTags());
+        touch(dish.getHealthBenefits());
+        touch(dish.getHealthWarnings());
+    }
+
+    private static void touch(List<String> values) {
+        if (values != null) {
+            values.size();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.dto.RecommendationRequest;
+import java.util.Set;
+
+/**
+ * 编译后的菜品硬过滤条件
+ * 用户画像中的过敏原、饮食限制、疾病在构建时一次性编译为目录位图掩码，
+ * 单道菜品的判断只剩若干次按位与和数值比较；掩码只对构建时的目录快照有效。
+ * 生成候选集时用倒排索引排除命中过敏原、疾病禁忌和荤菜限制的菜品，再与营养范围索引的结果取交集
+ */
+public final class DishFilter {
+
+    private final DishCatalog catalog;
+    private final Set<String> allergies;
+    private final Set<String> diseases;
+    private final long[] allergenMask;
+    private final long[] warningMask;
+    private final boolean vegetarian;
+    private final double maxCalories;
+    private final double minProtein;
+    private final double maxFat;
+
+    private DishFilter(DishCatalog catalog, Set<String> allergies, Set<String> diseases, boolean vegetarian,
+                       Integer maxCalories, Integer minProtein, Integer maxFat) {
+        this.catalog = catalog;
+        this.allergies = allergies;
+        this.diseases = diseases;
+        this.allergenMask = catalog.getAllergens().mask(allergies);
+        this.warningMask = catalog.getHealthWarnings().mask(diseases);
+        this.vegetarian = vegetarian;
+        this.maxCalories = maxCalories != null ? maxCalories : Double.POSITIVE_INFINITY;
+        this.minProtein = minProtein != null ? minProtein : Double.NEGATIVE_INFINITY;
+        this.maxFat = maxFat != null ? maxFat : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * 根据用户画像（已叠加请求中的过敏原和饮食限制）和推荐请求的营养阈值编译过滤条件
+     */
+    public static DishFilter compile(DishCatalog catalog, UserProfile profile, RecommendationRequest request) {
+        boolean vegetarian = profile.getDietaryRestrictions().contains("素食");
+        return new DishFilter(catalog, profile.getAllergies(), profile.getDiseases(), vegetarian,
+                request.getMaxCalories(), request.getMinProtein(), request.getMaxFat());
+    }
+
+    /**
+     * 生成通过全部硬过滤条件的候选菜品下标（升序）
+     */
+    public int[] candidates() {
+        DishIndex index = catalog.getIndex();
+        long[] excluded = PostingList.union(
+                index.any(DishIndex.Attribute.ALLERGEN, allergies),
+                index.any(DishIndex.Attribute.HEALTH_WARNING, diseases));
+        if (vegetarian) {
+            excluded = PostingList.union(excluded, index.meat());
+        }
+        long[] ids = PostingList.difference(index.all(), excluded);
+
+        // 营养阈值走范围索引，缺失该项数值的菜品不参与过滤
+        if (maxCalories != Double.POSITIVE_INFINITY) {
+            NutrientRangeIndex calories = index.range(DishIndex.Nutrient.CALORIES);
+            ids = PostingList.intersect(ids, PostingList.union(calories.atMost(maxCalories), calories.missing()));
+        }
+        if (minProtein != Double.NEGATIVE_INFINITY) {
+            NutrientRangeIndex protein = index.range(DishIndex.Nutrient.PROTEIN);
+            ids = PostingList.intersect(ids, PostingList.union(protein.atLeast(minProtein), protein.missing()));
+        }
+        if (maxFat != Double.POSITIVE_INFINITY) {
+            NutrientRangeIndex fat = index.range(DishIndex.Nutrient.FAT);
+            ids = PostingList.intersect(ids, PostingList.union(fat.atMost(maxFat), fat.missing()));
+        }
+        return catalog.indexesOf(ids);
+    }
+
+    /**
+     * 判断菜品是否通过全部硬过滤条件
+     */
+    public boolean accepts(int index) {
+        // 缺失的营养值为 NaN，比较结果为 false，即不参与过滤
+        if (catalog.calories(index) > maxCalories
+                || catalog.protein(index) < minProtein
+                || catalog.fat(index) > maxFat) {
+            return false;
+        }
+        if (vegetarian && catalog.containsMeat(index)) {
+            return false;
+        }
+        return !catalog.getAllergens().intersects(index, allergenMask)
+                && !catalog.getHealthWarnings().intersects(index, warningMask);
+    }
+
+}
@@ -0,0 +1,260 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.Dish;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 菜品属性倒排索引（不可变）
+ * 每个 属性取值 对应一个按菜品ID升序的倒排表，候选集通过倒排表的交、并、差运算得到。
+ * 热量、蛋白质、脂肪另建范围索引，区间结果同样是按ID升序的倒排表。
+ * 菜品增删改时只复制受影响的倒排表，其余倒排表在新旧快照之间共享
+ */
+public final class DishIndex {
+
+    /**
+     * 建立索引的菜品属性
+     */
+    public enum Attribute {
+        CUISINE,
+        FLAVOR,
+        INGREDIENT,
+        ALLERGEN,
+        DIETARY_TAG,
+        HEALTH_BENEFIT,
+        HEALTH_WARNING
+    }
+
+    /**
+     * 建立范围索引的营养成分
+     */
+    public enum Nutrient {
+        CALORIES(Dish::getCalories),
+        PROTEIN(Dish::getProtein),
+        FAT(Dish::getFat);
+
+        private final Function<Dish, Double> getter;
+
+        Nutrient(Function<Dish, Double> getter) {
+            this.getter = getter;
+        }
+    }
+
+    private final long[] all;
+    private final long[] meat;                         // 食材含肉或鱼的菜品
+    private final Map<Attribute, Map<String, long[]>> postings;
+    private final Map<Nutrient, NutrientRangeIndex> ranges;
+
+    private DishIndex(long[] all, long[] meat, Map<Attribute, Map<String, long[]>> postings,
+                      Map<Nutrient, NutrientRangeIndex> ranges) {
+        this.all = all;
+        this.meat = meat;
+        this.postings = postings;
+        this.ranges = ranges;
+    }
+
+    /**
+     * 全量构建索引
+     */
+    public static DishIndex build(List<Dish> dishes) {
+        List<Dish> sorted = new ArrayList<>(dishes);
+        sorted.sort(Comparator.comparing(Dish::getId));
+
+        Map<Attribute, Map<String, List<Long>>> collected = new EnumMap<>(Attribute.class);
+        for (Attribute attribute : Attribute.values()) {
+            collected.put(attribute, new HashMap<>());
+        }
+        List<Long> all = new ArrayList<>(sorted.size());
+        List<Long> meat = new ArrayList<>();
+        for (Dish dish : sorted) {
+            all.add(dish.getId());
+            if (containsMeat(dish)) {
+                meat.add(dish.getId());
+            }
+            for (Attribute attribute : Attribute.values()) {
+                for (String value : valuesOf(dish, attribute)) {
+                    collected.get(attribute).computeIfAbsent(value, v -> new ArrayList<>()).add(dish.getId());
+                }
+            }
+        }
+
+        Map<Attribute, Map<String, long[]>> postings = new EnumMap<>(Attribute.class);
+        for (Map.Entry<Attribute, Map<String, List<Long>>> entry : collected.entrySet()) {
+            Map<String, long[]> lists = new HashMap<>();
+            entry.getValue().forEach((value, ids) -> lists.put(value, toArray(ids)));
+            postings.put(entry.getKey(), lists);
+        }
+        Map<Nutrient, NutrientRangeIndex> ranges = new EnumMap<>(Nutrient.class);
+        for (Nutrient nutrient : Nutrient.values()) {
+            ranges.put(nutrient, NutrientRangeIndex.build(sorted, nutrient.getter));
+        }
+        return new DishIndex(toArray(all), toArray(meat), postings, ranges);
+    }
+
+    private static long[] toArray(List<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * 新增或修改菜品后的索引；previous 为修改前的菜品，新增时为 null
+     */
+    public DishIndex withDish(Dish previous, Dish current) {
+        long id = current.getId();
+        Map<Attribute, Map<String, long[]>> next = new EnumMap<>(postings);
+        for (Attribute attribute : Attribute.values()) {
+            Set<String> before = previous != null ? valuesOf(previous, attribute) : Collections.<String>emptySet();
+            Set<String> after = valuesOf(current, attribute);
+            if (before.equals(after)) {
+                continue;
+            }
+            Map<String, long[]> lists = new HashMap<>(postings.get(attribute));
+            for (String value : before) {
+                if (!after.contains(value)) {
+                    removeFrom(lists, value, id);
+                }
+            }
+            for (String value : after) {
+                if (!before.contains(value)) {
+                    lists.put(value, PostingList.insert(lists.getOrDefault(value, PostingList.EMPTY), id));
+                }
+            }
+            next.put(attribute, lists);
+        }
+        long[] nextMeat = containsMeat(current) ? PostingList.insert(meat, id) : PostingList.remove(meat, id);
+        Map<Nutrient, NutrientRangeIndex> nextRanges = new EnumMap<>(Nutrient.class);
+        for (Nutrient nutrient : Nutrient.values()) {
+            nextRanges.put(nutrient, ranges.get(nutrient).withDish(previous, current));
+        }
+        return new DishIndex(PostingList.insert(all, id), nextMeat, next, nextRanges);
+    }
+
+    /**
+     * 删除菜品后的索引
+     */
+    public DishIndex withoutDish(Dish previous) {
+        long id = previous.getId();
+        Map<Attribute, Map<String, long[]>> next = new EnumMap<>(postings);
+        for (Attribute attribute : Attribute.values()) {
+            Set<String> before = valuesOf(previous, attribute);
+            if (before.isEmpty()) {
+                continue;
+            }
+            Map<String, long[]> lists = new HashMap<>(postings.get(attribute));
+            for (String value : before) {
+                removeFrom(lists, value, id);
+            }
+            next.put(attribute, lists);
+        }
+        Map<Nutrient, NutrientRangeIndex> nextRanges = new EnumMap<>(Nutrient.class);
+        for (Nutrient nutrient : Nutrient.values()) {
+            nextRanges.put(nutrient, ranges.get(nutrient).withoutDish(previous));
+        }
+        return new DishIndex(PostingList.remove(all, id), PostingList.remove(meat, id), next, nextRanges);
+    }
+
+    private static void removeFrom(Map<String, long[]> lists, String value, long id) {
+        long[] list = lists.get(value);
+        if (list == null) {
+            return;
+        }
+        long[] remaining = PostingList.remove(list, id);
+        if (remaining.length == 0) {
+            lists.remove(value);
+        } else {
+            lists.put(value, remaining);
+        }
+    }
+
+    /**
+     * 全部菜品ID
+     */
+    public long[] all() {
+        return all;
+    }
+
+    /**
+     * 食材含肉或鱼的菜品ID
+     */
+    public long[] meat() {
+        return meat;
+    }
+
+    /**
+     * 营养成分范围索引
+     */
+    public NutrientRangeIndex range(Nutrient nutrient) {
+        return ranges.get(nutrient);
+    }
+
+    /**
+     * 属性等于某个取值的菜品ID
+     */
+    public long[] lookup(Attribute attribute, String value) {
+        long[] list = value != null ? postings.get(attribute).get(value) : null;
+        return list != null ? list : PostingList.EMPTY;
+    }
+
+    /**
+     * 属性取值为给定值之一的菜品ID（各倒排表的并集）
+     */
+    public long[] any(Attribute attribute, Collection<String> values) {
+        long[] result = PostingList.EMPTY;
+        if (values != null) {
+            for (String value : values) {
+                result = PostingList.union(result, lookup(attribute, value));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 属性同时包含全部给定值的菜品ID（各倒排表的交集）
+     */
+    public long[] every(Attribute attribute, Collection<String> values) {
+        long[] result = all;
+        for (String value : values) {
+            result = PostingList.intersect(result, lookup(attribute, value));
+        }
+        return result;
+    }
+
+    private static Set<String> valuesOf(Dish dish, Attribute attribute) {
+        switch (attribute) {
+            case CUISINE: return singleton(dish.getCuisine());
+            case FLAVOR: return singleton(dish.getFlavor());
+            case INGREDIENT: return toSet(dish.getIngredients());
+            case ALLERGEN: return toSet(dish.getAllergens());
+            case DIETARY_TAG: return toSet(dish.getDietaryTags());
+            case HEALTH_BENEFIT: return toSet(dish.getHealthBenefits());
+            case HEALTH_WARNING: return toSet(dish.getHealthWarnings());
+            default: throw new IllegalArgumentException(attribute.name());
+        }
+    }
+
+    private static Set<String> singleton(String value) {
+        return value != null ? Collections.singleton(value) : Collections.<String>emptySet();
+    }
+
+    private static Set<String> toSet(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> set = new HashSet<>(values);
+        set.remove(null);
+        return set;
+    }
+
+    static boolean containsMeat(Dish dish) {
+        return dish.getIngredients() != null && dish.getIngredients().stream()
+                .anyMatch(ingredient -> ingredient.contains("肉") || ingredient.contains("鱼"));
+    }
+}
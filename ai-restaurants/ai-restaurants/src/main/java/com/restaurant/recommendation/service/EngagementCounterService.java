@@ -0,0 +1,249 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.EngagementCounter;
+import com.restaurant.recommendation.entity.Recommendation;
+import com.restaurant.recommendation.repository.EngagementCounterRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 推荐曝光、点击、下单计数
+ * 按用户和按菜品分别维护内存计数器（LongAdder，写入无锁竞争），点击率和转化率为 O(1) 读取。
+ * 推荐保存和反馈更新时增量累加，定时将有变化的计数器写入 engagement_counters 表，并刷新供评分使用的菜品热度快照。
+ * 启动时把表中上次写入的累计值加到计数器上：表只由本服务写入，启动后的增量都不在表中，先到的事件不会重复计数；
+ * 加载完成前不写表，避免只含本次增量的计数覆盖持久化的累计值
+ */
+@Service
+public class EngagementCounterService {
+
+    @Autowired
+    private EngagementCounterRepository counterRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final ConcurrentHashMap<Long, Counters> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Counters> dishes = new ConcurrentHashMap<>();
+
+    // 菜品ID -> 热度（平滑后的点击与下单比例），定时刷新
+    private volatile LongDoubleHashMap popularity = new LongDoubleHashMap(16);
+
+    private volatile boolean seeded;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 启动时加载持久化的累计计数
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void seed() {
+        if (seeded) {
+            return;
+        }
+        for (EngagementCounter row : counterRepository.findAll()) {
+            Map<Long, Counters> target = EngagementCounter.SCOPE_USER.equals(row.getScope()) ? users : dishes;
+            // 已持久化的部分不标记为有变化，只有启动后被累加过的计数器才需要重新写入
+            Counters counters = counters(target, row.getTargetId());
+            counters.impressions.add(value(row.getImpressions()));
+            counters.clicks.add(value(row.getClicks()));
+            counters.orders.add(value(row.getOrders()));
+        }
+        seeded = true;
+        refreshPopularity();
+    }
+
+    private static long value(Long count) {
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * 记录一批推荐曝光
+     */
+    public void recordImpressions(List<Recommendation> recommendations) {
+        for (Recommendation recommendation : recommendations) {
+            Counters user = counters(users, recommendation.getUser().getId());
+            Counters dish = counters(dishes, recommendation.getDish().getId());
+            int clicked = Boolean.TRUE.equals(recommendation.getIsClicked()) ? 1 : 0;
+            int ordered = Boolean.TRUE.equals(recommendation.getIsOrdered()) ? 1 : 0;
+            user.add(1, clicked, ordered);
+            dish.add(1, clicked, ordered);
+        }
+    }
+
+    /**
+     * 记录一条推荐记录的点击、下单状态变化
+     */
+    public void recordFeedback(Long userId, Long dishId, Boolean wasClicked, Boolean isClicked,
+                               Boolean wasOrdered, Boolean isOrdered) {
+        int clicks = delta(wasClicked, isClicked);
+        int orders = delta(wasOrdered, isOrdered);
+        if (clicks == 0 && orders == 0) {
+            return;
+        }
+        counters(users, userId).add(0, clicks, orders);
+        counters(dishes, dishId).add(0, clicks, orders);
+    }
+
+    private static int delta(Boolean before, Boolean after) {
+        return (Boolean.TRUE.equals(after) ? 1 : 0) - (Boolean.TRUE.equals(before) ? 1 : 0);
+    }
+
+    private static Counters counters(Map<Long, Counters> target, Long id) {
+        Counters counters = target.get(id);
+        return counters != null ? counters : target.computeIfAbsent(id, key -> new Counters());
+    }
+
+    /**
+     * 用户的曝光、点击、下单次数及点击率、转化率
+     */
+    public Map<String, Object> getUserStats(Long userId) {
+        return toStats(users.get(userId));
+    }
+
+    /**
+     * 菜品的曝光、点击、下单次数及点击率、转化率
+     */
+    public Map<String, Object> getDishStats(Long dishId) {
+        return toStats(dishes.get(dishId));
+    }
+
+    /**
+     * 菜品热度快照，供评分内核按菜品ID查表；没有计数的菜品不在表中
+     */
+    public LongDoubleHashMap popularity() {
+        return popularity;
+    }
+
+    private static Map<String, Object> toStats(Counters counters) {
+        long impressions = counters != null ? counters.impressions.sum() : 0;
+        long clicks = counters != null ? counters.clicks.sum() : 0;
+        long orders = counters != null ? counters.orders.sum() : 0;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("impressions", impressions);
+        stats.put("clicks", clicks);
+        stats.put("orders", orders);
+        stats.put("clickRate", ratio(clicks, impressions));
+        stats.put("conversionRate", ratio(orders, impressions));
+        return stats;
+    }
+
+    private static double ratio(long count, long impressions) {
+        return impressions > 0 ? (double) count / impressions : 0.0;
+    }
+
+    /**
+     * 定时写入有变化的计数器并刷新菜品热度快照；尚未加载持久化计数时先加载
+     */
+    @Scheduled(fixedDelayString = "${recommendation.engagement.flush-interval-ms:60000}",
+               initialDelayString = "${recommendation.engagement.flush-interval-ms:60000}")
+    public synchronized void flush() {
+        seed();
+        List<EngagementCounter> rows = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        collectDirty(EngagementCounter.SCOPE_USER, users, rows, now);
+        collectDirty(EngagementCounter.SCOPE_DISH, dishes, rows, now);
+        if (!rows.isEmpty()) {
+            try {
+                save(rows, now);
+            } catch (RuntimeException e) {
+                // 写入失败的计数器留到下一轮
+                for (EngagementCounter row : rows) {
+                    Map<Long, Counters> source = EngagementCounter.SCOPE_USER.equals(row.getScope()) ? users : dishes;
+                    source.get(row.getTargetId()).dirty.set(true);
+                }
+                throw e;
+            }
+        }
+        refreshPopularity();
+    }
+
+    private void save(List<EngagementCounter> rows, LocalDateTime now) {
+        transactionTemplate.execute(status -> {
+            List<String> keys = rows.stream().map(EngagementCounter::getCounterKey).collect(Collectors.toList());
+            Map<String, EngagementCounter> existing = counterRepository.findAllById(keys).stream()
+                    .collect(Collectors.toMap(EngagementCounter::getCounterKey, Function.identity()));
+            List<EngagementCounter> merged = new ArrayList<>(rows.size());
+            for (EngagementCounter row : rows) {
+                EngagementCounter target = existing.getOrDefault(row.getCounterKey(), row);
+                target.setImpressions(row.getImpressions());
+                target.setClicks(row.getClicks());
+                target.setOrders(row.getOrders());
+                target.setUpdatedAt(now);
+                merged.add(target);
+            }
+            return counterRepository.saveAll(merged);
+        });
+    }
+
+    private static void collectDirty(String scope, Map<Long, Counters> source, List<EngagementCounter> rows,
+                                     LocalDateTime now) {
+        for (Map.Entry<Long, Counters> entry : source.entrySet()) {
+            Counters counters = entry.getValue();
+            if (counters.dirty.compareAndSet(true, false)) {
+                EngagementCounter row = new EngagementCounter(scope, entry.getKey());
+                row.setImpressions(counters.impressions.sum());
+                row.setClicks(counters.clicks.sum());
+                row.setOrders(counters.orders.sum());
+                row.setUpdatedAt(now);
+                rows.add(row);
+            }
+        }
+    }
+
+    /**
+     * 热度 = (点击 + 下单 + 1) / (2 * 曝光 + 2)，没有数据的菜品为中性值0.5
+     */
+    private void refreshPopularity() {
+        LongDoubleHashMap next = new LongDoubleHashMap(Math.max(16, dishes.size()));
+        for (Map.Entry<Long, Counters> entry : dishes.entrySet()) {
+            Counters counters = entry.getValue();
+            next.addTo(entry.getKey(), (counters.clicks.sum() + counters.orders.sum() + 1.0)
+                    / (2.0 * counters.impressions.sum() + 2.0));
+        }
+        this.popularity = next;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 单个用户或菜品的计数器
+     */
+    private static class Counters {
+        final LongAdder impressions = new LongAdder();
+        final LongAdder clicks = new LongAdder();
+        final LongAdder orders = new LongAdder();
+        final AtomicBoolean dirty = new AtomicBoolean();
+
+        void add(long impressionDelta, long clickDelta, long orderDelta) {
+            if (impressionDelta != 0) impressions.add(impressionDelta);
+            if (clickDelta != 0) clicks.add(clickDelta);
+            if (orderDelta != 0) orders.add(orderDelta);
+            dirty.set(true);
+        }
+    }
+}
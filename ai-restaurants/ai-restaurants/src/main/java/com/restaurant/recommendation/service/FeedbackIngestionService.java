@@ -0,0 +1,493 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.dto.FeedbackEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 推荐反馈批量接入
+ * 反馈事件按推荐记录ID合并到内存队列中，同一记录的多次反馈只保留合并后的最终取值；
+ * 后台线程定时（或积压达到批量大小时）取出一批，用一次投影查询读取原反馈状态，
+ * 再以 JDBC 批量执行只更新反馈列的 UPDATE，不加载实体。
+ * 写入后累加点击、下单计数；正反馈状态变化的记录同步更新协同过滤模型并使该用户的推荐缓存失效。
+ * 队列中的记录数达到上限时，新记录的事件由调用线程直接写入；正在被后台线程写入的记录，
+ * 其新事件仍放入队列，等本批写完后再写，保证同一记录的反馈按到达顺序生效。
+ * 写入失败的批次放回队列（排在期间到达的同一记录的事件之前），超过最大尝试次数后丢弃并计数。
+ * 原反馈状态在写入事务内加行锁读取，与其他写入反馈列的事务串行，点击、下单计数和模型增量不会重复计入；
+ * 单条反馈接口同样经由本服务写入，与批量反馈共用同一顺序
+ */
+@Service
+public class FeedbackIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedbackIngestionService.class);
+
+    private static final String UPDATE_SQL = "UPDATE recommendations SET " +
+            "is_clicked = COALESCE(?, is_clicked), is_ordered = COALESCE(?, is_ordered), " +
+            "user_rating = COALESCE(?, user_rating), user_feedback = COALESCE(?, user_feedback), updated_at = ? WHERE id = ?";
+
+    private static final String SELECT_SQL = "SELECT id, user_id, dish_id, is_clicked, is_ordered, user_rating " +
+            "FROM recommendations WHERE id IN (%s) FOR UPDATE";
+
+    private static final String EXISTS_SQL = "SELECT id FROM recommendations WHERE id = ?";
+
+    private static final long APPLY_WAIT_MS = 5000;
+
+    @Value("${recommendation.feedback.ingestion.batch-size:500}")
+    private int batchSize;
+
+    @Value("${recommendation.feedback.ingestion.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${recommendation.feedback.ingestion.max-pending:50000}")
+    private int maxPending;
+
+    @Value("${recommendation.feedback.ingestion.max-attempts:3}")
+    private int maxAttempts;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RecommendationWriteBehindService writeBehindService;
+
+    @Autowired
+    private ItemSimilarityService itemSimilarityService;
+
+    @Autowired
+    private RecommendationCache recommendationCache;
+
+    @Autowired
+    private RecommendationMaterializationService materializationService;
+
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
+    // 推荐记录ID -> 合并后的待写入反馈
+    private final ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+    // 已从队列取出、后台线程正在写入的推荐记录ID
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Object signal = new Object();
+    // 每轮写入结束时通知等待单条反馈写完的调用方
+    private final Object appliedMonitor = new Object();
+
+    private TransactionTemplate transactionTemplate;
+    private Thread applier;
+    private volatile boolean running;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder missing = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.running = true;
+        this.applier = new Thread(this::applyLoop, "feedback-ingestion");
+        this.applier.setDaemon(true);
+        this.applier.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        applier.interrupt();
+        applier.join(TimeUnit.SECONDS.toMillis(10));
+        // 写完关闭前残留的反馈
+        drain(true);
+    }
+
+    /**
+     * 接收一批反馈事件，返回接收的事件数
+     */
+    public int submit(List<FeedbackEvent> events) {
+        long now = System.currentTimeMillis();
+        List<Pending> overflow = new ArrayList<>();
+        int accepted = 0;
+        for (FeedbackEvent event : events) {
+            if (event == null || event.getRecommendationId() == null) {
+                continue;
+            }
+            accepted++;
+            received.increment();
+            Pending incoming = new Pending(event, now);
+            Long id = event.getRecommendationId();
+            if (pending.size() >= maxPending && !pending.containsKey(id) && !inFlight.contains(id)) {
+                overflow.add(incoming);
+                continue;
+            }
+            if (pending.merge(id, incoming, Pending::then) != incoming) {
+                coalesced.increment();
+            }
+        }
+        if (!overflow.isEmpty()) {
+            callerRuns.add(overflow.size());
+            apply(coalesce(overflow));
+        }
+        if (pending.size() >= batchSize) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * 同步写入单条反馈，推荐记录不存在时抛出异常
+     * 该记录没有排队或正在写入的反馈时由调用线程直接写入（先标记为写入中，此后到达的同一记录的反馈排在其后）；
+     * 否则并入队列排在已有反馈之后，等待后台线程写完
+     */
+    public void applyNow(FeedbackEvent event) {
+        Long id = event.getRecommendationId();
+        writeBehindService.awaitPersisted(id, APPLY_WAIT_MS);
+        received.increment();
+        Pending incoming = new Pending(event, System.currentTimeMillis());
+        if (inFlight.add(id)) {
+            try {
+                if (!pending.containsKey(id)) {
+                    List<Transition> changes = apply(Collections.singletonList(incoming));
+                    if (changes.isEmpty()) {
+                        throw new RuntimeException("推荐记录不存在");
+                    }
+                    return;
+                }
+            } finally {
+                inFlight.remove(id);
+            }
+        }
+
+        if (pending.merge(id, incoming, Pending::then) != incoming) {
+            coalesced.increment();
+        }
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        awaitApplied(id);
+        if (jdbcTemplate.queryForList(EXISTS_SQL, Long.class, id).isEmpty()) {
+            throw new RuntimeException("推荐记录不存在");
+        }
+    }
+
+    private void awaitApplied(Long id) {
+        long deadline = System.currentTimeMillis() + APPLY_WAIT_MS;
+        synchronized (appliedMonitor) {
+            while (pending.containsKey(id) || inFlight.contains(id)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new RuntimeException("反馈尚未写入");
+                }
+                try {
+                    appliedMonitor.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("等待反馈写入被中断");
+                }
+            }
+        }
+    }
+
+    private static List<Pending> coalesce(List<Pending> items) {
+        Map<Long, Pending> merged = new LinkedHashMap<>();
+        for (Pending item : items) {
+            merged.merge(item.event.getRecommendationId(), item, Pending::then);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * 当前等待写入的推荐记录数（已合并）
+     */
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    private void applyLoop() {
+        while (running) {
+            try {
+                synchronized (signal) {
+                    if (pending.size() < batchSize) {
+                        signal.wait(flushIntervalMs);
+                    }
+                }
+                drain(false);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } catch (RuntimeException e) {
+                log.error("批量写入推荐反馈失败", e);
+            }
+        }
+    }
+
+    /**
+     * 取出队列中的全部反馈分批写入；仍在异步写入中的推荐记录和本轮已取出的记录留到下一轮，
+     * 失败的批次在本轮结束后放回队列
+     */
+    private void drain(boolean force) {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        List<Pending> failures = new ArrayList<>();
+        Iterator<Long> ids = pending.keySet().iterator();
+        while (ids.hasNext()) {
+            Long id = ids.next();
+            if (!force && writeBehindService.isPending(id)) {
+                continue;
+            }
+            // 先标记为写入中再移出队列，提交方在两处中总能看到该记录，不会绕过队列直接写入
+            if (!inFlight.add(id)) {
+                continue;
+            }
+            Pending item = pending.remove(id);
+            if (item == null) {
+                inFlight.remove(id);
+                continue;
+            }
+            batch.add(item);
+            if (batch.size() >= batchSize) {
+                applySafely(batch, failures);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            applySafely(batch, failures);
+        }
+        if (!failures.isEmpty()) {
+            requeue(failures);
+        }
+        synchronized (appliedMonitor) {
+            appliedMonitor.notifyAll();
+        }
+    }
+
+    private void applySafely(List<Pending> batch, List<Pending> failures) {
+        try {
+            apply(batch);
+        } catch (RuntimeException e) {
+            log.error("批量写入推荐反馈失败，{} 条稍后重试", batch.size(), e);
+            failures.addAll(batch);
+            return;
+        }
+        for (Pending item : batch) {
+            inFlight.remove(item.event.getRecommendationId());
+        }
+    }
+
+    /**
+     * 将失败的反馈放回队列，合并时排在期间到达的同一记录的事件之前；超过最大尝试次数的丢弃
+     */
+    private void requeue(List<Pending> failures) {
+        int dropped = 0;
+        for (Pending item : failures) {
+            Long id = item.event.getRecommendationId();
+            if (item.attempts + 1 >= maxAttempts) {
+                dropped++;
+            } else {
+                retried.increment();
+                pending.merge(id, item.retry(), (queued, retry) -> retry.then(queued));
+            }
+            inFlight.remove(id);
+        }
+        if (dropped > 0) {
+            failed.add(dropped);
+            log.error("推荐反馈写入 {} 次仍失败，丢弃 {} 条", maxAttempts, dropped);
+        }
+    }
+
+    /**
+     * 写入一批已合并的反馈，返回找到的推荐记录写入前后的反馈列；
+     * 后台线程与调用线程的写入串行执行，保证同一记录的反馈按到达顺序生效
+     */
+    private synchronized List<Transition> apply(List<Pending> batch) {
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (Pending item : batch) {
+            ids.add(item.event.getRecommendationId());
+        }
+        Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.now());
+        List<Transition> transitions = transactionTemplate.execute(status -> {
+            Map<Long, FeedbackState> before = loadStates(ids);
+            List<FeedbackEvent> found = new ArrayList<>(batch.size());
+            List<Transition> changes = new ArrayList<>();
+            for (Pending item : batch) {
+                FeedbackState state = before.get(item.event.getRecommendationId());
+                if (state == null) {
+                    missing.increment();
+                    continue;
+                }
+                found.add(item.event);
+                changes.add(new Transition(item.event.getRecommendationId(), state, state.apply(item.event)));
+            }
+            jdbcTemplate.batchUpdate(UPDATE_SQL, found, found.size(), (ps, event) -> {
+                ps.setObject(1, event.getClicked(), Types.BOOLEAN);
+                ps.setObject(2, event.getOrdered(), Types.BOOLEAN);
+                ps.setObject(3, event.getRating(), Types.INTEGER);
+                ps.setString(4, event.getFeedback());
+                ps.setTimestamp(5, updatedAt);
+                ps.setLong(6, event.getRecommendationId());
+            });
+            applied.add(found.size());
+            return changes;
+        });
+
+        Set<Long> affectedUsers = new HashSet<>();
+        for (Transition transition : transitions) {
+            FeedbackState before = transition.before;
+            FeedbackState after = transition.after;
+            engagementCounterService.recordFeedback(before.userId, before.dishId,
+                    before.clicked, after.clicked, before.ordered, after.ordered);
+            boolean wasPositive = itemSimilarityService.isPositive(before.clicked, before.ordered, before.rating);
+            boolean isPositive = itemSimilarityService.isPositive(after.clicked, after.ordered, after.rating);
+            if (wasPositive != isPositive) {
+                itemSimilarityService.onFeedback(transition.recommendationId, before.userId, before.dishId, isPositive);
+                affectedUsers.add(before.userId);
+            }
+        }
+        for (Long userId : affectedUsers) {
+            recommendationCache.invalidateUser(userId);
+            materializationService.evict(userId);
+        }
+
+        long now = System.currentTimeMillis();
+        long lag = 0;
+        for (Pending item : batch) {
+            lag = Math.max(lag, now - item.enqueuedAt);
+        }
+        lastLagMs.set(lag);
+        maxLagMs.accumulateAndGet(lag, Math::max);
+        return transitions;
+    }
+
+    private Map<Long, FeedbackState> loadStates(List<Long> ids) {
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Map<Long, FeedbackState> states = new HashMap<>();
+        jdbcTemplate.query(String.format(SELECT_SQL, placeholders), rs -> {
+            states.put(rs.getLong(1), new FeedbackState(rs.getLong(2), rs.getLong(3),
+                    (Boolean) rs.getObject(4), (Boolean) rs.getObject(5), (Integer) rs.getObject(6)));
+        }, ids.toArray());
+        return states;
+    }
+
+    /**
+     * 队列深度与写入延迟统计
+     */
+    public Map<String, Object> getStats() {
+        long now = System.currentTimeMillis();
+        long oldest = 0;
+        for (Pending item : pending.values()) {
+            oldest = Math.max(oldest, now - item.enqueuedAt);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", pending.size());
+        stats.put("oldestPendingMs", oldest);
+        stats.put("lastLagMs", lastLagMs.get());
+        stats.put("maxLagMs", maxLagMs.get());
+        stats.put("received", received.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("applied", applied.sum());
+        stats.put("missing", missing.sum());
+        stats.put("retried", retried.sum());
+        stats.put("failed", failed.sum());
+        stats.put("callerRuns", callerRuns.sum());
+        return stats;
+    }
+
+    /**
+     * 队列中的反馈：合并后的事件、最早事件的到达时间和已失败的写入次数
+     */
+    private static class Pending {
+        final FeedbackEvent event;
+        final long enqueuedAt;
+        final int attempts;
+
+        Pending(FeedbackEvent event, long enqueuedAt) {
+            this(event, enqueuedAt, 0);
+        }
+
+        private Pending(FeedbackEvent event, long enqueuedAt, int attempts) {
+            this.event = event;
+            this.enqueuedAt = enqueuedAt;
+            this.attempts = attempts;
+        }
+
+        Pending then(Pending later) {
+            return new Pending(event.merge(later.event), Math.min(enqueuedAt, later.enqueuedAt),
+                    Math.max(attempts, later.attempts));
+        }
+
+        Pending retry() {
+            return new Pending(event, enqueuedAt, attempts + 1);
+        }
+    }
+
+    /**
+     * 推荐记录当前的反馈列
+     */
+    private static class FeedbackState {
+        final long userId;
+        final long dishId;
+        final Boolean clicked;
+        final Boolean ordered;
+        final Integer rating;
+
+        FeedbackState(long userId, long dishId, Boolean clicked, Boolean ordered, Integer rating) {
+            this.userId = userId;
+            this.dishId = dishId;
+            this.clicked = clicked;
+            this.ordered = ordered;
+            this.rating = rating;
+        }
+
+        FeedbackState apply(FeedbackEvent event) {
+            return new FeedbackState(userId, dishId,
+                    event.getClicked() != null ? event.getClicked() : clicked,
+                    event.getOrdered() != null ? event.getOrdered() : ordered,
+                    event.getRating() != null ? event.getRating() : rating);
+        }
+    }
+
+    /**
+     * 一条推荐记录写入前后的反馈列
+     */
+    private static class Transition {
+        final long recommendationId;
+        final FeedbackState before;
+        final FeedbackState after;
+
+        Transition(long recommendationId, FeedbackState before, FeedbackState after) {
+            this.recommendationId = recommendationId;
+            this.before = before;
+            this.after = after;
+        }
+    }
+}
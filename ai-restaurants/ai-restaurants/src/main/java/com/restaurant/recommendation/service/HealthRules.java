@@ -0,0 +1,663 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.NutritionReport;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 营养健康评估规则表（不可变）
+ * 规则以声明方式配置：条件（营养指标与常数或其他指标的倍数比较，多个条件用 && 连接）、可选的疾病限定、
+ * 扣分以及警告和建议的消息键。解析时编译为按列存储的决策表，条件中的指标替换为营养向量下标，
+ * 评估只读基本类型数组，不做字符串解析和反射，可在批量任务中对大量报告重复使用。
+ * 不限疾病的规则按配置顺序评估，疾病规则按用户疾病列表的顺序评估；空值以 NaN 表示，任何比较结果均为 false。
+ *
+ * 评估结果不含消息文本，只有命中规则的消息键和数值参数（建议码），格式为 键[:参数...]，多条以分号分隔，
+ * 参数依次为各条件左侧指标的取值和比较阈值。文本在读取时由 {@link #render} 按消息模板（支持 {0}、{1} 等参数占位）
+ * 和语言生成，模板在解析规则时预编译。
+ * 用户疾病列表中重复的疾病只评估一次，每条规则至多命中一次；解析时按全部规则同时命中、数值参数取最长时
+ * 校验建议码长度不超过报告中对应列的长度，超过时拒绝该规则表
+ */
+public final class HealthRules {
+
+    /**
+     * 营养向量的指标，名称与报告字段一致
+     */
+    public enum Metric {
+        TOTAL_CALORIES("totalCalories"),
+        TOTAL_PROTEIN("totalProtein"),
+        TOTAL_FAT("totalFat"),
+        TOTAL_CARBOHYDRATE("totalCarbohydrate"),
+        TOTAL_FIBER("totalFiber"),
+        TOTAL_SODIUM("totalSodium"),
+        TOTAL_CHOLESTEROL("totalCholesterol"),
+        RECOMMENDED_CALORIES("recommendedCalories"),
+        RECOMMENDED_PROTEIN("recommendedProtein"),
+        RECOMMENDED_FAT("recommendedFat"),
+        RECOMMENDED_CARBOHYDRATE("recommendedCarbohydrate"),
+        PROTEIN_PERCENTAGE("proteinPercentage"),
+        FAT_PERCENTAGE("fatPercentage"),
+        CARBOHYDRATE_PERCENTAGE("carbohydratePercentage"),
+        NUTRITION_BALANCE("nutritionBalance");
+
+        private final String key;
+
+        Metric(String key) {
+            this.key = key;
+        }
+
+        public String getKey() { return key; }
+
+        static Metric of(String key) {
+            for (Metric metric : values()) {
+                if (metric.key.equals(key)) {
+                    return metric;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static final int DIMENSIONS = Metric.values().length;
+
+    private static final byte GT = 0;
+    private static final byte GE = 1;
+    private static final byte LT = 2;
+    private static final byte LE = 3;
+
+    private static final Pattern CLAUSE = Pattern.compile("\\s*(\\w+)\\s*(>=|<=|>|<)\\s*(.+?)\\s*");
+    private static final Pattern SCALED = Pattern.compile("(\\w+)\\s*\\*\\s*(\\S+)");
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{(\\d+)}");
+
+    // 单个数值参数的最大长度，即 Double.toString 的最长输出（如 -2.2250738585072014E-308）
+    private static final int MAX_NUMBER_LENGTH = 24;
+
+    // 规则列
+    private final String[] names;
+    private final String[] diseases;
+    private final String[] conditions;
+    private final int[] penalties;
+    private final String[] warningKeys;
+    private final String[] adviceKeys;
+
+    // 条件列：第 r 条规则的条件位于 [conditionOffsets[r], conditionOffsets[r+1])
+    private final int[] conditionOffsets;
+    private final int[] left;
+    private final byte[] operators;
+    private final int[] right;          // 右侧指标下标，-1 表示与常数比较
+    private final double[] operands;    // 右侧为指标时是系数，否则是常数
+
+    // 不限疾病的规则和按疾病分组的规则（下标按配置顺序）
+    private final int[] generalRules;
+    private final Map<String, int[]> diseaseRules;
+
+    private final int baseScore;
+    private final int[] statusThresholds;
+    private final String[] statusNames;
+    private final String defaultAdviceKey;
+
+    // 消息模板：语言（默认语言为空串）-> 消息键 -> 模板
+    private final Map<String, Map<String, Template>> templates;
+
+    private HealthRules(Builder builder) {
+        int count = builder.names.size();
+        this.names = builder.names.toArray(new String[0]);
+        this.diseases = builder.diseases.toArray(new String[0]);
+        this.conditions = builder.conditions.toArray(new String[0]);
+        this.penalties = builder.penalties.stream().mapToInt(Integer::intValue).toArray();
+        this.warningKeys = builder.warningKeys.toArray(new String[0]);
+        this.adviceKeys = builder.adviceKeys.toArray(new String[0]);
+        this.conditionOffsets = builder.conditionOffsets.stream().mapToInt(Integer::intValue).toArray();
+        this.left = builder.left.stream().mapToInt(Integer::intValue).toArray();
+        this.right = builder.right.stream().mapToInt(Integer::intValue).toArray();
+        this.operands = builder.operands.stream().mapToDouble(Double::doubleValue).toArray();
+        this.operators = new byte[builder.operators.size()];
+        for (int i = 0; i < operators.length; i++) {
+            operators[i] = builder.operators.get(i);
+        }
+
+        List<Integer> general = new ArrayList<>();
+        Map<String, List<Integer>> byDisease = new LinkedHashMap<>();
+        for (int r = 0; r < count; r++) {
+            if (diseases[r] == null) {
+                general.add(r);
+            } else {
+                byDisease.computeIfAbsent(diseases[r], d -> new ArrayList<>()).add(r);
+            }
+        }
+        this.generalRules = general.stream().mapToInt(Integer::intValue).toArray();
+        this.diseaseRules = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : byDisease.entrySet()) {
+            diseaseRules.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        this.baseScore = builder.baseScore;
+        this.statusThresholds = builder.statusThresholds;
+        this.statusNames = builder.statusNames;
+        this.defaultAdviceKey = builder.defaultAdviceKey;
+        this.templates = builder.templates;
+    }
+
+    /**
+     * 从规则配置编译规则表，配置格式见 health-rules.properties
+     */
+    public static HealthRules parse(Properties properties) {
+        Builder builder = new Builder();
+        parseTemplates(builder, properties);
+        builder.baseScore = parseInt(properties.getProperty("score.base", "100"), "score.base");
+        parseStatus(builder, properties.getProperty("status", "80:健康,60:需改善,0:不健康"));
+        builder.defaultAdviceKey = trimToNull(properties.getProperty("default-advice"));
+        if (builder.defaultAdviceKey != null) {
+            builder.requireMessage(builder.defaultAdviceKey);
+        }
+
+        String list = properties.getProperty("rules", "");
+        for (String name : list.split(",")) {
+            name = name.trim();
+            if (!name.isEmpty()) {
+                builder.addRule(properties, name);
+            }
+        }
+        builder.conditionOffsets.add(builder.left.size());
+        HealthRules rules = new HealthRules(builder);
+        rules.checkCodeLength();
+        return rules;
+    }
+
+    private void checkCodeLength() {
+        int warningLength = maxCodeLength(warningKeys);
+        int adviceLength = Math.max(maxCodeLength(adviceKeys),
+                defaultAdviceKey != null ? defaultAdviceKey.length() : 0);
+        if (warningLength > NutritionReport.CODES_LENGTH) {
+            throw new RuntimeException("健康规则全部命中时警告码最长 " + warningLength
+                    + " 字符，超过报告列长度 " + NutritionReport.CODES_LENGTH);
+        }
+        if (adviceLength > NutritionReport.CODES_LENGTH) {
+            throw new RuntimeException("健康规则全部命中时建议码最长 " + adviceLength
+                    + " 字符，超过报告列长度 " + NutritionReport.CODES_LENGTH);
+        }
+    }
+
+    // 全部规则命中时的码长：各消息键加分隔符，每个条件两个数值参数
+    private int maxCodeLength(String[] keys) {
+        int length = 0;
+        for (int r = 0; r < keys.length; r++) {
+            if (keys[r] == null) {
+                continue;
+            }
+            if (length > 0) {
+                length++;
+            }
+            int conditionCount = conditionOffsets[r + 1] - conditionOffsets[r];
+            length += keys[r].length() + conditionCount * 2 * (1 + MAX_NUMBER_LENGTH);
+        }
+        return length;
+    }
+
+    private static void parseStatus(Builder builder, String spec) {
+        String[] parts = spec.split(",");
+        builder.statusThresholds = new int[parts.length];
+        builder.statusNames = new String[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].split(":", 2);
+            if (pair.length != 2) {
+                throw new RuntimeException("健康状态配置格式错误：" + spec);
+            }
+            builder.statusThresholds[i] = parseInt(pair[0], "status");
+            builder.statusNames[i] = pair[1].trim();
+            if (i > 0 && builder.statusThresholds[i] > builder.statusThresholds[i - 1]) {
+                throw new RuntimeException("健康状态阈值须按降序配置：" + spec);
+            }
+        }
+    }
+
+    /**
+     * 编译消息模板：message.<键> 为默认语言，message_<语言>.<键> 为其他语言（如 message_en.<键>）
+     */
+    private static void parseTemplates(Builder builder, Properties properties) {
+        for (String name : properties.stringPropertyNames()) {
+            String locale;
+            String key;
+            if (name.startsWith("message.")) {
+                locale = "";
+                key = name.substring("message.".length());
+            } else if (name.startsWith("message_") && name.indexOf('.') > "message_".length()) {
+                int dot = name.indexOf('.');
+                locale = name.substring("message_".length(), dot);
+                key = name.substring(dot + 1);
+            } else {
+                continue;
+            }
+            builder.templates.computeIfAbsent(locale, l -> new HashMap<>())
+                    .put(key, Template.compile(properties.getProperty(name)));
+        }
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("健康规则配置格式错误：" + name);
+        }
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * 报告当前取值组成的营养向量，空值为 NaN
+     */
+    public static double[] vectorOf(NutritionReport report) {
+        double[] vector = new double[DIMENSIONS];
+        vector[Metric.TOTAL_CALORIES.ordinal()] = valueOf(report.getTotalCalories());
+        vector[Metric.TOTAL_PROTEIN.ordinal()] = valueOf(report.getTotalProtein());
+        vector[Metric.TOTAL_FAT.ordinal()] = valueOf(report.getTotalFat());
+        vector[Metric.TOTAL_CARBOHYDRATE.ordinal()] = valueOf(report.getTotalCarbohydrate());
+        vector[Metric.TOTAL_FIBER.ordinal()] = valueOf(report.getTotalFiber());
+        vector[Metric.TOTAL_SODIUM.ordinal()] = valueOf(report.getTotalSodium());
+        vector[Metric.TOTAL_CHOLESTEROL.ordinal()] = valueOf(report.getTotalCholesterol());
+        vector[Metric.RECOMMENDED_CALORIES.ordinal()] = valueOf(report.getRecommendedCalories());
+        vector[Metric.RECOMMENDED_PROTEIN.ordinal()] = valueOf(report.getRecommendedProtein());
+        vector[Metric.RECOMMENDED_FAT.ordinal()] = valueOf(report.getRecommendedFat());
+        vector[Metric.RECOMMENDED_CARBOHYDRATE.ordinal()] = valueOf(report.getRecommendedCarbohydrate());
+        vector[Metric.PROTEIN_PERCENTAGE.ordinal()] = valueOf(report.getProteinPercentage());
+        vector[Metric.FAT_PERCENTAGE.ordinal()] = valueOf(report.getFatPercentage());
+        vector[Metric.CARBOHYDRATE_PERCENTAGE.ordinal()] = valueOf(report.getCarbohydratePercentage());
+        vector[Metric.NUTRITION_BALANCE.ordinal()] = valueOf(report.getNutritionBalance());
+        return vector;
+    }
+
+    private static double valueOf(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+
+    /**
+     * 对一个营养向量评估全部规则
+     */
+    public Result evaluate(double[] vector, Collection<String> userDiseases) {
+        int score = baseScore;
+        StringBuilder warningCodes = new StringBuilder();
+        StringBuilder adviceCodes = new StringBuilder();
+        for (int rule : generalRules) {
+            score -= apply(rule, vector, warningCodes, adviceCodes);
+        }
+        if (userDiseases != null) {
+            Collection<String> distinct = userDiseases.size() > 1 ? new LinkedHashSet<>(userDiseases) : userDiseases;
+            for (String disease : distinct) {
+                int[] rules = diseaseRules.get(disease);
+                if (rules == null) {
+                    continue;
+                }
+                for (int rule : rules) {
+                    score -= apply(rule, vector, warningCodes, adviceCodes);
+                }
+            }
+        }
+        if (adviceCodes.length() == 0 && defaultAdviceKey != null) {
+            adviceCodes.append(defaultAdviceKey);
+        }
+        return new Result(Math.max(0, score), status(score), warningCodes.toString(), adviceCodes.toString());
+    }
+
+    private int apply(int rule, double[] vector, StringBuilder warningCodes, StringBuilder adviceCodes) {
+        if (!matches(rule, vector)) {
+            return 0;
+        }
+        if (warningKeys[rule] != null) {
+            appendCode(warningCodes, warningKeys[rule], rule, vector);
+        }
+        if (adviceKeys[rule] != null) {
+            appendCode(adviceCodes, adviceKeys[rule], rule, vector);
+        }
+        return penalties[rule];
+    }
+
+    // 追加一条建议码：消息键和各条件的取值、阈值
+    private void appendCode(StringBuilder codes, String key, int rule, double[] vector) {
+        if (codes.length() > 0) {
+            codes.append(';');
+        }
+        codes.append(key);
+        for (int c = conditionOffsets[rule]; c < conditionOffsets[rule + 1]; c++) {
+            codes.append(':');
+            appendNumber(codes, vector[left[c]]);
+            codes.append(':');
+            appendNumber(codes, right[c] >= 0 ? vector[right[c]] * operands[c] : operands[c]);
+        }
+    }
+
+    // 数值保留一位小数，整数不带小数部分
+    private static void appendNumber(StringBuilder out, double value) {
+        double rounded = Math.round(value * 10) / 10.0;
+        if (rounded == Math.rint(rounded) && Math.abs(rounded) < 1e15) {
+            out.append((long) rounded);
+        } else {
+            out.append(rounded);
+        }
+    }
+
+    /**
+     * 按消息模板把建议码渲染为文本；locale 为空或没有该语言的模板时依次回退到上级语言（如 en_US 到 en）和默认语言，
+     * 模板已不存在的消息键原样输出
+     */
+    public String render(String codes, String locale) {
+        if (codes == null || codes.isEmpty()) {
+            return codes;
+        }
+        List<Map<String, Template>> chain = localeChain(locale);
+        StringBuilder text = new StringBuilder();
+        for (String code : codes.split(";")) {
+            String[] parts = code.split(":");
+            Template template = null;
+            for (int i = 0; i < chain.size() && template == null; i++) {
+                template = chain.get(i).get(parts[0]);
+            }
+            if (template == null) {
+                text.append(parts[0]);
+            } else {
+                template.render(text, parts);
+            }
+        }
+        return text.toString().trim();
+    }
+
+    private List<Map<String, Template>> localeChain(String locale) {
+        List<Map<String, Template>> chain = new ArrayList<>(3);
+        if (locale != null && !locale.isEmpty()) {
+            String tag = locale.replace('-', '_');
+            addLocale(chain, tag);
+            int separator = tag.indexOf('_');
+            if (separator > 0) {
+                addLocale(chain, tag.substring(0, separator));
+            }
+        }
+        addLocale(chain, "");
+        return chain;
+    }
+
+    private void addLocale(List<Map<String, Template>> chain, String locale) {
+        Map<String, Template> table = templates.get(locale);
+        if (table != null) {
+            chain.add(table);
+        }
+    }
+
+    /**
+     * 已配置模板的语言（不含默认语言）
+     */
+    public List<String> locales() {
+        List<String> locales = new ArrayList<>();
+        for (String locale : templates.keySet()) {
+            if (!locale.isEmpty()) {
+                locales.add(locale);
+            }
+        }
+        Collections.sort(locales);
+        return locales;
+    }
+
+    private boolean matches(int rule, double[] vector) {
+        return matches(rule, vector, 0);
+    }
+
+    /**
+     * 按行连续存放的营养向量（每行 DIMENSIONS 个指标）中，从 offset 开始的一行是否满足规则的全部条件；
+     * 只判断条件，不考虑规则限定的疾病
+     */
+    public boolean matches(int rule, double[] vectors, int offset) {
+        for (int c = conditionOffsets[rule]; c < conditionOffsets[rule + 1]; c++) {
+            double value = vectors[offset + left[c]];
+            double threshold = right[c] >= 0 ? vectors[offset + right[c]] * operands[c] : operands[c];
+            boolean holds;
+            switch (operators[c]) {
+                case GT: holds = value > threshold; break;
+                case GE: holds = value >= threshold; break;
+                case LT: holds = value < threshold; break;
+                default: holds = value <= threshold; break;
+            }
+            if (!holds) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String status(int score) {
+        for (int i = 0; i < statusThresholds.length; i++) {
+            if (score >= statusThresholds[i]) {
+                return statusNames[i];
+            }
+        }
+        return statusNames[statusNames.length - 1];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * 规则下标，不存在时返回 -1
+     */
+    public int indexOf(String name) {
+        for (int r = 0; r < names.length; r++) {
+            if (names[r].equals(name)) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    public String nameOf(int rule) {
+        return names[rule];
+    }
+
+    public String conditionOf(int rule) {
+        return conditions[rule];
+    }
+
+    public String diseaseOf(int rule) {
+        return diseases[rule];
+    }
+
+    /**
+     * 规则列表的配置形式，按配置顺序
+     */
+    public List<Map<String, Object>> describe() {
+        List<Map<String, Object>> rules = new ArrayList<>(names.length);
+        for (int r = 0; r < names.length; r++) {
+            Map<String, Object> rule = new LinkedHashMap<>();
+            rule.put("name", names[r]);
+            rule.put("disease", diseases[r]);
+            rule.put("when", conditions[r]);
+            rule.put("penalty", penalties[r]);
+            rule.put("warning", warningKeys[r]);
+            rule.put("advice", adviceKeys[r]);
+            rules.add(rule);
+        }
+        return rules;
+    }
+
+    /**
+     * 一次评估的结果
+     */
+    public static final class Result {
+        private final int score;
+        private final String status;
+        private final String warningCodes;
+        private final String adviceCodes;
+
+        Result(int score, String status, String warningCodes, String adviceCodes) {
+            this.score = score;
+            this.status = status;
+            this.warningCodes = warningCodes;
+            this.adviceCodes = adviceCodes;
+        }
+
+        public int getScore() { return score; }
+        public String getStatus() { return status; }
+        public String getWarningCodes() { return warningCodes; }
+        public String getAdviceCodes() { return adviceCodes; }
+    }
+
+    /**
+     * 预编译的消息模板：文本片段与参数占位交替，params[i] 为 literals[i] 之后的参数序号，-1 表示无
+     */
+    private static final class Template {
+        private final String[] literals;
+        private final int[] params;
+
+        private Template(String[] literals, int[] params) {
+            this.literals = literals;
+            this.params = params;
+        }
+
+        static Template compile(String text) {
+            List<String> literals = new ArrayList<>();
+            List<Integer> params = new ArrayList<>();
+            Matcher matcher = PLACEHOLDER.matcher(text);
+            int start = 0;
+            while (matcher.find()) {
+                literals.add(text.substring(start, matcher.start()));
+                params.add(Integer.parseInt(matcher.group(1)));
+                start = matcher.end();
+            }
+            literals.add(text.substring(start));
+            params.add(-1);
+            return new Template(literals.toArray(new String[0]), params.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        // parts[0] 为消息键，parts[1..] 为参数；缺少的参数输出为空
+        void render(StringBuilder out, String[] parts) {
+            for (int i = 0; i < literals.length; i++) {
+                out.append(literals[i]);
+                int param = params[i];
+                if (param >= 0 && param + 1 < parts.length) {
+                    out.append(parts[param + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 解析过程中按列累积规则
+     */
+    private static final class Builder {
+        final List<String> names = new ArrayList<>();
+        final List<String> diseases = new ArrayList<>();
+        final List<String> conditions = new ArrayList<>();
+        final List<Integer> penalties = new ArrayList<>();
+        final List<String> warningKeys = new ArrayList<>();
+        final List<String> adviceKeys = new ArrayList<>();
+        final List<Integer> conditionOffsets = new ArrayList<>();
+        final List<Integer> left = new ArrayList<>();
+        final List<Byte> operators = new ArrayList<>();
+        final List<Integer> right = new ArrayList<>();
+        final List<Double> operands = new ArrayList<>();
+        int baseScore;
+        int[] statusThresholds;
+        String[] statusNames;
+        String defaultAdviceKey;
+        final Map<String, Map<String, Template>> templates = new HashMap<>();
+
+        void addRule(Properties properties, String name) {
+            if (names.contains(name)) {
+                throw new RuntimeException("健康规则重复：" + name);
+            }
+            String prefix = "rule." + name + ".";
+            String when = trimToNull(properties.getProperty(prefix + "when"));
+            String warningKey = trimToNull(properties.getProperty(prefix + "warning"));
+            String adviceKey = trimToNull(properties.getProperty(prefix + "advice"));
+
+            conditionOffsets.add(left.size());
+            if (when != null) {
+                for (String clause : when.split("&&")) {
+                    addCondition(name, clause);
+                }
+            }
+            names.add(name);
+            diseases.add(trimToNull(properties.getProperty(prefix + "disease")));
+            conditions.add(when);
+            penalties.add(parseInt(properties.getProperty(prefix + "penalty", "0"), prefix + "penalty"));
+            warningKeys.add(warningKey);
+            adviceKeys.add(adviceKey);
+            if (warningKey != null) {
+                requireMessage(warningKey);
+            }
+            if (adviceKey != null) {
+                requireMessage(adviceKey);
+            }
+        }
+
+        // 消息键须有默认语言的模板；建议码以 ; 和 : 分隔，消息键中不能包含
+        void requireMessage(String key) {
+            Map<String, Template> defaults = templates.get("");
+            if (defaults == null || !defaults.containsKey(key)) {
+                throw new RuntimeException("健康规则消息不存在：" + key);
+            }
+            if (key.indexOf(';') >= 0 || key.indexOf(':') >= 0) {
+                throw new RuntimeException("健康规则消息键格式错误：" + key);
+            }
+        }
+
+        private void addCondition(String name, String clause) {
+            Matcher matcher = CLAUSE.matcher(clause);
+            if (!matcher.matches()) {
+                throw new RuntimeException("健康规则条件格式错误：" + name);
+            }
+            left.add(metric(name, matcher.group(1)));
+            operators.add(operator(matcher.group(2)));
+            String operand = matcher.group(3);
+            Matcher scaled = SCALED.matcher(operand);
+            if (scaled.matches()) {
+                right.add(metric(name, scaled.group(1)));
+                operands.add(number(name, scaled.group(2)));
+            } else if (Metric.of(operand) != null) {
+                right.add(Metric.of(operand).ordinal());
+                operands.add(1.0);
+            } else {
+                right.add(-1);
+                operands.add(number(name, operand));
+            }
+        }
+
+        private static int metric(String name, String key) {
+            Metric metric = Metric.of(key);
+            if (metric == null) {
+                throw new RuntimeException("健康规则指标不存在：" + name + " " + key + "，可用指标 "
+                        + Arrays.toString(Arrays.stream(Metric.values()).map(Metric::getKey).toArray()));
+            }
+            return metric.ordinal();
+        }
+
+        private static byte operator(String symbol) {
+            switch (symbol) {
+                case ">": return GT;
+                case ">=": return GE;
+                case "<": return LT;
+                default: return LE;
+            }
+        }
+
+        private static double number(String name, String value) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("健康规则条件格式错误：" + name);
+            }
+        }
+    }
+}
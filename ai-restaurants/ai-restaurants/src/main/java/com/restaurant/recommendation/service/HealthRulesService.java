@@ -0,0 +1,82 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.NutritionReport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 健康评估规则管理
+ * 内置规则来自类路径 health-rules.properties，可通过 recommendation.health.rules.file 指定外部规则文件整体替换；
+ * 运行时重新加载后以编译好的规则表整体替换，进行中的评估始终使用同一份规则。
+ * 报告中的警告码和建议码在返回报告时按当前规则的消息模板渲染为文本
+ */
+@Service
+public class HealthRulesService {
+
+    private static final String BUILTIN_RULES = "health-rules.properties";
+
+    @Value("${recommendation.health.rules.file:}")
+    private String rulesFile;
+
+    private volatile HealthRules rules;
+
+    @PostConstruct
+    public void init() {
+        this.rules = load();
+    }
+
+    /**
+     * 当前生效的规则表
+     */
+    public HealthRules current() {
+        return rules;
+    }
+
+    /**
+     * 重新加载规则，编译失败时保留原规则
+     */
+    public synchronized HealthRules reload() {
+        HealthRules loaded = load();
+        this.rules = loaded;
+        return loaded;
+    }
+
+    /**
+     * 按当前规则的消息模板渲染报告的警告和建议文本，locale 为空时使用默认语言
+     */
+    public NutritionReport render(NutritionReport report, String locale) {
+        HealthRules current = rules;
+        report.setWarnings(current.render(report.getWarningCodes(), locale));
+        report.setRecommendations(current.render(report.getAdviceCodes(), locale));
+        return report;
+    }
+
+    public List<NutritionReport> render(List<NutritionReport> reports, String locale) {
+        for (NutritionReport report : reports) {
+            render(report, locale);
+        }
+        return reports;
+    }
+
+    private HealthRules load() {
+        Properties properties = new Properties();
+        try (Reader reader = rulesFile.isEmpty()
+                ? new InputStreamReader(new ClassPathResource(BUILTIN_RULES).getInputStream(), StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(rulesFile), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new RuntimeException("读取健康规则失败：" + (rulesFile.isEmpty() ? BUILTIN_RULES : rulesFile));
+        }
+        return HealthRules.parse(properties);
+    }
+}
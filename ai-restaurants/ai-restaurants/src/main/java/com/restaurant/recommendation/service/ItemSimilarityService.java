@@ -0,0 +1,240 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.repository.RecommendationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于推荐反馈的物品协同过滤（item-item）
+ * 用户点击、下单或评分不低于阈值的推荐视为正反馈。模型只保存稀疏计数：
+ * 用户喜欢的菜品、每道菜品被多少用户喜欢、两道菜品被同一用户喜欢的次数。
+ * 反馈到达时只按该用户已喜欢的菜品增量更新共现计数，不做周期性全量重算；
+ * 菜品相似度为余弦相似度 共现数 / sqrt(喜欢i的用户数 * 喜欢j的用户数)。
+ * 反馈在数据库提交后才通知模型，启动加载的快照可能已包含、也可能不包含加载前后到达的反馈，
+ * 因此模型记录已计入的正反馈推荐记录ID，按记录的目标状态更新，重复通知不会重复计数；
+ * 加载完成前到达的反馈先暂存，加载快照后再按同样方式补上
+ */
+@Service
+public class ItemSimilarityService {
+
+    @Value("${recommendation.collaborative.enabled:true}")
+    private boolean enabled;
+
+    // 评分不低于该值视为正反馈
+    @Value("${recommendation.collaborative.min-rating:4}")
+    private int minRating;
+
+    @Autowired
+    private RecommendationRepository recommendationRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 用户 -> (菜品 -> 正反馈推荐记录数)
+    private final Map<Long, LongIntHashMap> userItems = new HashMap<>();
+    // 菜品 -> 喜欢该菜品的用户数
+    private final LongIntHashMap itemUsers = new LongIntHashMap(256);
+    // 菜品 -> (菜品 -> 同时喜欢两者的用户数)，对称存储
+    private final Map<Long, LongIntHashMap> cooccurrence = new HashMap<>();
+
+    // 已计入模型的正反馈推荐记录ID
+    private final LongIntHashMap positiveRecommendations = new LongIntHashMap(256);
+    // 启动加载完成前到达的反馈：推荐记录ID -> 最新状态
+    private final Map<Long, FeedbackChange> buffered = new LinkedHashMap<>();
+
+    private long pairCount;
+    private boolean loaded;
+
+    /**
+     * 启动时从已有反馈构建模型
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        if (!enabled) {
+            return;
+        }
+        List<Object[]> rows = recommendationRepository.findPositiveFeedbackPairs(minRating);
+        lock.writeLock().lock();
+        try {
+            userItems.clear();
+            cooccurrence.clear();
+            itemUsers.clear();
+            positiveRecommendations.clear();
+            pairCount = 0;
+            for (Object[] row : rows) {
+                setPositive((Long) row[0], (Long) row[1], (Long) row[2], true);
+            }
+            for (Map.Entry<Long, FeedbackChange> entry : buffered.entrySet()) {
+                FeedbackChange change = entry.getValue();
+                setPositive(entry.getKey(), change.userId, change.dishId, change.positive);
+            }
+            buffered.clear();
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按反馈列判断是否为正反馈
+     */
+    public boolean isPositive(Boolean clicked, Boolean ordered, Integer rating) {
+        return Boolean.TRUE.equals(clicked) || Boolean.TRUE.equals(ordered) || (rating != null && rating >= minRating);
+    }
+
+    /**
+     * 一条推荐记录的反馈变化后增量更新模型，isPositive 为该记录写入后是否为正反馈
+     */
+    public void onFeedback(Long recommendationId, Long userId, Long dishId, boolean isPositive) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                buffered.put(recommendationId, new FeedbackChange(userId, dishId, isPositive));
+                return;
+            }
+            setPositive(recommendationId, userId, dishId, isPositive);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void setPositive(long recommendationId, long userId, long dishId, boolean isPositive) {
+        boolean counted = positiveRecommendations.get(recommendationId) != 0;
+        if (counted == isPositive) {
+            return;
+        }
+        if (isPositive) {
+            positiveRecommendations.addTo(recommendationId, 1);
+            addPositive(userId, dishId);
+        } else {
+            positiveRecommendations.addTo(recommendationId, -1);
+            removePositive(userId, dishId);
+        }
+    }
+
+    private void addPositive(long userId, long dishId) {
+        LongIntHashMap items = userItems.computeIfAbsent(userId, id -> new LongIntHashMap());
+        if (items.addTo(dishId, 1) > 1) {
+            return; // 该用户已喜欢此菜品
+        }
+        itemUsers.addTo(dishId, 1);
+        items.forEach((other, count) -> {
+            if (other != dishId) {
+                addPair(dishId, other, 1);
+            }
+        });
+    }
+
+    private void removePositive(long userId, long dishId) {
+        LongIntHashMap items = userItems.get(userId);
+        if (items == null || items.get(dishId) == 0) {
+            return;
+        }
+        if (items.addTo(dishId, -1) > 0) {
+            return; // 仍有其他正反馈记录
+        }
+        itemUsers.addTo(dishId, -1);
+        items.forEach((other, count) -> addPair(dishId, other, -1));
+        if (items.size() == 0) {
+            userItems.remove(userId);
+        }
+    }
+
+    private void addPair(long a, long b, int delta) {
+        int before = row(a).addTo(b, delta) - delta;
+        row(b).addTo(a, delta);
+        if (before == 0) {
+            pairCount++;
+        } else if (before + delta == 0) {
+            pairCount--;
+            dropIfEmpty(a);
+            dropIfEmpty(b);
+        }
+    }
+
+    private LongIntHashMap row(long dishId) {
+        return cooccurrence.computeIfAbsent(dishId, id -> new LongIntHashMap());
+    }
+
+    private void dropIfEmpty(long dishId) {
+        LongIntHashMap row = cooccurrence.get(dishId);
+        if (row != null && row.size() == 0) {
+            cooccurrence.remove(dishId);
+        }
+    }
+
+    /**
+     * 用户对各菜品的协同过滤亲和度：对用户喜欢的每道菜品累加相似菜品的余弦相似度，再按喜欢的菜品数取平均，
+     * 取值在 [0, 1]。没有正反馈的用户返回 null
+     */
+    public LongDoubleHashMap affinity(Long userId) {
+        if (!enabled || userId == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            LongIntHashMap items = userItems.get(userId);
+            if (items == null || items.size() == 0) {
+                return null;
+            }
+            LongDoubleHashMap scores = new LongDoubleHashMap(64);
+            items.forEach((liked, count) -> {
+                LongIntHashMap neighbours = cooccurrence.get(liked);
+                if (neighbours == null) {
+                    return;
+                }
+                double likedUsers = itemUsers.get(liked);
+                neighbours.forEach((dishId, together) ->
+                        scores.addTo(dishId, together / Math.sqrt(likedUsers * itemUsers.get(dishId))));
+            });
+            scores.scale(1.0 / items.size());
+            return scores;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 模型规模统计
+     */
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("enabled", enabled);
+            stats.put("loaded", loaded);
+            stats.put("users", userItems.size());
+            stats.put("items", itemUsers.size());
+            stats.put("pairs", pairCount);
+            stats.put("positiveRecommendations", positiveRecommendations.size());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 暂存的一条推荐记录反馈状态
+     */
+    private static class FeedbackChange {
+        final long userId;
+        final long dishId;
+        final boolean positive;
+
+        FeedbackChange(long userId, long dishId, boolean positive) {
+            this.userId = userId;
+            this.dishId = dishId;
+            this.positive = positive;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.restaurant.recommendation.service;
+
+import java.util.Arrays;
+
+/**
+ * long -> double 开放寻址哈希表（线性探测，只增不删，非线程安全）
+ * 用于请求内按菜品ID累加得分，查找为 O(1)
+ */
+public final class LongDoubleHashMap {
+
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private double[] values;
+    private int size;
+
+    public LongDoubleHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new double[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * 取值，不存在返回0
+     */
+    public double get(long key) {
+        return getOrDefault(key, 0.0);
+    }
+
+    /**
+     * 取值，不存在返回默认值
+     */
+    public double getOrDefault(long key, double defaultValue) {
+        int mask = keys.length - 1;
+        for (int slot = LongIntHashMap.hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return values[slot];
+            if (keys[slot] == FREE) return defaultValue;
+        }
+    }
+
+    /**
+     * 在原值上累加
+     */
+    public void addTo(long key, double delta) {
+        int mask = keys.length - 1;
+        int slot = LongIntHashMap.hash(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == key) {
+            values[slot] += delta;
+            return;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * 所有值乘以同一系数
+     */
+    public void scale(double factor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                values[slot] *= factor;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new long[capacity];
+        values = new double[capacity];
+        Arrays.fill(keys, FREE);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = LongIntHashMap.hash(oldKeys[i]) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
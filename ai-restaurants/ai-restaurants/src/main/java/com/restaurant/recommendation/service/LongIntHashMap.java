@@ -0,0 +1,137 @@
+package com.restaurant.recommendation.service;
+
+import java.util.Arrays;
+
+/**
+ * long -> int 开放寻址哈希表（线性探测，基本类型数组存储，非线程安全）
+ * 键为数据库ID（正数），计数降为0时删除该键
+ */
+public final class LongIntHashMap {
+
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public LongIntHashMap() {
+        this(8);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * 取值，不存在返回0
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return values[slot];
+            if (keys[slot] == FREE) return 0;
+        }
+    }
+
+    /**
+     * 在原值上累加，返回新值；结果为0时删除该键
+     */
+    public int addTo(long key, int delta) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == key) {
+            int value = values[slot] + delta;
+            if (value == 0) {
+                removeAt(slot);
+            } else {
+                values[slot] = value;
+            }
+            return value;
+        }
+        if (delta == 0) {
+            return 0;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return delta;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * 遍历全部键值对
+     */
+    public void forEach(Visitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                visitor.visit(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(long key, int value);
+    }
+
+    /**
+     * 删除后将同一探测链上的后续元素前移，保持查找不中断
+     */
+    private void removeAt(int slot) {
+        int mask = keys.length - 1;
+        size--;
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            // home 不在 (gap, next] 区间内时，该元素可以前移到空位
+            if (gap <= next ? (home <= gap || home > next) : (home <= gap && home > next)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = FREE;
+        values[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,235 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.Dish;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 营养成分范围索引（不可变）
+ * 按数值升序（同值按菜品ID升序）存放 数值-菜品ID 对，区间和阈值查询通过二分查找定位，
+ * 时间复杂度 O(log n + 结果数)。数值为空的菜品单独记录，不出现在任何区间结果中
+ */
+public final class NutrientRangeIndex {
+
+    private final Function<Dish, Double> getter;
+    private final double[] values;
+    private final long[] ids;
+    private final long[] missing;    // 数值为空的菜品ID，升序
+
+    private NutrientRangeIndex(Function<Dish, Double> getter, double[] values, long[] ids, long[] missing) {
+        this.getter = getter;
+        this.values = values;
+        this.ids = ids;
+        this.missing = missing;
+    }
+
+    /**
+     * 全量构建索引
+     */
+    public static NutrientRangeIndex build(List<Dish> dishes, Function<Dish, Double> getter) {
+        List<Dish> present = new ArrayList<>(dishes.size());
+        List<Long> absent = new ArrayList<>();
+        for (Dish dish : dishes) {
+            if (getter.apply(dish) != null) {
+                present.add(dish);
+            } else {
+                absent.add(dish.getId());
+            }
+        }
+        present.sort(Comparator.comparing(getter).thenComparing(Dish::getId));
+        double[] values = new double[present.size()];
+        long[] ids = new long[present.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getter.apply(present.get(i));
+            ids[i] = present.get(i).getId();
+        }
+        long[] missing = absent.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new NutrientRangeIndex(getter, values, ids, missing);
+    }
+
+    /**
+     * 新增或修改菜品后的索引；previous 为修改前的菜品，新增时为 null
+     */
+    public NutrientRangeIndex withDish(Dish previous, Dish current) {
+        Double before = previous != null ? getter.apply(previous) : null;
+        Double after = getter.apply(current);
+        if (previous != null && (before == null ? after == null : before.equals(after))) {
+            return this;
+        }
+        NutrientRangeIndex next = previous != null ? withoutDish(previous) : this;
+        return next.insert(current.getId(), after);
+    }
+
+    /**
+     * 删除菜品后的索引
+     */
+    public NutrientRangeIndex withoutDish(Dish previous) {
+        long id = previous.getId();
+        Double value = getter.apply(previous);
+        if (value == null) {
+            return new NutrientRangeIndex(getter, values, ids, PostingList.remove(missing, id));
+        }
+        int position = find(value, id);
+        if (position < 0) {
+            return this;
+        }
+        double[] nextValues = new double[values.length - 1];
+        long[] nextIds = new long[ids.length - 1];
+        System.arraycopy(values, 0, nextValues, 0, position);
+        System.arraycopy(values, position + 1, nextValues, position, values.length - position - 1);
+        System.arraycopy(ids, 0, nextIds, 0, position);
+        System.arraycopy(ids, position + 1, nextIds, position, ids.length - position - 1);
+        return new NutrientRangeIndex(getter, nextValues, nextIds, missing);
+    }
+
+    private NutrientRangeIndex insert(long id, Double value) {
+        if (value == null) {
+            return new NutrientRangeIndex(getter, values, ids, PostingList.insert(missing, id));
+        }
+        int position = find(value, id);
+        if (position >= 0) {
+            return this;
+        }
+        position = -position - 1;
+        double[] nextValues = new double[values.length + 1];
+        long[] nextIds = new long[ids.length + 1];
+        System.arraycopy(values, 0, nextValues, 0, position);
+        System.arraycopy(values, position, nextValues, position + 1, values.length - position);
+        System.arraycopy(ids, 0, nextIds, 0, position);
+        System.arraycopy(ids, position, nextIds, position + 1, ids.length - position);
+        nextValues[position] = value;
+        nextIds[position] = id;
+        return new NutrientRangeIndex(getter, nextValues, nextIds, missing);
+    }
+
+    /**
+     * 按 (数值, ID) 二分查找，找到返回位置，否则返回 -(插入位置) - 1
+     */
+    private int find(double value, long id) {
+        int low = 0;
+        int high = values.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Double.compare(values[mid], value);
+            if (cmp == 0) {
+                cmp = Long.compare(ids[mid], id);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * 第一个数值 >= value 的位置
+     */
+    public int lowerBound(double value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 第一个数值 > value 的位置
+     */
+    public int upperBound(double value) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 数值在 [min, max] 内的菜品ID，按ID升序，可直接与倒排表做集合运算
+     */
+    public long[] between(double min, double max) {
+        return idsIn(lowerBound(min), upperBound(max));
+    }
+
+    /**
+     * 数值 <= max 的菜品ID，按ID升序
+     */
+    public long[] atMost(double max) {
+        return idsIn(0, upperBound(max));
+    }
+
+    /**
+     * 数值 >= min 的菜品ID，按ID升序
+     */
+    public long[] atLeast(double min) {
+        return idsIn(lowerBound(min), values.length);
+    }
+
+    /**
+     * 位置区间 [from, to) 内的菜品ID，按数值升序（同值按ID升序）
+     */
+    public long[] ascending(int from, int to) {
+        return from < to ? Arrays.copyOfRange(ids, from, to) : PostingList.EMPTY;
+    }
+
+    /**
+     * 位置区间 [from, to) 内的菜品ID，按数值降序（同值按ID升序）
+     */
+    public long[] descending(int from, int to) {
+        if (from >= to) {
+            return PostingList.EMPTY;
+        }
+        long[] result = new long[to - from];
+        int n = 0;
+        int end = to;
+        while (end > from) {
+            int start = end - 1;
+            while (start > from && values[start - 1] == values[end - 1]) {
+                start--;
+            }
+            for (int i = start; i < end; i++) {
+                result[n++] = ids[i];
+            }
+            end = start;
+        }
+        return result;
+    }
+
+    /**
+     * 数值为空的菜品ID，按ID升序
+     */
+    public long[] missing() {
+        return missing;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    private long[] idsIn(int from, int to) {
+        if (from >= to) {
+            return PostingList.EMPTY;
+        }
+        long[] result = Arrays.copyOfRange(ids, from, to);
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -1,97 +1,264 @@
 package com.restaurant.recommendation.service;
 
+import com.restaurant.recommendation.dto.KeysetPage;
 import com.restaurant.recommendation.entity.Dish;
+import com.restaurant.recommendation.entity.MealEvent;
 import com.restaurant.recommendation.entity.NutritionReport;
 import com.restaurant.recommendation.entity.User;
+import com.restaurant.recommendation.repository.MealEventRepository;
 import com.restaurant.recommendation.repository.NutritionReportRepository;
 import com.restaurant.recommendation.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 
 @Service
 public class NutritionAnalysisService {
     
+    private static final int REPORT_LOCK_STRIPES = 64;
+    private static final int MAX_UPSERT_ATTEMPTS = 3;
+    
+    private static final String INSERT_DISH_SQL =
+            "INSERT INTO report_dishes (report_id, dish_order, dish_name) VALUES (?, ?, ?)";
+    
+    private static final String DELETE_DISHES_SQL = "DELETE FROM report_dishes WHERE report_id = ?";
+    
+    private static final String DAY_DISHES_SQL = "SELECT dish_name FROM meal_events " +
+            "WHERE user_id = ? AND consumed_at >= ? AND consumed_at < ? ORDER BY id";
+    
     @Autowired
     private NutritionReportRepository nutritionReportRepository;
     
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private MealEventRepository mealEventRepository;
+    
+    @Autowired
+    private DishCatalogService dishCatalogService;
+    
+    @Autowired
+    private HealthRulesService healthRulesService;
+    
+    @Autowired
+    private NutritionRollupService nutritionRollupService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    // 报告写入的分段锁，按用户散列
+    private final ReentrantLock[] reportLocks = new ReentrantLock[REPORT_LOCK_STRIPES];
+    private TransactionTemplate transactionTemplate;
+    
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < REPORT_LOCK_STRIPES; i++) {
+            reportLocks[i] = new ReentrantLock();
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
     /**
      * 为用户生成营养分析报告
+     * 提交的菜品按每道一份记为报告时间的用餐事件（来源为报告），替换当天之前提交的菜品清单：
+     * 先从当日报告中扣除上次提交的事件并删除，再累加本次提交，逐条记录的用餐不受影响，
+     * 重复提交同一清单不会使当日总量翻倍，当日报告始终等于当日全部用餐事件之和
      */
     public NutritionReport generateNutritionReport(Long userId, List<Dish> consumedDishes, 
                                                   LocalDateTime reportDate) {
+        LocalDate day = reportDate.toLocalDate();
+        return upsertDailyReport(userId, reportDate, (user, report) -> {
+            // 撤销当天上次提交的菜品清单
+            List<MealEvent> previous = mealEventRepository.findByUserIdAndSourceAndConsumedAtBetween(
+                    userId, MealEvent.SOURCE_REPORT, day.atStartOfDay(), day.plusDays(1).atStartOfDay().minusNanos(1));
+            for (MealEvent event : previous) {
+                report.removeIntake(event);
+            }
+            mealEventRepository.deleteAllInBatch(previous);
+            int firstOrder = previous.isEmpty() ? report.getDishCount() : rebuildDishes(report, userId, day);
+            
+            List<MealEvent> events = new ArrayList<>(consumedDishes.size());
+            for (Dish dish : consumedDishes) {
+                MealEvent event = new MealEvent(userId, dish, 1.0, null, reportDate);
+                event.setSource(MealEvent.SOURCE_REPORT);
+                report.addIntake(event);
+                events.add(event);
+            }
+            
+            // 根据汇总计算比例、评估和建议
+            assess(report, user);
+            report.setGeneratedAt(LocalDateTime.now());
+            NutritionReport saved = saveWithDishes(report, firstOrder, events);
+            
+            for (MealEvent event : events) {
+                event.setReportId(saved.getId());
+            }
+            mealEventRepository.saveAll(events);
+            return saved;
+        });
+    }
+    
+    /**
+     * 预览一组菜品的营养分析：在临时报告上汇总并评估，不写入报告和用餐记录
+     */
+    public NutritionReport previewNutritionReport(Long userId, List<Dish> dishes, LocalDateTime reportDate) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
-        
-        // 检查当日是否已有报告
-        Optional<NutritionReport> existingReport = nutritionReportRepository
-                .findByUserAndReportDate(user, reportDate);
-        
-        NutritionReport report;
-        if (existingReport.isPresent()) {
-            report = existingReport.get();
-        } else {
-            report = new NutritionReport(user, reportDate);
+        NutritionReport report = new NutritionReport(user, reportDate);
+        List<String> names = new ArrayList<>(dishes.size());
+        for (Dish dish : dishes) {
+            report.addIntake(new MealEvent(userId, dish, 1.0, null, reportDate));
+            names.add(dish.getName());
         }
-        
-        // 计算营养摄入汇总
-        calculateNutritionSummary(report, consumedDishes);
-        
-        // 计算推荐摄入量
-        calculateRecommendedIntake(report, user);
-        
-        // 计算营养比例
-        calculateNutritionPercentages(report);
-        
-        // 生成健康评估
-        generateHealthAssessment(report, user);
-        
-        // 生成营养建议
-        generateNutritionRecommendations(report, user);
-        
-        // 设置包含的菜品列表
-        List<String> dishNames = consumedDishes.stream()
-                .map(Dish::getName)
-                .collect(java.util.stream.Collectors.toList());
-        report.setIncludedDishes(dishNames);
-        
-        return nutritionReportRepository.save(report);
+        report.setIncludedDishes(names);
+        assess(report, user);
+        return report;
     }
     
     /**
-     * 计算营养摄入汇总
+     * 记录一次用餐并增量更新当日营养报告
+     * 用餐事件只追加不修改；当日报告的各项总量直接累加本次摄入，比例、评估和建议只依赖总量，
+     * 每条事件的计算量与当日已记录的用餐次数无关
      */
-    private void calculateNutritionSummary(NutritionReport report, List<Dish> dishes) {
-        double totalCalories = 0;
-        double totalProtein = 0;
-        double totalFat = 0;
-        double totalCarbohydrate = 0;
-        double totalFiber = 0;
-        double totalSodium = 0;
-        double totalCholesterol = 0;
+    public NutritionReport logMeal(Long userId, Long dishId, double servings, String mealType,
+                                   LocalDateTime consumedAt) {
+        if (!(servings > 0)) {
+            throw new RuntimeException("份数必须大于0");
+        }
+        Dish dish = dishCatalogService.resolve(dishId);
         
-        for (Dish dish : dishes) {
-            if (dish.getCalories() != null) totalCalories += dish.getCalories();
-            if (dish.getProtein() != null) totalProtein += dish.getProtein();
-            if (dish.getFat() != null) totalFat += dish.getFat();
-            if (dish.getCarbohydrate() != null) totalCarbohydrate += dish.getCarbohydrate();
-            if (dish.getFiber() != null) totalFiber += dish.getFiber();
-            if (dish.getSodium() != null) totalSodium += dish.getSodium();
-            if (dish.getCholesterol() != null) totalCholesterol += dish.getCholesterol();
+        return upsertDailyReport(userId, consumedAt, (user, report) -> {
+            MealEvent event = new MealEvent(userId, dish, servings, mealType, consumedAt);
+            int firstOrder = report.getDishCount();
+            report.addIntake(event);
+            assess(report, user);
+            report.setGeneratedAt(LocalDateTime.now());
+            NutritionReport saved = saveWithDishes(report, firstOrder, Collections.singletonList(event));
+            
+            event.setReportId(saved.getId());
+            mealEventRepository.save(event);
+            return saved;
+        });
+    }
+    
+    /**
+     * 保存报告并把本次用餐的菜品追加到菜品列表
+     * 新报告的菜品随报告一起插入；已有报告以追加前的菜品数为起始序号直接插入菜品行，不加载菜品集合，
+     * 追加的代价与当日已有菜品数无关，集合在响应序列化时才按需读取
+     */
+    private NutritionReport saveWithDishes(NutritionReport report, int firstOrder, List<MealEvent> events) {
+        if (report.getId() == null) {
+            List<String> dishes = new ArrayList<>(events.size());
+            for (MealEvent event : events) {
+                dishes.add(event.getDishName());
+            }
+            report.setIncludedDishes(dishes);
+            return nutritionReportRepository.save(report);
+        }
+        NutritionReport saved = nutritionReportRepository.save(report);
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            rows.add(new Object[] {saved.getId(), firstOrder + i, events.get(i).getDishName()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_DISH_SQL, rows);
+        return saved;
+    }
+    
+    /**
+     * 替换提交的菜品清单后按当日剩余用餐记录重写菜品列表，返回剩余菜品数，即追加新菜品的起始序号
+     */
+    private int rebuildDishes(NutritionReport report, Long userId, LocalDate day) {
+        List<String> remaining = jdbcTemplate.queryForList(DAY_DISHES_SQL, String.class, userId,
+                Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+        jdbcTemplate.update(DELETE_DISHES_SQL, report.getId());
+        List<Object[]> rows = new ArrayList<>(remaining.size());
+        for (int order = 0; order < remaining.size(); order++) {
+            rows.add(new Object[] {report.getId(), order, remaining.get(order)});
+        }
+        jdbcTemplate.batchUpdate(INSERT_DISH_SQL, rows);
+        report.setDishCount(remaining.size());
+        return remaining.size();
+    }
+    
+    /**
+     * 读取并写入用户某天的报告，当天没有报告时新建
+     * 同一用户的写入在分段锁内串行执行，锁覆盖整个事务（含提交），不同用户映射到不同分段时互不阻塞；
+     * 报告所在周、月的汇总在同一事务内按报告写入前后的差值增量更新，同一用户不同日期的报告共用月汇总，
+     * 因此按用户而不是按用户和日期加锁；
+     * 其他实例或批量任务并发写入导致唯一键（用户+日期）或版本号冲突时，事务回滚后重新读取再执行。
+     * 用户在每次尝试的事务内加载：回滚会清空持久化上下文，沿用之前加载的用户会使报告关联到未初始化的代理
+     */
+    private NutritionReport upsertDailyReport(Long userId, LocalDateTime reportDate,
+                                              BiFunction<User, NutritionReport, NutritionReport> work) {
+        LocalDate day = reportDate.toLocalDate();
+        ReentrantLock lock = reportLocks[LongIntHashMap.hash(userId) & (REPORT_LOCK_STRIPES - 1)];
+        lock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> {
+                        User user = userRepository.findById(userId)
+                                .orElseThrow(() -> new RuntimeException("用户不存在"));
+                        NutritionReport report = nutritionReportRepository.findByUserAndReportDay(user, day)
+                                .orElseGet(() -> new NutritionReport(user, reportDate));
+                        Object[] before = report.getId() != null ? NutritionRollupService.row(report) : null;
+                        NutritionReport saved = work.apply(user, report);
+                        nutritionRollupService.applyChange(userId, day, before, NutritionRollupService.row(saved));
+                        return saved;
+                    });
+                } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+                    if (attempt >= MAX_UPSERT_ATTEMPTS) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 获取用户某天的用餐记录
+     */
+    public List<MealEvent> getMealEvents(Long userId, LocalDate date) {
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("用户不存在");
         }
+        return mealEventRepository.findByUserIdAndConsumedAtBetweenOrderByConsumedAtAsc(
+                userId, date.atStartOfDay(), date.plusDays(1).atStartOfDay().minusNanos(1));
+    }
+    
+    /**
+     * 根据当日总量计算推荐摄入量、营养比例、健康评估和营养建议
+     */
+    public void assess(NutritionReport report, User user) {
+        // 计算推荐摄入量
+        calculateRecommendedIntake(report, user);
         
-        report.setTotalCalories(totalCalories);
-        report.setTotalProtein(totalProtein);
-        report.setTotalFat(totalFat);
-        report.setTotalCarbohydrate(totalCarbohydrate);
-        report.setTotalFiber(totalFiber);
-        report.setTotalSodium(totalSodium);
-        report.setTotalCholesterol(totalCholesterol);
+        // 计算营养比例
+        calculateNutritionPercentages(report);
+        
+        // 生成健康评估和营养建议
+        applyHealthRules(report, user);
     }
     
     /**
@@ -145,122 +312,36 @@ public class NutritionAnalysisService {
     }
     
     /**
-     * 生成健康评估
+     * 按健康规则表生成健康评估以及警告码和建议码，文本在读取时渲染
      */
-    private void generateHealthAssessment(NutritionReport report, User user) {
-        int healthScore = 100;
-        StringBuilder warnings = new StringBuilder();
-        
-        // 检查热量摄入
-        if (report.isCaloriesExceeded()) {
-            healthScore -= 20;
-            warnings.append("热量摄入超标，建议减少高热量食物；");
-        }
-        
-        // 检查蛋白质摄入
-        if (!report.isProteinAdequate()) {
-            healthScore -= 15;
-            warnings.append("蛋白质摄入不足，建议增加蛋白质丰富的食物；");
-        }
-        
-        // 检查钠摄入
-        if (report.getTotalSodium() != null && report.getTotalSodium() > 2300) {
-            healthScore -= 15;
-            warnings.append("钠摄入过高，建议减少盐分摄入；");
-        }
-        
-        // 检查营养平衡
-        Double balance = report.getNutritionBalance();
-        if (balance != null && balance < 70) {
-            healthScore -= 10;
-            warnings.append("营养比例不均衡，建议调整饮食结构；");
-        }
-        
-        // 检查用户特殊健康状况
-        if (user.getDiseases() != null) {
-            for (String disease : user.getDiseases()) {
-                if ("糖尿病".equals(disease) && report.getTotalCarbohydrate() != null && 
-                    report.getTotalCarbohydrate() > report.getRecommendedCarbohydrate() * 1.2) {
-                    healthScore -= 25;
-                    warnings.append("碳水化合物摄入过多，不利于血糖控制；");
-                }
-                if ("高血压".equals(disease) && report.getTotalSodium() != null && 
-                    report.getTotalSodium() > 1500) {
-                    healthScore -= 25;
-                    warnings.append("钠摄入过高，不利于血压控制；");
-                }
-            }
-        }
-        
-        // 设置健康状态
-        if (healthScore >= 80) {
-            report.setHealthStatus("健康");
-        } else if (healthScore >= 60) {
-            report.setHealthStatus("需改善");
-        } else {
-            report.setHealthStatus("不健康");
-        }
-        
-        report.setHealthScore(Math.max(0, healthScore));
-        report.setWarnings(warnings.toString());
+    private void applyHealthRules(NutritionReport report, User user) {
+        HealthRules.Result result = healthRulesService.current()
+                .evaluate(HealthRules.vectorOf(report), user.getDiseases());
+        report.setHealthScore(result.getScore());
+        report.setHealthStatus(result.getStatus());
+        report.setWarningCodes(result.getWarningCodes());
+        report.setAdviceCodes(result.getAdviceCodes());
     }
     
     /**
-     * 生成营养建议
+     * 分页获取用户的营养报告历史，按报告日期降序；cursor 为空时返回第一页
      */
-    private void generateNutritionRecommendations(NutritionReport report, User user) {
-        StringBuilder recommendations = new StringBuilder();
-        
-        // 基于热量摄入的建议
-        if (report.isCaloriesExceeded()) {
-            recommendations.append("建议：1.选择低热量、高纤维的食物；2.控制食物分量；3.增加运动量。");
-        } else if (report.getTotalCalories() != null && report.getRecommendedCalories() != null &&
-                   report.getTotalCalories() < report.getRecommendedCalories() * 0.8) {
-            recommendations.append("建议：1.适当增加食物摄入量；2.选择营养密度高的食物；3.少食多餐。");
-        }
-        
-        // 基于蛋白质摄入的建议
-        if (!report.isProteinAdequate()) {
-            recommendations.append("蛋白质建议：1.增加瘦肉、鱼类、豆类摄入；2.每餐都要包含蛋白质食物；3.考虑蛋白质补充剂。");
-        }
-        
-        // 基于营养平衡的建议
-        Double balance = report.getNutritionBalance();
-        if (balance != null && balance < 70) {
-            recommendations.append("营养平衡建议：1.合理搭配三大营养素；2.多样化饮食；3.减少加工食品摄入。");
-        }
-        
-        // 基于用户疾病的建议
-        if (user.getDiseases() != null) {
-            for (String disease : user.getDiseases()) {
-                switch (disease) {
-                    case "糖尿病":
-                        recommendations.append("糖尿病建议：1.控制碳水化合物摄入；2.选择低GI食物；3.定时定量进餐。");
-                        break;
-                    case "高血压":
-                        recommendations.append("高血压建议：1.低钠饮食；2.增加钾的摄入；3.控制体重。");
-                        break;
-                    case "高血脂":
-                        recommendations.append("高血脂建议：1.减少饱和脂肪摄入；2.增加omega-3脂肪酸；3.多吃燕麦等降脂食物。");
-                        break;
-                }
+    public KeysetPage<NutritionReport> getUserNutritionHistory(Long userId, String cursor, int limit) {
+        // 先加载用户，使结果中的用户引用指向已加载的实体而不是未初始化的代理
+        userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("用户不存在"));
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<NutritionReport> fetched;
+        if (cursor == null) {
+            fetched = nutritionReportRepository.findHistoryPage(userId, page);
+        } else {
+            KeysetPage.Cursor after = KeysetPage.Cursor.decode(cursor);
+            if (after.getTime() == null) {
+                throw new RuntimeException("分页游标无效");
             }
+            fetched = nutritionReportRepository.findHistoryPageAfter(userId, after.getTime(), after.getId(), page);
         }
-        
-        if (recommendations.length() == 0) {
-            recommendations.append("您的营养摄入较为均衡，请继续保持良好的饮食习惯。");
-        }
-        
-        report.setRecommendations(recommendations.toString());
-    }
-    
-    /**
-     * 获取用户的营养报告历史
-     */
-    public List<NutritionReport> getUserNutritionHistory(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
-        return nutritionReportRepository.findByUserOrderByReportDateDesc(user);
+        return KeysetPage.of(fetched, limit, report -> KeysetPage.Cursor.of(report.getReportDate(), report.getId()));
     }
     
     /**
@@ -274,11 +355,22 @@ public class NutritionAnalysisService {
     }
     
     /**
-     * 计算用户的平均健康得分
+     * 统计用户特定日期范围的营养摄入与健康得分，整月、整周部分取自汇总
+     */
+    public Map<String, Object> getUserNutritionSummary(Long userId, LocalDate startDay, LocalDate endDay) {
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("用户不存在");
+        }
+        return nutritionRollupService.summarize(userId, startDay, endDay);
+    }
+    
+    /**
+     * 计算用户的平均健康得分，由月汇总合计得出
      */
     public Double getUserAverageHealthScore(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
-        return nutritionReportRepository.calculateAverageHealthScoreByUser(user);
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("用户不存在");
+        }
+        return nutritionRollupService.getAverageHealthScore(userId);
     }
 } 
\ No newline at end of file
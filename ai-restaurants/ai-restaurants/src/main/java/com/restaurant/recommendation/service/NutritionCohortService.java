@@ -0,0 +1,394 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.NutritionReport;
+import com.restaurant.recommendation.entity.NutritionRollup;
+import com.restaurant.recommendation.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import javax.annotation.PreDestroy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 用户分群营养统计
+ * 分群来自用户的疾病、喜欢的菜系或过敏食物，只读取 用户ID-取值 对，不加载用户实体；
+ * 一个用户可同时属于多个分群，分别计入。
+ * 规则命中统计把日期范围内（按 report_day 索引读取）分群用户的报告装入按行连续存放的营养向量，
+ * 按分区并行评估健康规则的条件后合并各分区的计数；得分分布统计直接合并周、月汇总中的得分分布，
+ * 只有首尾零散日期读取原始报告
+ */
+@Service
+public class NutritionCohortService {
+
+    public static final String DIMENSION_DISEASE = "disease";
+    public static final String DIMENSION_CUISINE = "cuisine";
+    public static final String DIMENSION_ALLERGY = "allergy";
+
+    private static final String ALL_USERS = "全部用户";
+
+    private static final String REPORT_COLUMNS_SQL = "SELECT user_id, total_calories, total_protein, total_fat, " +
+            "total_carbohydrate, total_fiber, total_sodium, total_cholesterol, recommended_calories, " +
+            "recommended_protein, recommended_fat, recommended_carbohydrate, protein_percentage, fat_percentage, " +
+            "carbohydrate_percentage FROM nutrition_reports WHERE report_day BETWEEN ? AND ?";
+
+    @Value("${recommendation.analytics.partition-size:4096}")
+    private int partitionSize;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private HealthRulesService healthRulesService;
+
+    @Autowired
+    private NutritionRollupService nutritionRollupService;
+
+    private final ForkJoinPool pool;
+
+    public NutritionCohortService(@Value("${recommendation.analytics.parallelism:0}") int parallelism) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * 统计各分群在日期范围内命中某条健康规则条件的用户和天数占比。
+     * 未指定分群维度时，疾病规则默认统计患有该疾病的用户，其余规则统计全部用户
+     */
+    public Map<String, Object> ruleShare(String ruleName, String dimension, String value,
+                                         LocalDate startDay, LocalDate endDay) {
+        if (endDay.isBefore(startDay)) {
+            throw new RuntimeException("结束日期不能早于开始日期");
+        }
+        HealthRules rules = healthRulesService.current();
+        int rule = rules.indexOf(ruleName);
+        if (rule < 0) {
+            throw new RuntimeException("健康规则不存在：" + ruleName);
+        }
+        if (dimension == null && rules.diseaseOf(rule) != null) {
+            dimension = DIMENSION_DISEASE;
+            value = rules.diseaseOf(rule);
+        }
+
+        long started = System.nanoTime();
+        Segments segments = segments(dimension, value);
+        ReportColumns columns = loadColumns(segments, startDay, endDay);
+        Tally[] tallies = columns.size < partitionSize
+                ? tally(columns, segments.names.length, rules, rule, 0, columns.size)
+                : pool.invoke(new TallyTask(columns, segments.names.length, rules, rule, 0, columns.size,
+                        Math.max(1, partitionSize)));
+
+        List<Map<String, Object>> rows = new ArrayList<>(segments.names.length);
+        for (int s = 0; s < segments.names.length; s++) {
+            Tally tally = tallies[s];
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("segment", segments.names[s]);
+            row.put("users", segments.sizes[s]);
+            row.put("usersWithReports", tally.users.size());
+            row.put("usersMatched", tally.matchedUsers.size());
+            row.put("userShare", share(tally.matchedUsers.size(), tally.users.size()));
+            row.put("reportDays", tally.days);
+            row.put("matchedDays", tally.matchedDays);
+            row.put("dayShare", share(tally.matchedDays, tally.days));
+            rows.add(row);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rule", rules.nameOf(rule));
+        result.put("when", rules.conditionOf(rule));
+        result.put("dimension", dimension);
+        result.put("startDate", startDay.toString());
+        result.put("endDate", endDay.toString());
+        result.put("segments", rows);
+        result.put("scannedReports", columns.size);
+        result.put("elapsedMs", (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * 统计各分群在日期范围内的健康得分分布
+     */
+    public Map<String, Object> scoreHistogram(String dimension, String value, LocalDate startDay, LocalDate endDay) {
+        long started = System.nanoTime();
+        NutritionRollupService.Periods periods = NutritionRollupService.decompose(startDay, endDay);
+        Segments segments = segments(dimension, value);
+        Map<Long, int[]> byUser = nutritionRollupService.scoreHistograms(periods);
+
+        int[][] histograms = new int[segments.names.length][NutritionRollup.SCORE_BUCKETS];
+        int[] users = new int[segments.names.length];
+        for (Map.Entry<Long, int[]> entry : byUser.entrySet()) {
+            int[] memberships = segments.of(entry.getKey());
+            if (memberships == null || Arrays.stream(entry.getValue()).sum() == 0) {
+                continue;
+            }
+            for (int s : memberships) {
+                users[s]++;
+                for (int b = 0; b < NutritionRollup.SCORE_BUCKETS; b++) {
+                    histograms[s][b] += entry.getValue()[b];
+                }
+            }
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>(segments.names.length);
+        for (int s = 0; s < segments.names.length; s++) {
+            int days = Arrays.stream(histograms[s]).sum();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("segment", segments.names[s]);
+            row.put("users", segments.sizes[s]);
+            row.put("usersWithReports", users[s]);
+            row.put("reportDays", days);
+            row.put("histogram", histograms[s]);
+            rows.add(row);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("dimension", dimension);
+        result.put("startDate", startDay.toString());
+        result.put("endDate", endDay.toString());
+        result.put("buckets", bucketLabels());
+        result.put("segments", rows);
+        result.put("sources", periods.describe());
+        result.put("elapsedMs", (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    private static List<String> bucketLabels() {
+        List<String> labels = new ArrayList<>(NutritionRollup.SCORE_BUCKETS);
+        for (int b = 0; b < NutritionRollup.SCORE_BUCKETS; b++) {
+            labels.add(b * 10 + "-" + (b == NutritionRollup.SCORE_BUCKETS - 1 ? 100 : b * 10 + 9));
+        }
+        return labels;
+    }
+
+    private static Double share(long part, long total) {
+        return total > 0 ? (double) part / total : null;
+    }
+
+    /**
+     * 按维度读取分群：指定取值时只有一个分群，否则每个取值一个分群；未指定维度时为全部用户
+     */
+    private Segments segments(String dimension, String value) {
+        if (dimension == null) {
+            return Segments.single(ALL_USERS, userRepository.findAllIds());
+        }
+        if (value != null) {
+            List<Long> ids;
+            switch (dimension) {
+                case DIMENSION_DISEASE: ids = userRepository.findIdsByDisease(value); break;
+                case DIMENSION_CUISINE: ids = userRepository.findIdsByPreferredCuisine(value); break;
+                case DIMENSION_ALLERGY: ids = userRepository.findIdsByAllergy(value); break;
+                default: throw new RuntimeException("不支持的分群维度：" + dimension);
+            }
+            return Segments.single(value, ids);
+        }
+        List<Object[]> pairs;
+        switch (dimension) {
+            case DIMENSION_DISEASE: pairs = userRepository.findDiseasePairs(); break;
+            case DIMENSION_CUISINE: pairs = userRepository.findPreferredCuisinePairs(); break;
+            case DIMENSION_ALLERGY: pairs = userRepository.findAllergyPairs(); break;
+            default: throw new RuntimeException("不支持的分群维度：" + dimension);
+        }
+        return Segments.of(pairs);
+    }
+
+    /**
+     * 读取日期范围内属于任一分群的报告，营养向量按行连续存放
+     */
+    private ReportColumns loadColumns(Segments segments, LocalDate startDay, LocalDate endDay) {
+        ReportColumns columns = new ReportColumns();
+        jdbcTemplate.query(REPORT_COLUMNS_SQL, rs -> {
+            long userId = rs.getLong(1);
+            int[] memberships = segments.of(userId);
+            if (memberships != null) {
+                columns.add(userId, memberships, rs);
+            }
+        }, java.sql.Date.valueOf(startDay), java.sql.Date.valueOf(endDay));
+        return columns;
+    }
+
+    private static Tally[] tally(ReportColumns columns, int segmentCount, HealthRules rules, int rule,
+                                 int from, int to) {
+        Tally[] tallies = new Tally[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            tallies[s] = new Tally();
+        }
+        for (int row = from; row < to; row++) {
+            boolean matched = rules.matches(rule, columns.vectors, row * HealthRules.DIMENSIONS);
+            long userId = columns.userIds[row];
+            for (int s : columns.memberships[row]) {
+                tallies[s].add(userId, matched);
+            }
+        }
+        return tallies;
+    }
+
+    /**
+     * 分区统计任务，叶子分区顺序评估，回溯时合并计数
+     */
+    private static class TallyTask extends RecursiveTask<Tally[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final ReportColumns columns;
+        private final int segmentCount;
+        private final HealthRules rules;
+        private final int rule;
+        private final int from;
+        private final int to;
+        private final int partitionSize;
+
+        TallyTask(ReportColumns columns, int segmentCount, HealthRules rules, int rule,
+                  int from, int to, int partitionSize) {
+            this.columns = columns;
+            this.segmentCount = segmentCount;
+            this.rules = rules;
+            this.rule = rule;
+            this.from = from;
+            this.to = to;
+            this.partitionSize = partitionSize;
+        }
+
+        @Override
+        protected Tally[] compute() {
+            if (to - from <= partitionSize) {
+                return tally(columns, segmentCount, rules, rule, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            TallyTask left = new TallyTask(columns, segmentCount, rules, rule, from, mid, partitionSize);
+            TallyTask right = new TallyTask(columns, segmentCount, rules, rule, mid, to, partitionSize);
+            left.fork();
+            Tally[] merged = right.compute();
+            Tally[] other = left.join();
+            for (int s = 0; s < segmentCount; s++) {
+                merged[s].mergeFrom(other[s]);
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * 一个分群的计数：报告天数、命中天数，以及有报告和有命中的用户（用户ID -> 天数）
+     */
+    private static final class Tally {
+        long days;
+        long matchedDays;
+        final LongIntHashMap users = new LongIntHashMap();
+        final LongIntHashMap matchedUsers = new LongIntHashMap();
+
+        void add(long userId, boolean matched) {
+            days++;
+            users.addTo(userId, 1);
+            if (matched) {
+                matchedDays++;
+                matchedUsers.addTo(userId, 1);
+            }
+        }
+
+        void mergeFrom(Tally other) {
+            days += other.days;
+            matchedDays += other.matchedDays;
+            other.users.forEach(users::addTo);
+            other.matchedUsers.forEach(matchedUsers::addTo);
+        }
+    }
+
+    /**
+     * 分群：名称、人数和每个用户所属的分群下标
+     */
+    private static final class Segments {
+        final String[] names;
+        final int[] sizes;
+        final Map<Long, int[]> memberships;
+
+        private Segments(String[] names, int[] sizes, Map<Long, int[]> memberships) {
+            this.names = names;
+            this.sizes = sizes;
+            this.memberships = memberships;
+        }
+
+        static Segments single(String name, List<Long> userIds) {
+            int[] only = {0};
+            Map<Long, int[]> memberships = new HashMap<>(userIds.size() * 2);
+            for (Long userId : userIds) {
+                memberships.put(userId, only);
+            }
+            return new Segments(new String[] {name}, new int[] {memberships.size()}, memberships);
+        }
+
+        static Segments of(List<Object[]> pairs) {
+            Map<String, Integer> index = new LinkedHashMap<>();
+            Map<Long, int[]> memberships = new HashMap<>();
+            for (Object[] pair : pairs) {
+                Integer segment = index.computeIfAbsent((String) pair[1], k -> index.size());
+                int[] current = memberships.get((Long) pair[0]);
+                if (current == null) {
+                    memberships.put((Long) pair[0], new int[] {segment});
+                } else if (Arrays.stream(current).noneMatch(s -> s == segment)) {
+                    int[] grown = Arrays.copyOf(current, current.length + 1);
+                    grown[current.length] = segment;
+                    memberships.put((Long) pair[0], grown);
+                }
+            }
+            int[] sizes = new int[index.size()];
+            for (int[] segmentsOfUser : memberships.values()) {
+                for (int s : segmentsOfUser) {
+                    sizes[s]++;
+                }
+            }
+            return new Segments(index.keySet().toArray(new String[0]), sizes, memberships);
+        }
+
+        int[] of(long userId) {
+            return memberships.get(userId);
+        }
+    }
+
+    /**
+     * 报告列：用户ID、所属分群和按行连续存放的营养向量（空值为 NaN）
+     */
+    private static final class ReportColumns {
+        int size;
+        long[] userIds = new long[1024];
+        int[][] memberships = new int[1024][];
+        double[] vectors = new double[1024 * HealthRules.DIMENSIONS];
+
+        void add(long userId, int[] segments, ResultSet rs) throws SQLException {
+            if (size == userIds.length) {
+                userIds = Arrays.copyOf(userIds, size * 2);
+                memberships = Arrays.copyOf(memberships, size * 2);
+                vectors = Arrays.copyOf(vectors, size * 2 * HealthRules.DIMENSIONS);
+            }
+            userIds[size] = userId;
+            memberships[size] = segments;
+            int offset = size * HealthRules.DIMENSIONS;
+            // 第2列起依次对应 TOTAL_CALORIES 至 CARBOHYDRATE_PERCENTAGE
+            for (int m = 0; m <= HealthRules.Metric.CARBOHYDRATE_PERCENTAGE.ordinal(); m++) {
+                double value = rs.getDouble(m + 2);
+                vectors[offset + m] = rs.wasNull() ? Double.NaN : value;
+            }
+            double protein = vectors[offset + HealthRules.Metric.PROTEIN_PERCENTAGE.ordinal()];
+            double fat = vectors[offset + HealthRules.Metric.FAT_PERCENTAGE.ordinal()];
+            double carbohydrate = vectors[offset + HealthRules.Metric.CARBOHYDRATE_PERCENTAGE.ordinal()];
+            vectors[offset + HealthRules.Metric.NUTRITION_BALANCE.ordinal()] =
+                    Double.isNaN(protein) || Double.isNaN(fat) || Double.isNaN(carbohydrate)
+                            ? Double.NaN : NutritionReport.nutritionBalance(protein, fat, carbohydrate);
+            size++;
+        }
+    }
+}
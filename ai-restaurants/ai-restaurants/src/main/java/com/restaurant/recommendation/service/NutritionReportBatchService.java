@@ -0,0 +1,559 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.JobCheckpoint;
+import com.restaurant.recommendation.entity.NutritionReport;
+import com.restaurant.recommendation.repository.JobCheckpointRepository;
+import com.restaurant.recommendation.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 营养报告夜间批量重算
+ * 按用餐记录为全部用户重新生成指定日期的营养报告。用户按主键对分区数取模划分为若干分区并行处理，
+ * 每个分区按主键分页推进：一页用户的用餐汇总、菜品列表和已有报告各用一次查询读取，
+ * 报告和菜品列表以 JDBC 批量写入，与该分区的检查点在同一事务中提交，中断后各分区从自己的检查点续跑。
+ * 已有报告按版本号条件更新，与在线记录用餐并发修改同一报告时跳过该报告，以在线写入的结果为准。
+ * 只重算完全由用餐记录构成的报告：已有报告的菜品数与当日用餐记录数不一致时（如旧版本直接提交菜品生成的报告），
+ * 其内容无法由用餐记录还原，保持原样并计入跳过数
+ */
+@Service
+public class NutritionReportBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(NutritionReportBatchService.class);
+
+    static final String JOB_NAME = "nutrition-report-batch";
+
+    private static final int MAX_PAGE_ATTEMPTS = 3;
+
+    private static final String MEAL_TOTALS_SQL = "SELECT user_id, MIN(consumed_at), " +
+            "COALESCE(SUM(calories), 0), COALESCE(SUM(protein), 0), COALESCE(SUM(fat), 0), " +
+            "COALESCE(SUM(carbohydrate), 0), COALESCE(SUM(fiber), 0), COALESCE(SUM(sodium), 0), " +
+            "COALESCE(SUM(cholesterol), 0), COUNT(*) FROM meal_events " +
+            "WHERE consumed_at >= ? AND consumed_at < ? AND user_id IN (%s) GROUP BY user_id";
+
+    private static final String MEAL_DISHES_SQL = "SELECT user_id, dish_name FROM meal_events " +
+            "WHERE consumed_at >= ? AND consumed_at < ? AND user_id IN (%s) ORDER BY user_id, id";
+
+    private static final String EXISTING_SQL = "SELECT r.user_id, r.id, r.version, r.dish_count " +
+            "FROM nutrition_reports r WHERE r.report_day = ? AND r.user_id IN (%s)";
+
+    private static final String UPDATE_SQL = "UPDATE nutrition_reports SET generated_at = ?, " +
+            "total_calories = ?, total_protein = ?, total_fat = ?, total_carbohydrate = ?, total_fiber = ?, " +
+            "total_sodium = ?, total_cholesterol = ?, recommended_calories = ?, recommended_protein = ?, " +
+            "recommended_fat = ?, recommended_carbohydrate = ?, protein_percentage = ?, fat_percentage = ?, " +
+            "carbohydrate_percentage = ?, health_status = ?, health_score = ?, advice_codes = ?, warning_codes = ?, " +
+            "dish_count = ?, version = version + 1 WHERE id = ? AND version = ?";
+
+    private static final String INSERT_SQL = "INSERT INTO nutrition_reports (generated_at, " +
+            "total_calories, total_protein, total_fat, total_carbohydrate, total_fiber, " +
+            "total_sodium, total_cholesterol, recommended_calories, recommended_protein, " +
+            "recommended_fat, recommended_carbohydrate, protein_percentage, fat_percentage, " +
+            "carbohydrate_percentage, health_status, health_score, advice_codes, warning_codes, " +
+            "dish_count, user_id, report_date, report_day, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private static final String DELETE_DISHES_SQL = "DELETE FROM report_dishes WHERE report_id IN (%s)";
+
+    private static final String INSERT_DISH_SQL =
+            "INSERT INTO report_dishes (report_id, dish_order, dish_name) VALUES (?, ?, ?)";
+
+    @Value("${recommendation.nutrition.batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recommendation.nutrition.batch.partitions:4}")
+    private int partitions;
+
+    @Value("${recommendation.nutrition.batch.page-size:500}")
+    private int pageSize;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserProfileService userProfileService;
+
+    @Autowired
+    private NutritionAnalysisService nutritionAnalysisService;
+
+    @Autowired
+    private NutritionRollupService nutritionRollupService;
+    
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "nutrition-report-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // 最近一轮（或正在执行的一轮）的进度
+    private volatile Progress progress;
+
+    @PostConstruct
+    public void init() {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(partitions, r -> {
+            Thread thread = new Thread(r, "nutrition-report-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * 每晚重算前一天的报告；提交到任务自己的线程执行，不占用定时调度线程
+     */
+    @Scheduled(cron = "${recommendation.nutrition.batch.cron:0 30 2 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            trigger(LocalDate.now().minusDays(1));
+        }
+    }
+
+    /**
+     * 手动触发指定日期的重算（异步执行），已有任务在运行时返回 false
+     */
+    public boolean trigger(LocalDate day) {
+        if (running.get()) {
+            return false;
+        }
+        coordinator.submit(() -> run(day));
+        return true;
+    }
+
+    /**
+     * 重算指定日期的报告；该日期上一轮未完成时，已完成的分区跳过，其余分区从检查点继续
+     */
+    public void run(LocalDate day) {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        Progress current = new Progress(day);
+        this.progress = current;
+        try {
+            JobCheckpoint job = checkpointRepository.findById(jobName(day))
+                    .orElseGet(() -> new JobCheckpoint(jobName(day)));
+            boolean resume = job.isInterrupted();
+            if (!resume) {
+                job.setProcessedCount(0L);
+                job.setStartedAt(LocalDateTime.now());
+            }
+            job.setStatus(JobCheckpoint.STATUS_RUNNING);
+            job.setUpdatedAt(LocalDateTime.now());
+            job = checkpointRepository.save(job);
+
+            List<Future<Long>> futures = new ArrayList<>(partitions);
+            for (int p = 0; p < partitions; p++) {
+                int partition = p;
+                futures.add(workers.submit(() -> runPartition(day, partition, resume, current)));
+            }
+            long processed = 0;
+            RuntimeException failure = null;
+            for (Future<Long> future : futures) {
+                try {
+                    processed += future.get();
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = new RuntimeException("营养报告批量任务被中断");
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+
+            job.setProcessedCount(job.getProcessedCount() + processed);
+            job.setStatus(JobCheckpoint.STATUS_COMPLETED);
+            job.setUpdatedAt(LocalDateTime.now());
+            checkpointRepository.save(job);
+            current.finish(JobCheckpoint.STATUS_COMPLETED);
+            log.info("营养报告批量任务完成：日期 {}，写入 {} 份报告，跳过冲突 {} 份，跳过非用餐记录构成的报告 {} 份，{} 行/秒",
+                    day, current.rows.sum(), current.conflicts.sum(), current.skipped.sum(),
+                    Math.round(current.rowsPerSecond()));
+        } catch (RuntimeException e) {
+            log.error("营养报告批量任务失败，将从检查点续跑", e);
+            current.finish(JobCheckpoint.STATUS_FAILED);
+            checkpointRepository.findById(jobName(day)).ifPresent(job -> {
+                job.setStatus(JobCheckpoint.STATUS_FAILED);
+                job.setUpdatedAt(LocalDateTime.now());
+                checkpointRepository.save(job);
+            });
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 处理一个分区，返回本次处理的用户数
+     */
+    private long runPartition(LocalDate day, int partition, boolean resume, Progress current) {
+        String name = partitionName(day, partition);
+        JobCheckpoint checkpoint = checkpointRepository.findById(name).orElseGet(() -> new JobCheckpoint(name));
+        if (resume && JobCheckpoint.STATUS_COMPLETED.equals(checkpoint.getStatus())) {
+            return 0;
+        }
+        if (!resume || !checkpoint.isInterrupted()) {
+            checkpoint.setLastProcessedId(0L);
+            checkpoint.setProcessedCount(0L);
+            checkpoint.setStartedAt(LocalDateTime.now());
+        }
+        checkpoint.setStatus(JobCheckpoint.STATUS_RUNNING);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpoint = checkpointRepository.save(checkpoint);
+
+        long processed = 0;
+        try {
+            List<Long> userIds;
+            while (!(userIds = userRepository.findIdsAfterInPartition(checkpoint.getLastProcessedId(),
+                    partitions, partition, PageRequest.of(0, pageSize))).isEmpty()) {
+                checkpoint = processPage(day, userIds, checkpoint, current);
+                processed += userIds.size();
+            }
+            checkpoint.setStatus(JobCheckpoint.STATUS_COMPLETED);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+            return processed;
+        } catch (RuntimeException e) {
+            checkpoint.setStatus(JobCheckpoint.STATUS_FAILED);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+            throw e;
+        }
+    }
+
+    /**
+     * 重算一页用户的报告并与检查点一起提交；与在线写入同时新建同一报告导致唯一键冲突，
+     * 或同时刷新同一周、月汇总导致版本号冲突时，整页回滚后重试
+     */
+    private JobCheckpoint processPage(LocalDate day, List<Long> userIds, JobCheckpoint checkpoint, Progress current) {
+        // 不写入画像缓存，否则一轮任务后缓存中会有全部用户的画像
+        Map<Long, UserProfile> profiles = userProfileService.loadProfiles(userIds);
+        long processedBefore = checkpoint.getProcessedCount();
+        PageResult[] result = new PageResult[1];
+        for (int attempt = 1; ; attempt++) {
+            try {
+                JobCheckpoint saved = transactionTemplate.execute(status -> {
+                    result[0] = writePage(day, userIds, profiles);
+                    checkpoint.setLastProcessedId(userIds.get(userIds.size() - 1));
+                    checkpoint.setProcessedCount(processedBefore + userIds.size());
+                    checkpoint.setUpdatedAt(LocalDateTime.now());
+                    return checkpointRepository.save(checkpoint);
+                });
+                current.users.add(userIds.size());
+                current.rows.add(result[0].rows);
+                current.conflicts.add(result[0].conflicts);
+                current.skipped.add(result[0].skipped);
+                return saved;
+            } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+                if (attempt >= MAX_PAGE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private PageResult writePage(LocalDate day, List<Long> userIds, Map<Long, UserProfile> profiles) {
+        String placeholders = String.join(",", Collections.nCopies(userIds.size(), "?"));
+        Timestamp dayStart = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp dayEnd = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        List<Object> args = new ArrayList<>(userIds.size() + 2);
+        args.add(dayStart);
+        args.add(dayEnd);
+        args.addAll(userIds);
+
+        // 先读已有报告的版本号再读用餐记录：此后在线写入的用餐会使版本号变化，条件更新时按冲突跳过
+        List<Object> existingArgs = new ArrayList<>(userIds.size() + 1);
+        existingArgs.add(java.sql.Date.valueOf(day));
+        existingArgs.addAll(userIds);
+        Map<Long, long[]> existing = new HashMap<>();
+        jdbcTemplate.query(String.format(EXISTING_SQL, placeholders), rs -> {
+            existing.put(rs.getLong(1), new long[] {rs.getLong(2), rs.getLong(3), rs.getLong(4)});
+        }, existingArgs.toArray());
+
+        // 当日用餐汇总，已有报告的菜品数与用餐记录数不一致时跳过
+        Map<Long, NutritionReport> reports = new LinkedHashMap<>();
+        int[] skipped = new int[1];
+        jdbcTemplate.query(String.format(MEAL_TOTALS_SQL, placeholders), rs -> {
+            UserProfile profile = profiles.get(rs.getLong(1));
+            if (profile == null) {
+                return;
+            }
+            long[] row = existing.get(profile.getUserId());
+            if (row != null && row[2] != rs.getLong(10)) {
+                skipped[0]++;
+                return;
+            }
+            NutritionReport report = new NutritionReport(profile.getUser(), rs.getTimestamp(2).toLocalDateTime());
+            report.setTotalCalories(rs.getDouble(3));
+            report.setTotalProtein(rs.getDouble(4));
+            report.setTotalFat(rs.getDouble(5));
+            report.setTotalCarbohydrate(rs.getDouble(6));
+            report.setTotalFiber(rs.getDouble(7));
+            report.setTotalSodium(rs.getDouble(8));
+            report.setTotalCholesterol(rs.getDouble(9));
+            report.setDishCount(rs.getInt(10));
+            report.setIncludedDishes(new ArrayList<>());
+            reports.put(profile.getUserId(), report);
+        }, args.toArray());
+        if (reports.isEmpty()) {
+            return new PageResult(0, 0, skipped[0]);
+        }
+        jdbcTemplate.query(String.format(MEAL_DISHES_SQL, placeholders), rs -> {
+            NutritionReport report = reports.get(rs.getLong(1));
+            if (report != null) {
+                report.getIncludedDishes().add(rs.getString(2));
+            }
+        }, args.toArray());
+        for (NutritionReport report : reports.values()) {
+            nutritionAnalysisService.assess(report, report.getUser());
+        }
+
+        // 区分已有报告和新报告
+        List<NutritionReport> updates = new ArrayList<>();
+        List<NutritionReport> inserts = new ArrayList<>();
+        for (Map.Entry<Long, NutritionReport> entry : reports.entrySet()) {
+            long[] row = existing.get(entry.getKey());
+            if (row != null) {
+                entry.getValue().setId(row[0]);
+                entry.getValue().setVersion(row[1]);
+                updates.add(entry.getValue());
+            } else {
+                inserts.add(entry.getValue());
+            }
+        }
+
+        // 按版本号条件更新，未命中的报告已被在线写入修改
+        List<NutritionReport> written = new ArrayList<>(reports.size());
+        int conflicts = 0;
+        int[][] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, updates, updates.size(), (ps, report) -> {
+            int i = bindAssessment(ps, report);
+            ps.setLong(i++, report.getId());
+            ps.setLong(i, report.getVersion());
+        });
+        int n = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                NutritionReport report = updates.get(n++);
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                    written.add(report);
+                } else {
+                    conflicts++;
+                }
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts, inserts.size(), (ps, report) -> {
+                int i = bindAssessment(ps, report);
+                ps.setLong(i++, report.getUser().getId());
+                ps.setTimestamp(i++, Timestamp.valueOf(report.getReportDate()));
+                ps.setDate(i, java.sql.Date.valueOf(report.getReportDay()));
+            });
+            List<Object> insertedArgs = new ArrayList<>(inserts.size() + 1);
+            insertedArgs.add(java.sql.Date.valueOf(day));
+            for (NutritionReport report : inserts) {
+                insertedArgs.add(report.getUser().getId());
+            }
+            jdbcTemplate.query(String.format(EXISTING_SQL, String.join(",", Collections.nCopies(inserts.size(), "?"))),
+                    rs -> {
+                        NutritionReport report = reports.get(rs.getLong(1));
+                        report.setId(rs.getLong(2));
+                    }, insertedArgs.toArray());
+            written.addAll(inserts);
+        }
+
+        // 重写菜品列表
+        if (!written.isEmpty()) {
+            List<Object> reportIds = new ArrayList<>(written.size());
+            List<Object[]> dishRows = new ArrayList<>();
+            for (NutritionReport report : written) {
+                reportIds.add(report.getId());
+                List<String> dishes = report.getIncludedDishes();
+                for (int order = 0; order < dishes.size(); order++) {
+                    dishRows.add(new Object[] {report.getId(), order, dishes.get(order)});
+                }
+            }
+            jdbcTemplate.update(String.format(DELETE_DISHES_SQL,
+                    String.join(",", Collections.nCopies(reportIds.size(), "?"))), reportIds.toArray());
+            jdbcTemplate.batchUpdate(INSERT_DISH_SQL, dishRows);
+
+            // 刷新写入报告所在周、月的汇总
+            List<Long> writtenUsers = new ArrayList<>(written.size());
+            for (NutritionReport report : written) {
+                writtenUsers.add(report.getUser().getId());
+            }
+            nutritionRollupService.refresh(writtenUsers, day);
+        }
+        return new PageResult(written.size(), conflicts, skipped[0]);
+    }
+
+    /**
+     * 绑定生成时间、营养汇总、评估结果和菜品数，返回下一个参数位置
+     */
+    private static int bindAssessment(PreparedStatement ps, NutritionReport report) throws SQLException {
+        int i = 1;
+        ps.setTimestamp(i++, Timestamp.valueOf(report.getGeneratedAt()));
+        ps.setObject(i++, report.getTotalCalories(), Types.DOUBLE);
+        ps.setObject(i++, report.getTotalProtein(), Types.DOUBLE);
+        ps.setObject(i++, report.getTotalFat(), Types.DOUBLE);
+        ps.setObject(i++, report.getTotalCarbohydrate(), Types.DOUBLE);
+        ps.setObject(i++, report.getTotalFiber(), Types.DOUBLE);
+        ps.setObject(i++, report.getTotalSodium(), Types.DOUBLE);
+        ps.setObject(i++, report.getTotalCholesterol(), Types.DOUBLE);
+        ps.setObject(i++, report.getRecommendedCalories(), Types.DOUBLE);
+        ps.setObject(i++, report.getRecommendedProtein(), Types.DOUBLE);
+        ps.setObject(i++, report.getRecommendedFat(), Types.DOUBLE);
+        ps.setObject(i++, report.getRecommendedCarbohydrate(), Types.DOUBLE);
+        ps.setObject(i++, report.getProteinPercentage(), Types.DOUBLE);
+        ps.setObject(i++, report.getFatPercentage(), Types.DOUBLE);
+        ps.setObject(i++, report.getCarbohydratePercentage(), Types.DOUBLE);
+        ps.setString(i++, report.getHealthStatus());
+        ps.setObject(i++, report.getHealthScore(), Types.INTEGER);
+        ps.setString(i++, report.getAdviceCodes());
+        ps.setString(i++, report.getWarningCodes());
+        ps.setInt(i++, report.getDishCount());
+        return i;
+    }
+
+    private static String jobName(LocalDate day) {
+        return JOB_NAME + ":" + day;
+    }
+
+    private static String partitionName(LocalDate day, int partition) {
+        return jobName(day) + ":p" + partition;
+    }
+
+    /**
+     * 任务状态：最近一轮的进度、吞吐和各分区检查点
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("partitions", partitions);
+        Progress current = progress;
+        if (current == null) {
+            return status;
+        }
+        status.put("date", current.day);
+        status.put("status", current.status);
+        status.put("users", current.users.sum());
+        status.put("rowsWritten", current.rows.sum());
+        status.put("conflicts", current.conflicts.sum());
+        status.put("skipped", current.skipped.sum());
+        status.put("elapsedMs", current.elapsedMs());
+        status.put("rowsPerSecond", current.rowsPerSecond());
+        List<Map<String, Object>> checkpoints = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            int partition = p;
+            checkpointRepository.findById(partitionName(current.day, p)).ifPresent(checkpoint -> {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("partition", partition);
+                row.put("status", checkpoint.getStatus());
+                row.put("lastProcessedId", checkpoint.getLastProcessedId());
+                row.put("processedCount", checkpoint.getProcessedCount());
+                row.put("updatedAt", checkpoint.getUpdatedAt());
+                checkpoints.add(row);
+            });
+        }
+        status.put("checkpoints", checkpoints);
+        return status;
+    }
+
+    /**
+     * 一轮任务的进度计数
+     */
+    private static final class Progress {
+        final LocalDate day;
+        final long startedAt = System.nanoTime();
+        final LongAdder users = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        volatile String status = JobCheckpoint.STATUS_RUNNING;
+        volatile long finishedAt;
+
+        Progress(LocalDate day) {
+            this.day = day;
+        }
+
+        void finish(String status) {
+            this.finishedAt = System.nanoTime();
+            this.status = status;
+        }
+
+        long elapsedMs() {
+            long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+            return (end - startedAt) / 1_000_000;
+        }
+
+        double rowsPerSecond() {
+            long elapsed = elapsedMs();
+            return elapsed > 0 ? rows.sum() * 1000.0 / elapsed : 0.0;
+        }
+    }
+
+    /**
+     * 一页的写入结果
+     */
+    private static final class PageResult {
+        final int rows;
+        final int conflicts;
+        final int skipped;
+
+        PageResult(int rows, int conflicts, int skipped) {
+            this.rows = rows;
+            this.conflicts = conflicts;
+            this.skipped = skipped;
+        }
+    }
+}
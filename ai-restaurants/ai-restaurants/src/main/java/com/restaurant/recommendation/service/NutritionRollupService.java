@@ -0,0 +1,425 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.NutritionReport;
+import com.restaurant.recommendation.entity.NutritionRollup;
+import com.restaurant.recommendation.repository.NutritionReportRepository;
+import com.restaurant.recommendation.repository.NutritionRollupRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 营养报告周、月汇总
+ * 在线写入报告时，在同一事务内按该天报告写入前后的差值增量更新所在周、月的两条汇总；
+ * 批量任务按周期内至多31天的报告整体重算。汇总带版本号，并发修改同一汇总时后提交者冲突回滚，由调用方重试。
+ * 区间统计按整月、整周取汇总，首尾不足一周的零散日期读取原始报告，查询量只与区间跨越的月数有关
+ */
+@Service
+public class NutritionRollupService {
+
+    private static final String[] GRANULARITIES = {NutritionRollup.WEEK, NutritionRollup.MONTH};
+
+    @Autowired
+    private NutritionRollupRepository rollupRepository;
+
+    @Autowired
+    private NutritionReportRepository nutritionReportRepository;
+
+    /**
+     * 按报告重算一批用户在某天所在周、月的汇总，须在写入报告的事务内调用
+     */
+    public void refresh(Collection<Long> userIds, LocalDate day) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        LocalDate weekStart = NutritionRollup.periodStart(NutritionRollup.WEEK, day);
+        LocalDate weekEnd = NutritionRollup.periodEnd(NutritionRollup.WEEK, weekStart);
+        LocalDate monthStart = NutritionRollup.periodStart(NutritionRollup.MONTH, day);
+        LocalDate monthEnd = NutritionRollup.periodEnd(NutritionRollup.MONTH, monthStart);
+
+        // 先读汇总（含版本号）再读报告：此后其他事务提交的报告会使版本号变化，写回时按冲突回滚
+        List<String> keys = new ArrayList<>(userIds.size() * 2);
+        for (Long userId : userIds) {
+            keys.add(NutritionRollup.key(NutritionRollup.WEEK, userId, weekStart));
+            keys.add(NutritionRollup.key(NutritionRollup.MONTH, userId, monthStart));
+        }
+        Map<String, NutritionRollup> existing = new HashMap<>();
+        for (NutritionRollup rollup : rollupRepository.findAllById(keys)) {
+            existing.put(rollup.getRollupKey(), rollup);
+        }
+
+        Map<String, Totals> totals = new HashMap<>();
+        LocalDate from = weekStart.isBefore(monthStart) ? weekStart : monthStart;
+        LocalDate to = weekEnd.isAfter(monthEnd) ? weekEnd : monthEnd;
+        for (Object[] row : nutritionReportRepository.findRollupRows(userIds, from, to)) {
+            Long userId = (Long) row[0];
+            LocalDate reportDay = (LocalDate) row[1];
+            if (!reportDay.isBefore(weekStart) && !reportDay.isAfter(weekEnd)) {
+                totals.computeIfAbsent(NutritionRollup.key(NutritionRollup.WEEK, userId, weekStart),
+                        k -> new Totals()).add(row);
+            }
+            if (!reportDay.isBefore(monthStart) && !reportDay.isAfter(monthEnd)) {
+                totals.computeIfAbsent(NutritionRollup.key(NutritionRollup.MONTH, userId, monthStart),
+                        k -> new Totals()).add(row);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<NutritionRollup> changed = new ArrayList<>(keys.size());
+        for (Long userId : userIds) {
+            for (String granularity : GRANULARITIES) {
+                LocalDate periodStart = NutritionRollup.WEEK.equals(granularity) ? weekStart : monthStart;
+                String key = NutritionRollup.key(granularity, userId, periodStart);
+                Totals periodTotals = totals.get(key);
+                NutritionRollup rollup = existing.get(key);
+                if (rollup == null) {
+                    if (periodTotals == null) {
+                        continue;
+                    }
+                    rollup = new NutritionRollup(granularity, userId, periodStart);
+                }
+                (periodTotals != null ? periodTotals : new Totals()).writeTo(rollup);
+                rollup.setUpdatedAt(now);
+                changed.add(rollup);
+            }
+        }
+        rollupRepository.saveAllAndFlush(changed);
+    }
+
+    /**
+     * 按某天报告写入前后的值增量更新所在周、月的汇总，须在写入报告的事务内调用
+     * 报告天数、营养合计、得分合计和得分分段直接加减，只读写两条汇总；写入前的值恰是周期内的最低（最高）值
+     * 而写入后变大（变小）时，用一次聚合查询重读该周期的最低最高值。汇总尚不存在时按报告重算。
+     * before 为空表示当天新建的报告，两者的列顺序同 findRollupRows
+     */
+    public void applyChange(Long userId, LocalDate day, Object[] before, Object[] after) {
+        List<String> keys = new ArrayList<>(GRANULARITIES.length);
+        for (String granularity : GRANULARITIES) {
+            keys.add(NutritionRollup.key(granularity, userId, NutritionRollup.periodStart(granularity, day)));
+        }
+        List<NutritionRollup> rollups = rollupRepository.findAllById(keys);
+        if (rollups.size() < keys.size()) {
+            refresh(Collections.singletonList(userId), day);
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for (NutritionRollup rollup : rollups) {
+            Totals totals = new Totals();
+            totals.add(rollup);
+            boolean extremesStale = false;
+            if (before != null) {
+                totals.subtract(before);
+                extremesStale = narrows(before[2], after[2], rollup.getMinCalories(), rollup.getMaxCalories())
+                        || narrows(before[9], after[9], rollup.getMinHealthScore(), rollup.getMaxHealthScore());
+            }
+            totals.add(after);
+            if (extremesStale) {
+                totals.setExtremes(nutritionReportRepository.findExtremes(
+                        userId, rollup.getPeriodStart(), rollup.getPeriodEnd()).get(0));
+            }
+            totals.writeTo(rollup);
+            rollup.setUpdatedAt(now);
+        }
+        rollupRepository.saveAllAndFlush(rollups);
+    }
+
+    /**
+     * 写入前的值是周期内的最低（最高）值，写入后变大（变小）或被移除时，最低（最高）值需要重读
+     */
+    private static boolean narrows(Object before, Object after, Number min, Number max) {
+        if (before == null) {
+            return false;
+        }
+        double previous = ((Number) before).doubleValue();
+        double current = after != null ? ((Number) after).doubleValue() : Double.NaN;
+        return (min != null && previous == min.doubleValue() && !(current <= previous))
+                || (max != null && previous == max.doubleValue() && !(current >= previous));
+    }
+
+    /**
+     * 报告的营养总量和健康得分，列顺序同 findRollupRows
+     */
+    public static Object[] row(NutritionReport report) {
+        return new Object[] {report.getUser().getId(), report.getReportDay(), report.getTotalCalories(),
+                report.getTotalProtein(), report.getTotalFat(), report.getTotalCarbohydrate(), report.getTotalFiber(),
+                report.getTotalSodium(), report.getTotalCholesterol(), report.getHealthScore()};
+    }
+
+    /**
+     * 统计用户在日期范围内（含首尾）的营养摄入与健康得分
+     */
+    public Map<String, Object> summarize(Long userId, LocalDate startDay, LocalDate endDay) {
+        Periods periods = decompose(startDay, endDay);
+        List<String> keys = new ArrayList<>(periods.months.size() + periods.weeks.size());
+        for (LocalDate month : periods.months) {
+            keys.add(NutritionRollup.key(NutritionRollup.MONTH, userId, month));
+        }
+        for (LocalDate week : periods.weeks) {
+            keys.add(NutritionRollup.key(NutritionRollup.WEEK, userId, week));
+        }
+
+        Totals totals = new Totals();
+        for (NutritionRollup rollup : rollupRepository.findAllById(keys)) {
+            totals.add(rollup);
+        }
+        if (!periods.rawDays.isEmpty()) {
+            for (Object[] row : nutritionReportRepository.findRollupRowsByDays(userId, periods.rawDays)) {
+                totals.add(row);
+            }
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("userId", userId);
+        summary.put("startDate", startDay.toString());
+        summary.put("endDate", endDay.toString());
+        summary.putAll(totals.toMap());
+        summary.put("sources", periods.describe());
+        return summary;
+    }
+
+    /**
+     * 全部用户在拆分后各周期内的健康得分分布（用户ID -> 10个分段的天数），整月、整周取自汇总
+     */
+    public Map<Long, int[]> scoreHistograms(Periods periods) {
+        Map<Long, int[]> histograms = new HashMap<>();
+        addHistograms(histograms, NutritionRollup.MONTH, periods.months);
+        addHistograms(histograms, NutritionRollup.WEEK, periods.weeks);
+        if (!periods.rawDays.isEmpty()) {
+            for (Object[] row : nutritionReportRepository.findHealthScoresByDays(periods.rawDays)) {
+                histograms.computeIfAbsent((Long) row[0], k -> new int[NutritionRollup.SCORE_BUCKETS])
+                        [NutritionRollup.scoreBucket(((Number) row[1]).intValue())]++;
+            }
+        }
+        return histograms;
+    }
+
+    private void addHistograms(Map<Long, int[]> histograms, String granularity, List<LocalDate> periodStarts) {
+        if (periodStarts.isEmpty()) {
+            return;
+        }
+        NutritionRollup parsed = new NutritionRollup();
+        for (Object[] row : rollupRepository.findScoreHistograms(granularity, periodStarts)) {
+            parsed.setScoreHistogram((String) row[1]);
+            int[] counts = parsed.histogram();
+            int[] target = histograms.computeIfAbsent((Long) row[0], k -> new int[NutritionRollup.SCORE_BUCKETS]);
+            for (int i = 0; i < counts.length; i++) {
+                target[i] += counts[i];
+            }
+        }
+    }
+
+    /**
+     * 按整月、整周拆分日期范围（含首尾），其余日期逐日读取原始报告；
+     * 跨月的整周若会挡住下一个完整月，改为逐日读取到下月1日
+     */
+    public static Periods decompose(LocalDate startDay, LocalDate endDay) {
+        if (endDay.isBefore(startDay)) {
+            throw new RuntimeException("结束日期不能早于开始日期");
+        }
+        Periods periods = new Periods();
+        LocalDate day = startDay;
+        while (!day.isAfter(endDay)) {
+            LocalDate monthEnd = NutritionRollup.periodEnd(NutritionRollup.MONTH, day.withDayOfMonth(1));
+            LocalDate weekEnd = day.plusDays(6);
+            LocalDate nextMonth = monthEnd.plusDays(1);
+            boolean nextMonthCovered = !nextMonth.isAfter(weekEnd)
+                    && !NutritionRollup.periodEnd(NutritionRollup.MONTH, nextMonth).isAfter(endDay);
+            if (day.getDayOfMonth() == 1 && !monthEnd.isAfter(endDay)) {
+                periods.months.add(day);
+                day = nextMonth;
+            } else if (day.getDayOfWeek() == DayOfWeek.MONDAY && !weekEnd.isAfter(endDay) && !nextMonthCovered) {
+                periods.weeks.add(day);
+                day = weekEnd.plusDays(1);
+            } else {
+                periods.rawDays.add(day);
+                day = day.plusDays(1);
+            }
+        }
+        return periods;
+    }
+
+    /**
+     * 日期范围的拆分结果：整月、整周的起始日和其余零散日期
+     */
+    public static final class Periods {
+        final List<LocalDate> months = new ArrayList<>();
+        final List<LocalDate> weeks = new ArrayList<>();
+        final List<LocalDate> rawDays = new ArrayList<>();
+
+        public Map<String, Object> describe() {
+            Map<String, Object> sources = new LinkedHashMap<>();
+            sources.put("monthRollups", months.size());
+            sources.put("weekRollups", weeks.size());
+            sources.put("rawDays", rawDays.size());
+            return sources;
+        }
+    }
+
+    /**
+     * 用户全部报告的平均健康得分，由月汇总合计得出；没有得分时返回 null
+     */
+    public Double getAverageHealthScore(Long userId) {
+        List<Object[]> rows = rollupRepository.sumHealthScores(userId, NutritionRollup.MONTH);
+        if (rows.isEmpty() || rows.get(0)[1] == null || ((Number) rows.get(0)[1]).longValue() == 0) {
+            return null;
+        }
+        return ((Number) rows.get(0)[0]).doubleValue() / ((Number) rows.get(0)[1]).longValue();
+    }
+
+    /**
+     * 用户某一粒度的汇总列表
+     */
+    public List<NutritionRollup> getRollups(Long userId, String granularity, LocalDate startDay, LocalDate endDay) {
+        if (!NutritionRollup.WEEK.equals(granularity) && !NutritionRollup.MONTH.equals(granularity)) {
+            throw new RuntimeException("不支持的汇总粒度：" + granularity);
+        }
+        return rollupRepository.findByUserIdAndGranularityAndPeriodStartBetweenOrderByPeriodStartAsc(
+                userId, granularity, NutritionRollup.periodStart(granularity, startDay), endDay);
+    }
+
+    /**
+     * 合计值：报告天数、营养总量、最低最高热量与健康得分分布
+     */
+    private static final class Totals {
+        int reportCount;
+        final double[] nutrients = new double[7];
+        Double minCalories;
+        Double maxCalories;
+        int scoredCount;
+        long scoreSum;
+        Integer minScore;
+        Integer maxScore;
+        final int[] histogram = new int[NutritionRollup.SCORE_BUCKETS];
+
+        // 一天的报告，列顺序同 findRollupRows
+        void add(Object[] row) {
+            reportCount++;
+            for (int i = 0; i < nutrients.length; i++) {
+                if (row[i + 2] != null) {
+                    nutrients[i] += ((Number) row[i + 2]).doubleValue();
+                }
+            }
+            if (row[2] != null) {
+                double calories = ((Number) row[2]).doubleValue();
+                minCalories = minCalories == null ? calories : Math.min(minCalories, calories);
+                maxCalories = maxCalories == null ? calories : Math.max(maxCalories, calories);
+            }
+            if (row[9] != null) {
+                int score = ((Number) row[9]).intValue();
+                scoredCount++;
+                scoreSum += score;
+                minScore = minScore == null ? score : Math.min(minScore, score);
+                maxScore = maxScore == null ? score : Math.max(maxScore, score);
+                histogram[NutritionRollup.scoreBucket(score)]++;
+            }
+        }
+
+        // 撤销一天的报告，最低最高值由调用方处理
+        void subtract(Object[] row) {
+            reportCount--;
+            for (int i = 0; i < nutrients.length; i++) {
+                if (row[i + 2] != null) {
+                    nutrients[i] -= ((Number) row[i + 2]).doubleValue();
+                }
+            }
+            if (row[9] != null) {
+                int score = ((Number) row[9]).intValue();
+                scoredCount--;
+                scoreSum -= score;
+                histogram[NutritionRollup.scoreBucket(score)]--;
+            }
+        }
+
+        // 周期内的最低最高热量和健康得分，列顺序同 findExtremes
+        void setExtremes(Object[] row) {
+            minCalories = row[0] != null ? ((Number) row[0]).doubleValue() : null;
+            maxCalories = row[1] != null ? ((Number) row[1]).doubleValue() : null;
+            minScore = row[2] != null ? ((Number) row[2]).intValue() : null;
+            maxScore = row[3] != null ? ((Number) row[3]).intValue() : null;
+        }
+
+        // 一个周期的汇总
+        void add(NutritionRollup rollup) {
+            reportCount += value(rollup.getReportCount());
+            nutrients[0] += value(rollup.getTotalCalories());
+            nutrients[1] += value(rollup.getTotalProtein());
+            nutrients[2] += value(rollup.getTotalFat());
+            nutrients[3] += value(rollup.getTotalCarbohydrate());
+            nutrients[4] += value(rollup.getTotalFiber());
+            nutrients[5] += value(rollup.getTotalSodium());
+            nutrients[6] += value(rollup.getTotalCholesterol());
+            if (rollup.getMinCalories() != null) {
+                minCalories = minCalories == null ? rollup.getMinCalories() : Math.min(minCalories, rollup.getMinCalories());
+                maxCalories = maxCalories == null ? rollup.getMaxCalories() : Math.max(maxCalories, rollup.getMaxCalories());
+            }
+            if (value(rollup.getScoredCount()) > 0) {
+                scoredCount += rollup.getScoredCount();
+                scoreSum += rollup.getHealthScoreSum();
+                minScore = minScore == null ? rollup.getMinHealthScore() : Math.min(minScore, rollup.getMinHealthScore());
+                maxScore = maxScore == null ? rollup.getMaxHealthScore() : Math.max(maxScore, rollup.getMaxHealthScore());
+            }
+            int[] counts = rollup.histogram();
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += counts[i];
+            }
+        }
+
+        void writeTo(NutritionRollup rollup) {
+            rollup.setReportCount(reportCount);
+            rollup.setTotalCalories(nutrients[0]);
+            rollup.setTotalProtein(nutrients[1]);
+            rollup.setTotalFat(nutrients[2]);
+            rollup.setTotalCarbohydrate(nutrients[3]);
+            rollup.setTotalFiber(nutrients[4]);
+            rollup.setTotalSodium(nutrients[5]);
+            rollup.setTotalCholesterol(nutrients[6]);
+            rollup.setMinCalories(minCalories);
+            rollup.setMaxCalories(maxCalories);
+            rollup.setScoredCount(scoredCount);
+            rollup.setHealthScoreSum(scoreSum);
+            rollup.setMinHealthScore(minScore);
+            rollup.setMaxHealthScore(maxScore);
+            rollup.setHistogram(histogram);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("reportCount", reportCount);
+            Map<String, Object> total = new LinkedHashMap<>();
+            total.put("calories", nutrients[0]);
+            total.put("protein", nutrients[1]);
+            total.put("fat", nutrients[2]);
+            total.put("carbohydrate", nutrients[3]);
+            total.put("fiber", nutrients[4]);
+            total.put("sodium", nutrients[5]);
+            total.put("cholesterol", nutrients[6]);
+            map.put("totals", total);
+            map.put("averageDailyCalories", reportCount > 0 ? nutrients[0] / reportCount : null);
+            map.put("minCalories", minCalories);
+            map.put("maxCalories", maxCalories);
+            map.put("averageHealthScore", scoredCount > 0 ? (double) scoreSum / scoredCount : null);
+            map.put("minHealthScore", minScore);
+            map.put("maxHealthScore", maxScore);
+            map.put("scoreHistogram", histogram);
+            return map;
+        }
+
+        private static int value(Integer value) {
+            return value != null ? value : 0;
+        }
+
+        private static double value(Double value) {
+            return value != null ? value : 0.0;
+        }
+    }
+}
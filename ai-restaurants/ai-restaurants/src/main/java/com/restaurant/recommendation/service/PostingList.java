@@ -0,0 +1,110 @@
+package com.restaurant.recommendation.service;
+
+import java.util.Arrays;
+
+/**
+ * 倒排表运算
+ * 倒排表为升序、无重复的菜品ID数组，交、并、差均为线性归并；
+ * 增删单个ID时返回新数组，原数组保持不变，可被旧索引快照继续使用
+ */
+public final class PostingList {
+
+    public static final long[] EMPTY = new long[0];
+
+    private PostingList() {
+    }
+
+    /**
+     * 交集
+     */
+    public static long[] intersect(long[] a, long[] b) {
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * 并集
+     */
+    public static long[] union(long[] a, long[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        long[] out = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                out[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        while (i < a.length) out[n++] = a[i++];
+        while (j < b.length) out[n++] = b[j++];
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * 差集 a - b
+     */
+    public static long[] difference(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) return a;
+        long[] out = new long[a.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length) {
+            if (j >= b.length || a[i] < b[j]) {
+                out[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * 插入一个ID，已存在时返回原数组
+     */
+    public static long[] insert(long[] list, long id) {
+        int position = Arrays.binarySearch(list, id);
+        if (position >= 0) {
+            return list;
+        }
+        position = -position - 1;
+        long[] out = new long[list.length + 1];
+        System.arraycopy(list, 0, out, 0, position);
+        out[position] = id;
+        System.arraycopy(list, position, out, position + 1, list.length - position);
+        return out;
+    }
+
+    /**
+     * 移除一个ID，不存在时返回原数组
+     */
+    public static long[] remove(long[] list, long id) {
+        int position = Arrays.binarySearch(list, id);
+        if (position < 0) {
+            return list;
+        }
+        long[] out = new long[list.length - 1];
+        System.arraycopy(list, 0, out, 0, position);
+        System.arraycopy(list, position + 1, out, position, list.length - position - 1);
+        return out;
+    }
+}
@@ -0,0 +1,287 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.dto.RecommendationRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * 推荐结果缓存
+ * 以 用户ID + 规范化请求指纹 为键缓存排序结果（菜品ID列表），条目同时记录生成时的目录版本、画像版本和末位得分：
+ * <ul>
+ *   <li>用户画像版本或评分权重变化时条目失效；</li>
+ *   <li>目录中有菜品新增或修改时，只对其后新增或修改的菜品打分：修改了榜内菜品，
+ *       或有菜品通过过滤且得分不低于末位得分（结果不足K个时只要通过过滤）时条目失效，否则继续有效；
+ *       目录的修改日志已不能覆盖条目的版本时条目失效；</li>
+ *   <li>仅删除菜品时，未包含被删菜品的条目继续有效（删除榜外菜品不影响前K名）。</li>
+ * </ul>
+ * 按访问顺序做LRU淘汰，同时支持TTL和按菜品数计算的总权重上限
+ */
+@Service
+public class RecommendationCache {
+
+    @Value("${recommendation.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recommendation.cache.max-weight:100000}")
+    private long maxWeight;
+
+    @Value("${recommendation.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 查找缓存的排序结果，返回当前目录中的菜品下标；未命中或已失效返回 null。
+     * scorer 按当前目录下标打分，菜品未通过过滤时返回 NaN
+     */
+    public int[] get(UserProfile profile, RecommendationRequest request, DishCatalog catalog, String weightsKey,
+                     IntToDoubleFunction scorer) {
+        if (!enabled) {
+            return null;
+        }
+        Key key = new Key(profile.getUserId(), fingerprint(request));
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && !isValid(entry, profile, weightsKey)) {
+                remove(key);
+                evictions.increment();
+                entry = null;
+            }
+        }
+        if (entry != null && !isCurrent(entry, catalog, scorer)) {
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    remove(key);
+                }
+            }
+            evictions.increment();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        int[] indexes = new int[entry.dishIds.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = catalog.indexOf(entry.dishIds[i]);
+            if (indexes[i] < 0) {
+                // 列表中的菜品已被删除，结果不再可用
+                synchronized (this) {
+                    remove(key);
+                }
+                evictions.increment();
+                misses.increment();
+                return null;
+            }
+        }
+        hits.increment();
+        return indexes;
+    }
+
+    /**
+     * 缓存排序结果，scorer 与 get 相同
+     */
+    public void put(UserProfile profile, RecommendationRequest request, DishCatalog catalog, String weightsKey,
+                    IntToDoubleFunction scorer, int[] indexes) {
+        if (!enabled) {
+            return;
+        }
+        long[] dishIds = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            dishIds[i] = catalog.id(indexes[i]);
+        }
+        // 结果不足K个时所有通过过滤的菜品都已在榜内，末位得分记为负无穷
+        double cutoff = indexes.length > 0 && indexes.length >= request.getCount()
+                ? scorer.applyAsDouble(indexes[indexes.length - 1]) : Double.NEGATIVE_INFINITY;
+        Key key = new Key(profile.getUserId(), fingerprint(request));
+        Entry entry = new Entry(dishIds, cutoff, profile.getVersion(), catalog.getVersion(), weightsKey,
+                System.currentTimeMillis() + ttlSeconds * 1000);
+        synchronized (this) {
+            remove(key);
+            entries.put(key, entry);
+            totalWeight += entry.weight();
+            evictOverweight();
+        }
+    }
+
+    /**
+     * 移除某个用户的全部缓存条目
+     */
+    public synchronized void invalidateUser(Long userId) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().userId.equals(userId)) {
+                totalWeight -= e.getValue().weight();
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("weight", totalWeight);
+        stats.put("maxWeight", maxWeight);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.sum());
+        stats.put("hitRate", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0);
+        return stats;
+    }
+
+    private boolean isValid(Entry entry, UserProfile profile, String weightsKey) {
+        return entry.expiresAt > System.currentTimeMillis()
+                && entry.profileVersion == profile.getVersion()
+                && entry.weightsKey.equals(weightsKey);
+    }
+
+    /**
+     * 条目生成后新增或修改的菜品是否都不影响其前K名；检查通过后把条目的目录版本推进到当前版本
+     */
+    private boolean isCurrent(Entry entry, DishCatalog catalog, IntToDoubleFunction scorer) {
+        long checked = entry.catalogVersion;
+        if (checked >= catalog.getUpsertVersion()) {
+            return true;
+        }
+        long[] upserted = catalog.upsertedSince(checked);
+        if (upserted == null) {
+            return false;
+        }
+        for (long dishId : upserted) {
+            for (long cached : entry.dishIds) {
+                if (cached == dishId) {
+                    return false;
+                }
+            }
+            int index = catalog.indexOf(dishId);
+            if (index < 0) {
+                continue;
+            }
+            // 同分时按目录顺序排列，保守地视为可能进入前K名
+            double score = scorer.applyAsDouble(index);
+            if (!Double.isNaN(score) && score >= entry.cutoff) {
+                return false;
+            }
+        }
+        entry.catalogVersion = Math.max(checked, catalog.getVersion());
+        return true;
+    }
+
+    private void remove(Key key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            totalWeight -= old.weight();
+        }
+    }
+
+    private void evictOverweight() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalWeight > maxWeight && it.hasNext()) {
+            totalWeight -= it.next().weight();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 规范化请求指纹：列表排序去重，忽略用户ID
+     */
+    static String fingerprint(RecommendationRequest request) {
+        StringBuilder sb = new StringBuilder();
+        appendSorted(sb, request.getPreferredCuisines());
+        appendSorted(sb, request.getPreferredFlavors());
+        appendSorted(sb, request.getPreferredIngredients());
+        appendSorted(sb, request.getAllergies());
+        appendSorted(sb, request.getDietaryRestrictions());
+        sb.append(request.getMaxCalories()).append('|')
+          .append(request.getMinProtein()).append('|')
+          .append(request.getMaxFat()).append('|')
+          .append(request.getMealType()).append('|')
+          .append(request.getCount());
+        return sb.toString();
+    }
+
+    private static void appendSorted(StringBuilder sb, List<String> values) {
+        if (values != null && !values.isEmpty()) {
+            List<String> sorted = new ArrayList<>(values);
+            Collections.sort(sorted);
+            String previous = null;
+            for (String value : sorted) {
+                if (!value.equals(previous)) {
+                    sb.append(value).append(',');
+                }
+                previous = value;
+            }
+        }
+        sb.append('|');
+    }
+
+    private static final class Key {
+        private final Long userId;
+        private final String fingerprint;
+
+        Key(Long userId, String fingerprint) {
+            this.userId = userId;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return userId.equals(other.userId) && fingerprint.equals(other.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, fingerprint);
+        }
+    }
+
+    private static final class Entry {
+        private final long[] dishIds;
+        private final double cutoff;          // 末位菜品的得分
+        private final long profileVersion;
+        private volatile long catalogVersion; // 已确认结果仍有效的目录版本
+        private final String weightsKey;
+        private final long expiresAt;
+
+        Entry(long[] dishIds, double cutoff, long profileVersion, long catalogVersion, String weightsKey,
+              long expiresAt) {
+            this.dishIds = dishIds;
+            this.cutoff = cutoff;
+            this.profileVersion = profileVersion;
+            this.catalogVersion = catalogVersion;
+            this.weightsKey = weightsKey;
+            this.expiresAt = expiresAt;
+        }
+
+        long weight() {
+            return Math.max(1, dishIds.length);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.dto.RecommendationRequest;
+import com.restaurant.recommendation.entity.JobCheckpoint;
+import com.restaurant.recommendation.entity.MaterializedRecommendation;
+import com.restaurant.recommendation.repository.JobCheckpointRepository;
+import com.restaurant.recommendation.repository.MaterializedRecommendationRepository;
+import com.restaurant.recommendation.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 离线推荐物化
+ * 定时（或手动触发）为全部用户预计算默认请求下的前N名推荐，结果写入 materialized_recommendations 表
+ * 并常驻内存，简化推荐接口可 O(1) 读取。任务按用户ID分页推进，每页与检查点在同一事务中提交，
+ * 中断后从检查点续跑。
+ * 移除用户的物化结果时留下删除标记而不是直接删除映射，任务写入前按计算前读到的值做比较并替换，
+ * 计算期间被移除的用户不会写回计算时的旧结果
+ */
+@Service
+public class RecommendationMaterializationService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecommendationMaterializationService.class);
+
+    static final String JOB_NAME = "recommendation-materialization";
+
+    @Value("${recommendation.materialization.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recommendation.materialization.top-n:20}")
+    private int topN;
+
+    @Value("${recommendation.materialization.page-size:500}")
+    private int pageSize;
+
+    @Value("${recommendation.materialization.staleness-minutes:1440}")
+    private long stalenessMinutes;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private DishCatalogService dishCatalogService;
+    
+    @Autowired
+    private ScoringWeightsService scoringWeightsService;
+
+    @Autowired
+    private MaterializedRecommendationRepository materializedRepository;
+
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "recommendation-materialization");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // 用户ID -> 物化结果或删除标记，供在线读取
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 启动时将已物化的结果载入内存；菜品快照版本号每次启动从头计数，载入的结果记为载入时的版本
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadStore() {
+        long catalogVersion = dishCatalogService.current().getVersion();
+        for (MaterializedRecommendation row : materializedRepository.findAll()) {
+            entries.put(row.getUserId(), toEntry(row, catalogVersion));
+        }
+    }
+
+    /**
+     * 读取用户的物化排序结果；不存在、已过期、评分权重已切换、计算后菜品有新增或修改，
+     * 或请求数量超过物化的N时返回 null（结果少于N条说明符合条件的菜品本就不足，仍可直接使用）。
+     * 仅删除菜品不使结果失效，与推荐结果缓存一致，调用方遇到已删除的菜品时改为实时计算
+     */
+    public long[] lookup(Long userId, int count) {
+        if (!enabled || count > topN) {
+            return null;
+        }
+        Entry entry = entries.get(userId);
+        if (entry == null || entry.isEvicted() || !entry.weightsKey.equals(scoringWeightsService.current().key())) {
+            return null;
+        }
+        if (entry.catalogVersion < dishCatalogService.current().getUpsertVersion()) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.computedAt > Duration.ofMinutes(stalenessMinutes).toMillis()) {
+            return null;
+        }
+        return entry.dishIds;
+    }
+
+    /**
+     * 用户资料变更或删除后移除其物化结果；每次移除放入新的删除标记，使正在计算该用户的任务比较失败
+     */
+    public void evict(Long userId) {
+        Entry previous = entries.put(userId, Entry.evicted());
+        if (previous != null && !previous.isEvicted()) {
+            materializedRepository.findById(userId).ifPresent(materializedRepository::delete);
+        }
+    }
+
+    /**
+     * 定时执行物化任务；提交到任务自己的线程执行，不占用定时调度线程，以免阻塞其他定时任务
+     */
+    @Scheduled(cron = "${recommendation.materialization.cron:0 0 3 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            trigger();
+        }
+    }
+
+    /**
+     * 手动触发物化任务（异步执行），已有任务在运行时返回 false
+     */
+    public boolean trigger() {
+        if (running.get()) {
+            return false;
+        }
+        executor.submit(this::run);
+        return true;
+    }
+
+    /**
+     * 任务状态
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("materializedUsers", entries.values().stream().filter(entry -> !entry.isEvicted()).count());
+        checkpointRepository.findById(JOB_NAME).ifPresent(checkpoint -> {
+            status.put("status", checkpoint.getStatus());
+            status.put("lastProcessedId", checkpoint.getLastProcessedId());
+            status.put("processedCount", checkpoint.getProcessedCount());
+            status.put("startedAt", checkpoint.getStartedAt());
+            status.put("updatedAt", checkpoint.getUpdatedAt());
+        });
+        return status;
+    }
+
+    /**
+     * 执行一轮物化；若上一轮未完成则从检查点继续
+     */
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            JobCheckpoint checkpoint = checkpointRepository.findById(JOB_NAME)
+                    .orElseGet(() -> new JobCheckpoint(JOB_NAME));
+            if (!checkpoint.isInterrupted()) {
+                checkpoint.setLastProcessedId(0L);
+                checkpoint.setProcessedCount(0L);
+                checkpoint.setStartedAt(LocalDateTime.now());
+            }
+            checkpoint.setStatus(JobCheckpoint.STATUS_RUNNING);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpoint = checkpointRepository.save(checkpoint);
+
+            List<Long> userIds;
+            while (!(userIds = userRepository.findIdsAfter(checkpoint.getLastProcessedId(),
+                    PageRequest.of(0, pageSize))).isEmpty()) {
+                checkpoint = processPage(userIds, checkpoint);
+            }
+
+            checkpoint.setStatus(JobCheckpoint.STATUS_COMPLETED);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+        } catch (RuntimeException e) {
+            log.error("推荐物化任务失败，将从检查点续跑", e);
+            checkpointRepository.findById(JOB_NAME).ifPresent(checkpoint -> {
+                checkpoint.setStatus(JobCheckpoint.STATUS_FAILED);
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                checkpointRepository.save(checkpoint);
+            });
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 计算一页用户并与检查点一起提交；计算期间被移除的用户跳过，不写入数据库和内存
+     */
+    private JobCheckpoint processPage(List<Long> userIds, JobCheckpoint checkpoint) {
+        List<RecommendationRequest> requests = new ArrayList<>(userIds.size());
+        Entry[] before = new Entry[userIds.size()];
+        for (int i = 0; i < userIds.size(); i++) {
+            Long userId = userIds.get(i);
+            // 先读计算前的值再排序，其间的移除会替换该值
+            before[i] = entries.get(userId);
+            RecommendationRequest request = new RecommendationRequest();
+            request.setUserId(userId);
+            request.setCount(topN);
+            requests.add(request);
+        }
+        ScoringWeights weights = scoringWeightsService.current();
+        long catalogVersion = dishCatalogService.current().getVersion();
+        long[][] rankings = recommendationService.rankDishIds(requests, weights);
+        LocalDateTime now = LocalDateTime.now();
+
+        return transactionTemplate.execute(status -> {
+            Map<Long, MaterializedRecommendation> existing = materializedRepository.findAllById(userIds).stream()
+                    .collect(Collectors.toMap(MaterializedRecommendation::getUserId, Function.identity()));
+            List<MaterializedRecommendation> rows = new ArrayList<>(userIds.size());
+            for (int i = 0; i < userIds.size(); i++) {
+                Long userId = userIds.get(i);
+                MaterializedRecommendation row = existing.getOrDefault(userId, new MaterializedRecommendation(userId));
+                row.setDishIds(encode(rankings[i]));
+                row.setCatalogVersion(catalogVersion);
+                row.setWeightsKey(weights.key());
+                row.setComputedAt(now);
+                Entry entry = toEntry(row, catalogVersion);
+                boolean unchanged = before[i] == null
+                        ? entries.putIfAbsent(userId, entry) == null
+                        : entries.replace(userId, before[i], entry);
+                if (unchanged) {
+                    rows.add(row);
+                }
+            }
+            materializedRepository.saveAll(rows);
+
+            checkpoint.setLastProcessedId(userIds.get(userIds.size() - 1));
+            checkpoint.setProcessedCount(checkpoint.getProcessedCount() + userIds.size());
+            checkpoint.setUpdatedAt(now);
+            return checkpointRepository.save(checkpoint);
+        });
+    }
+
+    private static String encode(long[] dishIds) {
+        StringBuilder sb = new StringBuilder();
+        for (long dishId : dishIds) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(dishId);
+        }
+        return sb.toString();
+    }
+
+    private static Entry toEntry(MaterializedRecommendation row, long catalogVersion) {
+        String encoded = row.getDishIds();
+        long[] dishIds = encoded == null || encoded.isEmpty() ? new long[0]
+                : Arrays.stream(encoded.split(",")).mapToLong(Long::parseLong).toArray();
+        long computedAt = row.getComputedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new Entry(dishIds, String.valueOf(row.getWeightsKey()), catalogVersion, computedAt);
+    }
+
+    private static final class Entry {
+        private final long[] dishIds;
+        private final String weightsKey;
+        private final long catalogVersion;
+        private final long computedAt;
+
+        Entry(long[] dishIds, String weightsKey, long catalogVersion, long computedAt) {
+            this.dishIds = dishIds;
+            this.weightsKey = weightsKey;
+            this.catalogVersion = catalogVersion;
+            this.computedAt = computedAt;
+        }
+
+        /**
+         * 删除标记，每次新建实例，比较并替换按引用比较
+         */
+        static Entry evicted() {
+            return new Entry(null, null, 0, 0);
+        }
+
+        boolean isEvicted() {
+            return dishIds == null;
+        }
+    }
+}
@@ -1,182 +1,327 @@
 package com.restaurant.recommendation.service;
 
+import com.restaurant.recommendation.dto.KeysetPage;
 import com.restaurant.recommendation.dto.RecommendationRequest;
 import com.restaurant.recommendation.entity.Dish;
 import com.restaurant.recommendation.entity.Recommendation;
 import com.restaurant.recommendation.entity.User;
-import com.restaurant.recommendation.repository.DishRepository;
 import com.restaurant.recommendation.repository.RecommendationRepository;
 import com.restaurant.recommendation.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntToDoubleFunction;
 import java.util.stream.Collectors;
 
 @Service
 public class RecommendationService {
     
+    // 流式输出时每次构建并保存的推荐记录数
+    @Value("${recommendation.streaming.chunk-size:50}")
+    private int streamChunkSize;
+    
+    // 流式批量推荐时每轮排序的用户数
+    @Value("${recommendation.streaming.batch-users:256}")
+    private int streamBatchUsers;
+    
     @Autowired
     private UserRepository userRepository;
     
     @Autowired
-    private DishRepository dishRepository;
+    private DishCatalogService dishCatalogService;
     
     @Autowired
     private RecommendationRepository recommendationRepository;
     
+    @Autowired
+    private ScoringEngine scoringEngine;
+    
+    @Autowired
+    private UserProfileService userProfileService;
+    
+    @Autowired
+    private RecommendationWriteBehindService writeBehindService;
+    
+    @Autowired
+    private RecommendationCache recommendationCache;
+    
+    @Autowired
+    private ScoringWeightsService scoringWeightsService;
+    
+    @Autowired
+    private ItemSimilarityService itemSimilarityService;
+    
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+    
     /**
      * 为用户生成个性化推荐
      */
     public List<Recommendation> generateRecommendations(RecommendationRequest request) {
-        User user = userRepository.findById(request.getUserId())
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
+        // 缓存的用户画像叠加本次请求的临时偏好
+        UserProfile profile = userProfileService.getProfile(request.getUserId()).withRequest(request);
         
-        // 获取所有候选菜品
-        List<Dish> allDishes = dishRepository.findAll();
+        // 使用内存中的菜品目录快照，整个请求内保持一致视图
+        DishCatalog catalog = dishCatalogService.current();
         
-        // 过滤不适合的菜品
-        List<Dish> candidateDishes = filterDishes(allDishes, user, request);
-        
-        // 计算推荐得分并排序
-        List<Recommendation> recommendations = candidateDishes.stream()
-                .map(dish -> calculateRecommendationScore(user, dish, request))
-                .sorted((r1, r2) -> r2.getScore().compareTo(r1.getScore()))
-                .limit(request.getCount())
+        // 按当前权重编译评分内核，相同请求优先复用缓存的排序结果
+        ScoringKernel kernel = compileKernel(catalog, profile, scoringWeightsService.current());
+        int[] topK = rank(profile, catalog, request, kernel);
+        List<Recommendation> recommendations = Arrays.stream(topK)
+                .mapToObj(index -> calculateRecommendationScore(profile, kernel, catalog, index))
                 .collect(Collectors.toList());
         
-        // 保存推荐记录
-        return recommendationRepository.saveAll(recommendations);
+        return saveRecommendations(recommendations);
     }
     
     /**
-     * 过滤不适合的菜品
+     * 流式生成推荐
+     * 排序完成后按块构建并保存推荐记录，每保存一块即按得分顺序交给 sink 输出，不保留完整结果列表
      */
-    private List<Dish> filterDishes(List<Dish> dishes, User user, RecommendationRequest request) {
-        return dishes.stream()
-                .filter(dish -> !hasAllergenConflict(dish, user, request))
-                .filter(dish -> !hasDietaryRestrictionConflict(dish, user, request))
-                .filter(dish -> !hasHealthConflict(dish, user))
-                .filter(dish -> matchesNutritionRequirements(dish, request))
-                .collect(Collectors.toList());
+    public void streamRecommendations(RecommendationRequest request, Consumer<List<Recommendation>> sink) {
+        UserProfile profile = userProfileService.getProfile(request.getUserId()).withRequest(request);
+        DishCatalog catalog = dishCatalogService.current();
+        ScoringKernel kernel = compileKernel(catalog, profile, scoringWeightsService.current());
+        int[] topK = rank(profile, catalog, request, kernel);
+        
+        int chunkSize = Math.max(1, streamChunkSize);
+        for (int from = 0; from < topK.length; from += chunkSize) {
+            List<Recommendation> chunk = new ArrayList<>(chunkSize);
+            for (int i = from; i < Math.min(from + chunkSize, topK.length); i++) {
+                chunk.add(calculateRecommendationScore(profile, kernel, catalog, topK[i]));
+            }
+            sink.accept(saveRecommendations(chunk));
+        }
     }
     
     /**
-     * 检查过敏原冲突
+     * 流式批量生成推荐
+     * 请求按用户分组依次排序，每个用户的推荐保存后立即连同其请求序号交给 sink 输出
      */
-    private boolean hasAllergenConflict(Dish dish, User user, RecommendationRequest request) {
-        Set<String> userAllergies = new HashSet<>();
-        if (user.getAllergies() != null) {
-            userAllergies.addAll(user.getAllergies());
-        }
-        if (request.getAllergies() != null) {
-            userAllergies.addAll(request.getAllergies());
-        }
-        
-        if (dish.getAllergens() != null) {
-            return dish.getAllergens().stream().anyMatch(userAllergies::contains);
+    public void streamBatchRecommendations(List<RecommendationRequest> requests,
+                                           BiConsumer<Integer, List<Recommendation>> sink) {
+        int groupSize = Math.max(1, streamBatchUsers);
+        for (int from = 0; from < requests.size(); from += groupSize) {
+            List<RecommendationRequest> group = requests.subList(from, Math.min(from + groupSize, requests.size()));
+            BatchRanking ranking = rankBatch(group, scoringWeightsService.current());
+            for (int u = 0; u < group.size(); u++) {
+                UserProfile profile = ranking.profiles[u];
+                ScoringKernel kernel = ranking.kernels[u];
+                List<Recommendation> recommendations = Arrays.stream(ranking.topK[u])
+                        .mapToObj(index -> calculateRecommendationScore(profile, kernel, ranking.catalog, index))
+                        .collect(Collectors.toList());
+                sink.accept(from + u, saveRecommendations(recommendations));
+            }
         }
-        return false;
     }
     
     /**
-     * 检查饮食限制冲突
+     * 单用户排序：优先读取缓存，未命中时过滤并打分选出前K名
      */
-    private boolean hasDietaryRestrictionConflict(Dish dish, User user, RecommendationRequest request) {
-        Set<String> restrictions = new HashSet<>();
-        if (user.getDietaryRestrictions() != null) {
-            restrictions.addAll(user.getDietaryRestrictions());
-        }
-        if (request.getDietaryRestrictions() != null) {
-            restrictions.addAll(request.getDietaryRestrictions());
-        }
-        
-        // 简单的冲突检查逻辑
-        if (restrictions.contains("素食") && dish.getIngredients() != null) {
-            return dish.getIngredients().stream()
-                    .anyMatch(ingredient -> ingredient.contains("肉") || ingredient.contains("鱼"));
+    private int[] rank(UserProfile profile, DishCatalog catalog, RecommendationRequest request, ScoringKernel kernel) {
+        DishFilter filter = DishFilter.compile(catalog, profile, request);
+        IntToDoubleFunction scorer = index -> filter.accepts(index) ? kernel.score(index) : Double.NaN;
+        int[] topK = recommendationCache.get(profile, request, catalog, kernel.getWeightsKey(), scorer);
+        if (topK == null) {
+            // 过滤不适合的菜品
+            int[] candidates = filter.candidates();
+            
+            // 并行打分并选出前K名，只为入选菜品构建推荐记录
+            topK = scoringEngine.selectTopK(candidates, request.getCount(), kernel::score);
+            recommendationCache.put(profile, request, catalog, kernel.getWeightsKey(), scorer, topK);
         }
-        
-        return false;
+        return topK;
     }
     
     /**
-     * 检查健康状况冲突
+     * 批量为多个用户生成推荐
+     * 所有请求共享同一目录快照，按用户分块并行，每个分块只扫描一次目录；
+     * 用户画像批量加载。返回结果与请求顺序一一对应，用户不存在时对应空列表
      */
-    private boolean hasHealthConflict(Dish dish, User user) {
-        if (user.getDiseases() != null && dish.getHealthWarnings() != null) {
-            return user.getDiseases().stream()
-                    .anyMatch(disease -> dish.getHealthWarnings().contains(disease));
+    public List<List<Recommendation>> generateBatchRecommendations(List<RecommendationRequest> requests) {
+        BatchRanking ranking = rankBatch(requests, scoringWeightsService.current());
+        
+        List<List<Recommendation>> results = new ArrayList<>(requests.size());
+        List<Recommendation> all = new ArrayList<>();
+        for (int u = 0; u < requests.size(); u++) {
+            UserProfile profile = ranking.profiles[u];
+            ScoringKernel kernel = ranking.kernels[u];
+            List<Recommendation> recommendations = Arrays.stream(ranking.topK[u])
+                    .mapToObj(index -> calculateRecommendationScore(profile, kernel, ranking.catalog, index))
+                    .collect(Collectors.toList());
+            results.add(recommendations);
+            all.addAll(recommendations);
         }
-        return false;
+        saveRecommendations(all);
+        return results;
     }
     
     /**
-     * 检查营养需求匹配
+     * 按指定权重批量计算排序结果（菜品ID，按得分降序），不生成推荐记录；用户不存在时对应空数组
      */
-    private boolean matchesNutritionRequirements(Dish dish, RecommendationRequest request) {
-        if (request.getMaxCalories() != null && dish.getCalories() != null) {
-            if (dish.getCalories() > request.getMaxCalories()) {
-                return false;
+    public long[][] rankDishIds(List<RecommendationRequest> requests, ScoringWeights weights) {
+        BatchRanking ranking = rankBatch(requests, weights);
+        long[][] dishIds = new long[requests.size()][];
+        for (int u = 0; u < dishIds.length; u++) {
+            int[] topK = ranking.topK[u];
+            dishIds[u] = new long[topK.length];
+            for (int i = 0; i < topK.length; i++) {
+                dishIds[u][i] = ranking.catalog.id(topK[i]);
             }
         }
-        
-        if (request.getMinProtein() != null && dish.getProtein() != null) {
-            if (dish.getProtein() < request.getMinProtein()) {
-                return false;
+        return dishIds;
+    }
+    
+    /**
+     * 根据预先计算的排序结果生成推荐记录
+     * 排序中的菜品已被删除，或按当前资料已不满足过滤条件时返回 null，由调用方回退到实时计算
+     */
+    public List<Recommendation> generateFromRanking(RecommendationRequest request, long[] dishIds) {
+        UserProfile profile = userProfileService.getProfile(request.getUserId()).withRequest(request);
+        DishCatalog catalog = dishCatalogService.current();
+        DishFilter filter = DishFilter.compile(catalog, profile, request);
+        ScoringKernel kernel = compileKernel(catalog, profile, scoringWeightsService.current());
+        List<Recommendation> recommendations = new ArrayList<>();
+        for (int i = 0; i < dishIds.length && i < request.getCount(); i++) {
+            int index = catalog.indexOf(dishIds[i]);
+            if (index < 0 || !filter.accepts(index)) {
+                return null;
             }
+            recommendations.add(calculateRecommendationScore(profile, kernel, catalog, index));
         }
-        
-        if (request.getMaxFat() != null && dish.getFat() != null) {
-            if (dish.getFat() > request.getMaxFat()) {
-                return false;
+        return saveRecommendations(recommendations);
+    }
+    
+    /**
+     * 多用户共享一次目录扫描的打分排序
+     */
+    private BatchRanking rankBatch(List<RecommendationRequest> requests, ScoringWeights weights) {
+        DishCatalog catalog = dishCatalogService.current();
+        Map<Long, UserProfile> baseProfiles = userProfileService.getProfiles(
+                requests.stream().map(RecommendationRequest::getUserId).collect(Collectors.toList()));
+        
+        // 为每个请求编译画像、过滤条件和评分内核，用户不存在时推荐数量记为0
+        int users = requests.size();
+        UserProfile[] profiles = new UserProfile[users];
+        DishFilter[] filters = new DishFilter[users];
+        ScoringKernel[] kernels = new ScoringKernel[users];
+        int[] limits = new int[users];
+        for (int u = 0; u < users; u++) {
+            RecommendationRequest request = requests.get(u);
+            UserProfile base = baseProfiles.get(request.getUserId());
+            if (base == null) {
+                continue;
             }
+            profiles[u] = base.withRequest(request);
+            filters[u] = DishFilter.compile(catalog, profiles[u], request);
+            kernels[u] = compileKernel(catalog, profiles[u], weights);
+            limits[u] = request.getCount();
         }
         
-        return true;
+        int[][] topK = scoringEngine.selectTopKBatch(catalog.size(), limits, (u, index) ->
+                filters[u].accepts(index) ? kernels[u].score(index) : Double.NaN);
+        return new BatchRanking(catalog, profiles, kernels, topK);
+    }
+    
+    /**
+     * 编译评分内核，附带用户当前的协同过滤亲和度和菜品热度
+     */
+    private ScoringKernel compileKernel(DishCatalog catalog, UserProfile profile, ScoringWeights weights) {
+        return ScoringKernel.compile(catalog, profile, weights,
+                itemSimilarityService.affinity(profile.getUserId()), engagementCounterService.popularity());
+    }
+    
+    /**
+     * 批量排序的中间结果
+     */
+    private static class BatchRanking {
+        final DishCatalog catalog;
+        final UserProfile[] profiles;
+        final ScoringKernel[] kernels;
+        final int[][] topK;
+        
+        BatchRanking(DishCatalog catalog, UserProfile[] profiles, ScoringKernel[] kernels, int[][] topK) {
+            this.catalog = catalog;
+            this.profiles = profiles;
+            this.kernels = kernels;
+            this.topK = topK;
+        }
+    }
+    
+    /**
+     * 保存推荐记录，开启异步写入时立即返回预分配ID的记录
+     */
+    private List<Recommendation> saveRecommendations(List<Recommendation> recommendations) {
+        engagementCounterService.recordImpressions(recommendations);
+        if (writeBehindService.isEnabled()) {
+            return writeBehindService.submit(recommendations);
+        }
+        return recommendationRepository.saveAll(recommendations);
     }
     
     /**
      * 计算推荐得分
      */
-    private Recommendation calculateRecommendationScore(User user, Dish dish, RecommendationRequest request) {
-        Recommendation recommendation = new Recommendation(user, dish, 0.0, "");
+    private Recommendation calculateRecommendationScore(UserProfile profile, ScoringKernel kernel,
+                                                        DishCatalog catalog, int index) {
+        Dish dish = catalog.dish(index);
+        Recommendation recommendation = new Recommendation(profile.getUser(), dish, 0.0, "");
         
         double totalScore = 0.0;
         StringBuilder reason = new StringBuilder();
         
-        // 1. 菜系偏好匹配 (权重: 25%)
-        double cuisineScore = calculateCuisineMatch(user, dish, request);
+        // 1. 菜系偏好匹配 (默认权重: 25%)
+        double cuisineScore = kernel.cuisineMatch(index);
         recommendation.setCuisineMatch(cuisineScore);
-        totalScore += cuisineScore * 0.25;
+        totalScore += cuisineScore * kernel.weight(ScoringWeights.CUISINE);
         if (cuisineScore > 0.7) {
-            reason.append("符合您喜爱的").append(dish.getCuisine()).append("菜系; ");
+            reason.append("符合您喜爱的").append(catalog.cuisine(index)).append("菜系; ");
         }
         
-        // 2. 口味偏好匹配 (权重: 20%)
-        double flavorScore = calculateFlavorMatch(user, dish, request);
+        // 2. 口味偏好匹配 (默认权重: 20%)
+        double flavorScore = kernel.flavorMatch(index);
         recommendation.setFlavorMatch(flavorScore);
-        totalScore += flavorScore * 0.20;
+        totalScore += flavorScore * kernel.weight(ScoringWeights.FLAVOR);
         if (flavorScore > 0.7) {
-            reason.append("口味").append(dish.getFlavor()).append("符合偏好; ");
+            reason.append("口味").append(catalog.flavor(index)).append("符合偏好; ");
         }
         
-        // 3. 食材偏好匹配 (权重: 15%)
-        double ingredientScore = calculateIngredientMatch(user, dish, request);
+        // 3. 食材偏好匹配 (默认权重: 15%)
+        double ingredientScore = kernel.ingredientMatch(index);
         recommendation.setIngredientMatch(ingredientScore);
-        totalScore += ingredientScore * 0.15;
+        totalScore += ingredientScore * kernel.weight(ScoringWeights.INGREDIENT);
         
-        // 4. 健康匹配度 (权重: 25%)
-        double healthScore = calculateHealthMatch(user, dish);
+        // 4. 健康匹配度 (默认权重: 25%)
+        double healthScore = kernel.healthMatch(index);
         recommendation.setHealthMatch(healthScore);
-        totalScore += healthScore * 0.25;
+        totalScore += healthScore * kernel.weight(ScoringWeights.HEALTH);
         if (healthScore > 0.8) {
             reason.append("有益健康; ");
         }
         
-        // 5. 营养匹配度 (权重: 15%)
-        double nutritionScore = calculateNutritionMatch(user, dish);
+        // 5. 营养匹配度 (默认权重: 15%)
+        double nutritionScore = kernel.nutritionMatch(index);
         recommendation.setNutritionMatch(nutritionScore);
-        totalScore += nutritionScore * 0.15;
+        totalScore += nutritionScore * kernel.weight(ScoringWeights.NUTRITION);
+        
+        // 6. 协同过滤匹配度 (默认权重: 10%)，没有反馈数据时为0
+        double collaborativeScore = kernel.collaborativeMatch(index);
+        totalScore += collaborativeScore * kernel.weight(ScoringWeights.COLLABORATIVE);
+        if (collaborativeScore > 0.5) {
+            reason.append("与您喜欢的菜品相似; ");
+        }
+        
+        // 7. 菜品热度 (默认权重: 0%)
+        double popularityScore = kernel.popularityMatch(index);
+        double popularityWeight = kernel.weight(ScoringWeights.POPULARITY);
+        totalScore += popularityScore * popularityWeight;
+        if (popularityWeight > 0 && popularityScore > 0.7) {
+            reason.append("近期点单热门; ");
+        }
         
         // 转换为百分制
         recommendation.setScore(totalScore * 100);
@@ -190,140 +335,24 @@ public class RecommendationService {
     }
     
     /**
-     * 计算菜系匹配度
-     */
-    private double calculateCuisineMatch(User user, Dish dish, RecommendationRequest request) {
-        Set<String> preferredCuisines = new HashSet<>();
-        if (user.getPreferredCuisines() != null) {
-            preferredCuisines.addAll(user.getPreferredCuisines());
-        }
-        if (request.getPreferredCuisines() != null) {
-            preferredCuisines.addAll(request.getPreferredCuisines());
-        }
-        
-        if (preferredCuisines.isEmpty()) return 0.5; // 中性分数
-        
-        return preferredCuisines.contains(dish.getCuisine()) ? 1.0 : 0.3;
-    }
-    
-    /**
-     * 计算口味匹配度
-     */
-    private double calculateFlavorMatch(User user, Dish dish, RecommendationRequest request) {
-        Set<String> preferredFlavors = new HashSet<>();
-        if (user.getPreferredFlavors() != null) {
-            preferredFlavors.addAll(user.getPreferredFlavors());
-        }
-        if (request.getPreferredFlavors() != null) {
-            preferredFlavors.addAll(request.getPreferredFlavors());
-        }
-        
-        if (preferredFlavors.isEmpty()) return 0.5;
-        
-        return preferredFlavors.contains(dish.getFlavor()) ? 1.0 : 0.3;
-    }
-    
-    /**
-     * 计算食材匹配度
-     */
-    private double calculateIngredientMatch(User user, Dish dish, RecommendationRequest request) {
-        Set<String> preferredIngredients = new HashSet<>();
-        if (user.getPreferredIngredients() != null) {
-            preferredIngredients.addAll(user.getPreferredIngredients());
-        }
-        if (request.getPreferredIngredients() != null) {
-            preferredIngredients.addAll(request.getPreferredIngredients());
-        }
-        
-        if (preferredIngredients.isEmpty() || dish.getIngredients() == null) {
-            return 0.5;
-        }
-        
-        long matchCount = dish.getIngredients().stream()
-                .mapToLong(ingredient -> preferredIngredients.stream()
-                        .mapToLong(preferred -> ingredient.contains(preferred) ? 1 : 0)
-                        .sum())
-                .sum();
-        
-        return Math.min(1.0, (double) matchCount / preferredIngredients.size());
-    }
-    
-    /**
-     * 计算健康匹配度
+     * 分页获取用户的推荐历史，按推荐时间降序；cursor 为空时返回第一页
      */
-    private double calculateHealthMatch(User user, Dish dish) {
-        double score = 0.5; // 基础分数
-        
-        // 如果有疾病，检查是否有益
-        if (user.getDiseases() != null && dish.getHealthBenefits() != null) {
-            long benefitCount = user.getDiseases().stream()
-                    .mapToLong(disease -> dish.getHealthBenefits().contains(disease) ? 1 : 0)
-                    .sum();
-            if (benefitCount > 0) {
-                score += 0.3;
-            }
-        }
-        
-        // 根据BMI调整分数
-        Double bmi = user.getBMI();
-        if (bmi != null && dish.getCalories() != null) {
-            if (bmi > 25 && dish.getCalories() < 150) { // 超重用户推荐低热量
-                score += 0.2;
-            } else if (bmi < 18.5 && dish.getCalories() > 200) { // 偏瘦用户推荐高热量
-                score += 0.2;
-            }
-        }
-        
-        return Math.min(1.0, score);
-    }
-    
-    /**
-     * 计算营养匹配度
-     */
-    private double calculateNutritionMatch(User user, Dish dish) {
-        if (dish.getCalories() == null) return 0.5;
-        
-        Double bmr = user.getBMR();
-        if (bmr == null) return 0.5;
-        
-        // 根据基础代谢率评估营养匹配度
-        double dailyCalorieNeed = bmr * 1.5; // 简化的日常热量需求
-        double mealCalorieTarget = dailyCalorieNeed / 3; // 假设一餐的目标热量
-        
-        double calorieRatio = dish.getCalories() / mealCalorieTarget;
-        
-        // 理想范围是0.8-1.2倍目标热量
-        if (calorieRatio >= 0.8 && calorieRatio <= 1.2) {
-            return 1.0;
-        } else if (calorieRatio >= 0.6 && calorieRatio <= 1.5) {
-            return 0.7;
+    public KeysetPage<Recommendation> getUserRecommendationHistory(Long userId, String cursor, int limit) {
+        // 先加载用户，使结果中的用户引用指向已加载的实体而不是未初始化的代理
+        userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("用户不存在"));
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<Recommendation> fetched;
+        if (cursor == null) {
+            fetched = recommendationRepository.findHistoryPage(userId, page);
         } else {
-            return 0.3;
+            KeysetPage.Cursor after = KeysetPage.Cursor.decode(cursor);
+            if (after.getTime() == null) {
+                throw new RuntimeException("分页游标无效");
+            }
+            fetched = recommendationRepository.findHistoryPageAfter(userId, after.getTime(), after.getId(), page);
         }
-    }
-    
-    /**
-     * 获取用户的推荐历史
-     */
-    public List<Recommendation> getUserRecommendationHistory(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
-        return recommendationRepository.findByUserOrderByRecommendedAtDesc(user);
-    }
-    
-    /**
-     * 更新推荐反馈
-     */
-    public void updateRecommendationFeedback(Long recommendationId, boolean clicked, 
-                                           boolean ordered, Integer rating, String feedback) {
-        Recommendation recommendation = recommendationRepository.findById(recommendationId)
-                .orElseThrow(() -> new RuntimeException("推荐记录不存在"));
-        
-        recommendation.setIsClicked(clicked);
-        recommendation.setIsOrdered(ordered);
-        recommendation.setUserRating(rating);
-        recommendation.setUserFeedback(feedback);
-        
-        recommendationRepository.save(recommendation);
+        return KeysetPage.of(fetched, limit,
+                recommendation -> KeysetPage.Cursor.of(recommendation.getRecommendedAt(), recommendation.getId()));
     }
 } 
\ No newline at end of file
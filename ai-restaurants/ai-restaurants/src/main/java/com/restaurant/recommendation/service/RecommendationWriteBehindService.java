@@ -0,0 +1,386 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.Recommendation;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 推荐记录异步写入（write-behind）
+ * 开启后推荐记录在请求线程上预分配序列ID并放入有界队列，立即返回；
+ * 后台线程按批次取出并用 JDBC 批量插入。队列满时按背压策略处理：
+ * block 在超时时间内等待队列空位，超时后由调用线程直接写入；caller-runs 立即由调用线程写入。
+ * 批量插入失败时按指数退避重试有限次，仍失败的批次转入死信队列，由后台线程定期重试；
+ * 记录只在提交成功后才移出待写入集合，反馈接口对未落库的记录会等待而不是按不存在处理。
+ * 死信队列超过上限时丢弃最早的记录并计数
+ */
+@Service
+public class RecommendationWriteBehindService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecommendationWriteBehindService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO recommendations (id, user_id, dish_id, score, reason, " +
+            "recommended_at, cuisine_match, flavor_match, ingredient_match, health_match, nutrition_match, " +
+            "is_clicked, is_ordered, user_rating, user_feedback, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * 队列满时的背压策略
+     */
+    public enum BackpressurePolicy {
+        BLOCK,
+        CALLER_RUNS
+    }
+
+    @Value("${recommendation.persistence.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${recommendation.persistence.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${recommendation.persistence.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${recommendation.persistence.write-behind.backpressure:BLOCK}")
+    private BackpressurePolicy backpressure;
+
+    @Value("${recommendation.persistence.write-behind.offer-timeout-ms:100}")
+    private long offerTimeoutMs;
+
+    @Value("${recommendation.persistence.write-behind.retry-attempts:3}")
+    private int retryAttempts;
+
+    @Value("${recommendation.persistence.write-behind.retry-backoff-ms:100}")
+    private long retryBackoffMs;
+
+    @Value("${recommendation.persistence.write-behind.dead-letter-capacity:10000}")
+    private int deadLetterCapacity;
+
+    @Value("${recommendation.persistence.write-behind.dead-letter-retry-ms:30000}")
+    private long deadLetterRetryMs;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private BlockingQueue<Recommendation> queue;
+    private SequenceIdAllocator idAllocator;
+    private TransactionTemplate transactionTemplate;
+    private Thread writer;
+    private volatile boolean running;
+
+    // 已分配ID但尚未落库的记录，供反馈接口等待写入完成
+    private final Map<Long, Recommendation> pending = new ConcurrentHashMap<>();
+    private final Object flushMonitor = new Object();
+
+    // 重试仍失败的记录，按到达顺序定期重试
+    private final Deque<Recommendation> deadLetters = new ArrayDeque<>();
+    private long lastDeadLetterRetry;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        String nextValueSql = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceNextValString("recommendation_seq");
+        this.idAllocator = new SequenceIdAllocator(jdbcTemplate, nextValueSql, Recommendation.ID_ALLOCATION_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.running = true;
+        this.writer = new Thread(this::drainLoop, "recommendation-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        // 写完关闭前残留的记录和死信
+        List<Recommendation> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            writeOnce(rest);
+        }
+        retryDeadLetters(true);
+        int lost = getDeadLetterCount();
+        if (lost > 0) {
+            log.error("关闭时仍有 {} 条推荐记录未能写入", lost);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 为推荐记录预分配ID并提交异步写入
+     */
+    public List<Recommendation> submit(List<Recommendation> recommendations) {
+        List<Recommendation> overflow = new ArrayList<>();
+        for (Recommendation recommendation : recommendations) {
+            recommendation.setId(idAllocator.nextId());
+            pending.put(recommendation.getId(), recommendation);
+            if (!offer(recommendation)) {
+                overflow.add(recommendation);
+            }
+        }
+        if (!overflow.isEmpty()) {
+            writeOnce(overflow);
+        }
+        return recommendations;
+    }
+
+    private boolean offer(Recommendation recommendation) {
+        if (backpressure == BackpressurePolicy.CALLER_RUNS) {
+            return queue.offer(recommendation);
+        }
+        try {
+            return queue.offer(recommendation, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 若记录仍在队列中，等待其写入完成
+     */
+    public void awaitPersisted(Long recommendationId, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (flushMonitor) {
+            while (pending.containsKey(recommendationId)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new RuntimeException("推荐记录尚未写入");
+                }
+                try {
+                    flushMonitor.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("等待推荐记录写入被中断");
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录是否已分配ID但尚未落库
+     */
+    public boolean isPending(Long recommendationId) {
+        return !pending.isEmpty() && pending.containsKey(recommendationId);
+    }
+
+    /**
+     * 当前排队等待写入的记录数
+     */
+    public int getQueueDepth() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * 写入统计：已写入、重试次数、转入死信的批次、死信队列中的记录数和因死信队列满而丢弃的记录数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("pending", pending.size());
+        stats.put("written", written.sum());
+        stats.put("retries", retries.sum());
+        stats.put("failedBatches", failedBatches.sum());
+        stats.put("deadLetters", getDeadLetterCount());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+
+    private int getDeadLetterCount() {
+        synchronized (deadLetters) {
+            return deadLetters.size();
+        }
+    }
+
+    private void drainLoop() {
+        List<Recommendation> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                retryDeadLetters(false);
+                Recommendation first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeWithRetry(batch);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 后台线程写入一批：失败后按指数退避重试，仍失败时转入死信队列
+     */
+    private void writeWithRetry(List<Recommendation> batch) throws InterruptedException {
+        long backoff = retryBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                insertBatch(batch);
+                written.add(batch.size());
+                release(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= retryAttempts) {
+                    deadLetter(batch, e);
+                    return;
+                }
+                retries.increment();
+                log.warn("批量写入推荐记录失败，{} ms 后第 {} 次重试", backoff, attempt, e);
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                deadLetter(batch, null);
+                throw e;
+            }
+            backoff *= 2;
+        }
+    }
+
+    /**
+     * 调用线程写入一批（队列满或关闭时），失败时转入死信队列由后台线程重试，不阻塞调用方
+     */
+    private void writeOnce(List<Recommendation> batch) {
+        try {
+            insertBatch(batch);
+            written.add(batch.size());
+            release(batch);
+        } catch (RuntimeException e) {
+            deadLetter(batch, e);
+        }
+    }
+
+    private void deadLetter(List<Recommendation> batch, RuntimeException cause) {
+        failedBatches.increment();
+        List<Recommendation> overflow = new ArrayList<>();
+        synchronized (deadLetters) {
+            deadLetters.addAll(batch);
+            while (deadLetters.size() > deadLetterCapacity) {
+                overflow.add(deadLetters.pollFirst());
+            }
+        }
+        log.error("批量写入推荐记录失败，{} 条转入死信队列等待重试", batch.size(), cause);
+        if (!overflow.isEmpty()) {
+            dropped.add(overflow.size());
+            release(overflow);
+            log.error("死信队列已满，丢弃最早的 {} 条推荐记录", overflow.size());
+        }
+    }
+
+    /**
+     * 按间隔重试死信队列，每次一批，失败时留在队列中等待下一次；force 时忽略间隔并重试全部
+     */
+    private void retryDeadLetters(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastDeadLetterRetry < deadLetterRetryMs) {
+            return;
+        }
+        lastDeadLetterRetry = now;
+        while (true) {
+            List<Recommendation> batch = new ArrayList<>(batchSize);
+            synchronized (deadLetters) {
+                while (batch.size() < batchSize && !deadLetters.isEmpty()) {
+                    batch.add(deadLetters.pollFirst());
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                insertBatch(batch);
+                written.add(batch.size());
+                release(batch);
+            } catch (RuntimeException e) {
+                synchronized (deadLetters) {
+                    for (int i = batch.size() - 1; i >= 0; i--) {
+                        deadLetters.addFirst(batch.get(i));
+                    }
+                }
+                log.warn("重试死信队列中的推荐记录失败，剩余 {} 条", getDeadLetterCount(), e);
+                return;
+            }
+        }
+    }
+
+    private void insertBatch(List<Recommendation> batch) {
+        transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(),
+                (ps, r) -> {
+                    ps.setLong(1, r.getId());
+                    ps.setLong(2, r.getUser().getId());
+                    ps.setLong(3, r.getDish().getId());
+                    ps.setObject(4, r.getScore(), Types.DOUBLE);
+                    ps.setString(5, r.getReason());
+                    ps.setTimestamp(6, r.getRecommendedAt() != null ? Timestamp.valueOf(r.getRecommendedAt()) : null);
+                    ps.setObject(7, r.getCuisineMatch(), Types.DOUBLE);
+                    ps.setObject(8, r.getFlavorMatch(), Types.DOUBLE);
+                    ps.setObject(9, r.getIngredientMatch(), Types.DOUBLE);
+                    ps.setObject(10, r.getHealthMatch(), Types.DOUBLE);
+                    ps.setObject(11, r.getNutritionMatch(), Types.DOUBLE);
+                    ps.setObject(12, r.getIsClicked(), Types.BOOLEAN);
+                    ps.setObject(13, r.getIsOrdered(), Types.BOOLEAN);
+                    ps.setObject(14, r.getUserRating(), Types.INTEGER);
+                    ps.setString(15, r.getUserFeedback());
+                    ps.setTimestamp(16, r.getUpdatedAt() != null ? Timestamp.valueOf(r.getUpdatedAt()) : null);
+                }));
+    }
+
+    private void release(List<Recommendation> batch) {
+        synchronized (flushMonitor) {
+            for (Recommendation recommendation : batch) {
+                pending.remove(recommendation.getId());
+            }
+            flushMonitor.notifyAll();
+        }
+    }
+}
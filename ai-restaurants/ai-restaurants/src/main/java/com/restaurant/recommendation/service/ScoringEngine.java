@@ -0,0 +1,274 @@
+package com.restaurant.recommendation.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * 评分引擎
+ * 对候选集按分区并行打分，每个分区维护大小为K的最小堆，最后合并得到前K名；
+ * 候选数低于阈值时走顺序路径。复杂度由全量排序的 O(n log n) 降为 O(n log k)。
+ * K 来自请求参数，堆按 K 与分区内候选数的较小值分配，K 远大于候选数时不会按 K 分配数组
+ */
+@Service
+public class ScoringEngine {
+
+    @Value("${recommendation.scoring.parallel-threshold:4096}")
+    private int parallelThreshold;
+
+    @Value("${recommendation.scoring.partition-size:1024}")
+    private int partitionSize;
+
+    @Value("${recommendation.scoring.batch-chunk-size:64}")
+    private int batchChunkSize;
+
+    private final ForkJoinPool pool;
+
+    public ScoringEngine(@Value("${recommendation.scoring.parallelism:0}") int parallelism) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * 选出得分最高的K个候选，按得分降序返回其下标；同分时保持候选原有顺序
+     */
+    public int[] selectTopK(int[] candidates, int k, IntToDoubleFunction scorer) {
+        if (k <= 0 || candidates.length == 0) {
+            return new int[0];
+        }
+        k = Math.min(k, candidates.length);
+        TopKHeap heap;
+        if (candidates.length < parallelThreshold) {
+            heap = scoreRange(candidates, 0, candidates.length, k, scorer);
+        } else {
+            heap = pool.invoke(new PartitionTask(candidates, 0, candidates.length, k, scorer,
+                    Math.max(1, partitionSize)));
+        }
+        int[] positions = heap.drainDescending();
+        int[] result = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            result[i] = candidates[positions[i]];
+        }
+        return result;
+    }
+
+    /**
+     * 多用户批量打分：按用户分块并行，每个分块只遍历一次目录，
+     * 对每道菜品依次为块内所有用户打分。打分函数返回 NaN 表示该菜品被过滤
+     *
+     * @return 每个用户得分最高的菜品下标，按得分降序
+     */
+    public int[][] selectTopKBatch(int catalogSize, int[] limits, BatchScorer scorer) {
+        int[][] results = new int[limits.length][];
+        pool.invoke(new UserChunkTask(catalogSize, limits, scorer, results, 0, limits.length,
+                Math.max(1, batchChunkSize)));
+        return results;
+    }
+
+    /**
+     * 用户-菜品打分函数
+     */
+    @FunctionalInterface
+    public interface BatchScorer {
+        double score(int user, int dishIndex);
+    }
+
+    private static TopKHeap scoreRange(int[] candidates, int from, int to, int k, IntToDoubleFunction scorer) {
+        TopKHeap heap = new TopKHeap(Math.min(k, to - from));
+        for (int position = from; position < to; position++) {
+            heap.offer(scorer.applyAsDouble(candidates[position]), position);
+        }
+        return heap;
+    }
+
+    /**
+     * 分区打分任务，叶子分区各自维护最小堆，回溯时两两合并
+     */
+    private static class PartitionTask extends RecursiveTask<TopKHeap> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] candidates;
+        private final int from;
+        private final int to;
+        private final int k;
+        private final IntToDoubleFunction scorer;
+        private final int partitionSize;
+
+        PartitionTask(int[] candidates, int from, int to, int k, IntToDoubleFunction scorer, int partitionSize) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.scorer = scorer;
+            this.partitionSize = partitionSize;
+        }
+
+        @Override
+        protected TopKHeap compute() {
+            if (to - from <= partitionSize) {
+                return scoreRange(candidates, from, to, k, scorer);
+            }
+            int mid = (from + to) >>> 1;
+            PartitionTask left = new PartitionTask(candidates, from, mid, k, scorer, partitionSize);
+            PartitionTask right = new PartitionTask(candidates, mid, to, k, scorer, partitionSize);
+            left.fork();
+            TopKHeap rightHeap = right.compute();
+            TopKHeap leftHeap = left.join();
+            // 子分区的堆容量可能小于本分区应保留的数量，此时换用足够大的堆
+            int capacity = Math.min(k, to - from);
+            TopKHeap merged = rightHeap.capacity >= capacity ? rightHeap : new TopKHeap(capacity);
+            if (merged != rightHeap) {
+                merged.mergeFrom(rightHeap);
+            }
+            merged.mergeFrom(leftHeap);
+            return merged;
+        }
+    }
+
+    /**
+     * 用户分块任务，叶子块内外层遍历菜品、内层遍历用户
+     */
+    private static class UserChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int catalogSize;
+        private final int[] limits;
+        private final BatchScorer scorer;
+        private final int[][] results;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        UserChunkTask(int catalogSize, int[] limits, BatchScorer scorer, int[][] results,
+                      int from, int to, int chunkSize) {
+            this.catalogSize = catalogSize;
+            this.limits = limits;
+            this.scorer = scorer;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunkSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new UserChunkTask(catalogSize, limits, scorer, results, from, mid, chunkSize),
+                          new UserChunkTask(catalogSize, limits, scorer, results, mid, to, chunkSize));
+                return;
+            }
+            TopKHeap[] heaps = new TopKHeap[to - from];
+            for (int u = from; u < to; u++) {
+                heaps[u - from] = new TopKHeap(Math.max(0, Math.min(limits[u], catalogSize)));
+            }
+            for (int dish = 0; dish < catalogSize; dish++) {
+                for (int u = from; u < to; u++) {
+                    if (limits[u] <= 0) continue;
+                    double score = scorer.score(u, dish);
+                    if (!Double.isNaN(score)) {
+                        heaps[u - from].offer(score, dish);
+                    }
+                }
+            }
+            for (int u = from; u < to; u++) {
+                results[u] = heaps[u - from].drainDescending();
+            }
+        }
+    }
+
+    /**
+     * 定长最小堆（基本类型数组实现），堆顶为当前第K名
+     * 排序规则：得分高者优先，同分时位置靠前者优先
+     */
+    static final class TopKHeap {
+        private final int capacity;
+        private final double[] scores;
+        private final int[] positions;
+        private int size;
+
+        TopKHeap(int capacity) {
+            this.capacity = capacity;
+            this.scores = new double[capacity];
+            this.positions = new int[capacity];
+        }
+
+        void offer(double score, int position) {
+            if (size < capacity) {
+                scores[size] = score;
+                positions[size] = position;
+                siftUp(size++);
+            } else if (better(score, position, scores[0], positions[0])) {
+                scores[0] = score;
+                positions[0] = position;
+                siftDown(0);
+            }
+        }
+
+        void mergeFrom(TopKHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.scores[i], other.positions[i]);
+            }
+        }
+
+        /**
+         * 依次弹出堆顶，得到按得分降序排列的位置数组
+         */
+        int[] drainDescending() {
+            int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = positions[0];
+                size--;
+                scores[0] = scores[size];
+                positions[0] = positions[size];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private static boolean better(double s1, int p1, double s2, int p2) {
+            return s1 > s2 || (s1 == s2 && p1 < p2);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!better(scores[parent], positions[parent], scores[i], positions[i])) break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) break;
+                int worst = left;
+                int right = left + 1;
+                if (right < size && better(scores[left], positions[left], scores[right], positions[right])) {
+                    worst = right;
+                }
+                if (!better(scores[i], positions[i], scores[worst], positions[worst])) break;
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+            int position = positions[a];
+            positions[a] = positions[b];
+            positions[b] = position;
+        }
+    }
+}
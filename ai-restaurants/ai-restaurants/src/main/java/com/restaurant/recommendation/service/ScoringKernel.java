@@ -0,0 +1,208 @@
+package com.restaurant.recommendation.service;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * 评分内核（不可变，按请求编译）
+ * 将用户画像与目录字典预先编译为按编码索引的分数表：菜系、口味按编码直接查表，
+ * 食材按编码累加命中次数，健康与营养只比较基本类型列，协同过滤亲和度和菜品热度按菜品ID各查一次哈希表。
+ * 单道菜品的打分是各子分数组成的特征向量与权重向量的点积，热路径上没有集合查找和字符串比较
+ */
+public final class ScoringKernel {
+
+    private static final double NEUTRAL = 0.5;
+
+    private final DishCatalog catalog;
+    private final double[] weights;
+    private final String weightsKey;
+
+    // 下标为 编码+1，0号位对应空值
+    private final double[] cuisineScores;
+    private final double[] flavorScores;
+
+    // 每个食材编码包含的偏好食材个数；无偏好食材时为 null
+    private final int[] ingredientHits;
+    private final int preferredIngredientCount;
+
+    private final TagColumn healthBenefits;
+    private final long[] benefitMask;
+    private final boolean overweight;
+    private final boolean underweight;
+
+    private final double mealCalorieTarget;
+
+    // 菜品ID -> 协同过滤亲和度；用户没有正反馈时为 null
+    private final LongDoubleHashMap affinity;
+    // 菜品ID -> 热度；表中没有的菜品取中性值
+    private final LongDoubleHashMap popularity;
+
+    private ScoringKernel(DishCatalog catalog, UserProfile profile, ScoringWeights weights,
+                          LongDoubleHashMap affinity, LongDoubleHashMap popularity) {
+        this.catalog = catalog;
+        this.weights = new double[ScoringWeights.DIMENSIONS];
+        for (int d = 0; d < ScoringWeights.DIMENSIONS; d++) {
+            this.weights[d] = weights.get(d);
+        }
+        this.weightsKey = weights.key();
+
+        this.cuisineScores = preferenceTable(catalog.getCuisines(), profile.getPreferredCuisines());
+        this.flavorScores = preferenceTable(catalog.getFlavors(), profile.getPreferredFlavors());
+
+        Set<String> preferredIngredients = profile.getPreferredIngredients();
+        this.preferredIngredientCount = preferredIngredients.size();
+        if (preferredIngredients.isEmpty()) {
+            this.ingredientHits = null;
+        } else {
+            TermDictionary dictionary = catalog.getIngredients();
+            this.ingredientHits = new int[dictionary.size()];
+            for (int code = 0; code < ingredientHits.length; code++) {
+                String ingredient = dictionary.term(code);
+                for (String preferred : preferredIngredients) {
+                    if (ingredient.contains(preferred)) {
+                        ingredientHits[code]++;
+                    }
+                }
+            }
+        }
+
+        this.healthBenefits = catalog.getHealthBenefits();
+        this.benefitMask = healthBenefits.mask(profile.getDiseases());
+        Double bmi = profile.getBmi();
+        this.overweight = bmi != null && bmi > 25;
+        this.underweight = bmi != null && bmi < 18.5;
+
+        this.mealCalorieTarget = profile.getMealCalorieTarget();
+        this.affinity = affinity;
+        this.popularity = popularity;
+    }
+
+    /**
+     * 为用户画像编译评分内核，affinity 为用户的协同过滤亲和度，popularity 为菜品热度，均可为 null
+     */
+    public static ScoringKernel compile(DishCatalog catalog, UserProfile profile, ScoringWeights weights,
+                                        LongDoubleHashMap affinity, LongDoubleHashMap popularity) {
+        return new ScoringKernel(catalog, profile, weights, affinity, popularity);
+    }
+
+    private static double[] preferenceTable(TermDictionary dictionary, Set<String> preferred) {
+        double[] table = new double[dictionary.size() + 1];
+        if (preferred.isEmpty()) {
+            Arrays.fill(table, NEUTRAL); // 中性分数
+            return table;
+        }
+        table[0] = 0.3;
+        for (int code = 0; code < dictionary.size(); code++) {
+            table[code + 1] = preferred.contains(dictionary.term(code)) ? 1.0 : 0.3;
+        }
+        return table;
+    }
+
+    /**
+     * 推荐总分（百分制）
+     */
+    public double score(int index) {
+        double totalScore = cuisineMatch(index) * weights[ScoringWeights.CUISINE]
+                + flavorMatch(index) * weights[ScoringWeights.FLAVOR]
+                + ingredientMatch(index) * weights[ScoringWeights.INGREDIENT]
+                + healthMatch(index) * weights[ScoringWeights.HEALTH]
+                + nutritionMatch(index) * weights[ScoringWeights.NUTRITION]
+                + collaborativeMatch(index) * weights[ScoringWeights.COLLABORATIVE]
+                + popularityMatch(index) * weights[ScoringWeights.POPULARITY];
+        return totalScore * 100;
+    }
+
+    public double weight(int dimension) {
+        return weights[dimension];
+    }
+
+    public String getWeightsKey() {
+        return weightsKey;
+    }
+
+    /**
+     * 菜系匹配度
+     */
+    public double cuisineMatch(int index) {
+        return cuisineScores[catalog.cuisineCode(index) + 1];
+    }
+
+    /**
+     * 口味匹配度
+     */
+    public double flavorMatch(int index) {
+        return flavorScores[catalog.flavorCode(index) + 1];
+    }
+
+    /**
+     * 食材匹配度：每种食材包含的偏好食材个数之和，除以偏好食材数
+     */
+    public double ingredientMatch(int index) {
+        if (ingredientHits == null || !catalog.hasIngredients(index)) {
+            return NEUTRAL;
+        }
+        int matchCount = 0;
+        for (int p = catalog.ingredientStart(index), end = catalog.ingredientEnd(index); p < end; p++) {
+            int code = catalog.ingredientCode(p);
+            if (code != TermDictionary.NONE) {
+                matchCount += ingredientHits[code];
+            }
+        }
+        return Math.min(1.0, (double) matchCount / preferredIngredientCount);
+    }
+
+    /**
+     * 健康匹配度
+     */
+    public double healthMatch(int index) {
+        double score = NEUTRAL; // 基础分数
+
+        // 如果有疾病，检查是否有益
+        if (healthBenefits.intersects(index, benefitMask)) {
+            score += 0.3;
+        }
+
+        // 根据BMI调整分数
+        double calories = catalog.calories(index);
+        if (overweight && calories < 150) { // 超重用户推荐低热量
+            score += 0.2;
+        } else if (underweight && calories > 200) { // 偏瘦用户推荐高热量
+            score += 0.2;
+        }
+
+        return Math.min(1.0, score);
+    }
+
+    /**
+     * 营养匹配度：根据基础代谢率折算的每餐目标热量评估
+     */
+    public double nutritionMatch(int index) {
+        double calories = catalog.calories(index);
+        if (Double.isNaN(calories) || Double.isNaN(mealCalorieTarget)) return NEUTRAL;
+
+        double calorieRatio = calories / mealCalorieTarget;
+
+        // 理想范围是0.8-1.2倍目标热量
+        if (calorieRatio >= 0.8 && calorieRatio <= 1.2) {
+            return 1.0;
+        } else if (calorieRatio >= 0.6 && calorieRatio <= 1.5) {
+            return 0.7;
+        } else {
+            return 0.3;
+        }
+    }
+
+    /**
+     * 协同过滤匹配度：与用户喜欢过的菜品的平均相似度，没有反馈数据时为0
+     */
+    public double collaborativeMatch(int index) {
+        return affinity != null ? affinity.get(catalog.id(index)) : 0.0;
+    }
+
+    /**
+     * 热度匹配度：菜品被推荐后点击和下单的平滑比例，没有计数时为中性分数
+     */
+    public double popularityMatch(int index) {
+        return popularity != null ? popularity.getOrDefault(catalog.id(index), NEUTRAL) : NEUTRAL;
+    }
+}
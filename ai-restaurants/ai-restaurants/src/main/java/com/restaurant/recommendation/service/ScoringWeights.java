@@ -0,0 +1,83 @@
+package com.restaurant.recommendation.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 推荐评分权重（不可变）
+ * 按 菜系、口味、食材、健康、营养、协同过滤、热度 的顺序组成权重向量，配置格式为逗号分隔的非负数，
+ * 例如 {@code 0.25,0.20,0.15,0.25,0.15,0.10,0.05}；至少配置前五个，未配置的维度权重为0
+ */
+public final class ScoringWeights {
+
+    public static final int CUISINE = 0;
+    public static final int FLAVOR = 1;
+    public static final int INGREDIENT = 2;
+    public static final int HEALTH = 3;
+    public static final int NUTRITION = 4;
+    public static final int COLLABORATIVE = 5;
+    public static final int POPULARITY = 6;
+    public static final int DIMENSIONS = 7;
+
+    /** 默认权重 */
+    public static final ScoringWeights DEFAULT = new ScoringWeights("default",
+            new double[] {0.25, 0.20, 0.15, 0.25, 0.15, 0.10, 0.0});
+
+    private final String name;
+    private final double[] vector;
+
+    private ScoringWeights(String name, double[] vector) {
+        this.name = name;
+        this.vector = vector;
+    }
+
+    /**
+     * 解析权重配置
+     */
+    public static ScoringWeights parse(String name, String spec) {
+        String[] parts = spec.split(",");
+        if (parts.length < COLLABORATIVE || parts.length > DIMENSIONS) {
+            throw new RuntimeException("权重配置格式错误：" + name);
+        }
+        double[] vector = new double[DIMENSIONS];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                vector[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("权重配置格式错误：" + name);
+            }
+            if (!(vector[i] >= 0) || Double.isInfinite(vector[i])) {
+                throw new RuntimeException("权重必须为非负数：" + name);
+            }
+        }
+        return new ScoringWeights(name, vector);
+    }
+
+    public String getName() { return name; }
+
+    public double get(int dimension) { return vector[dimension]; }
+
+    /**
+     * 权重取值的规范化表示，取值相同的权重组得到相同的键，用于判断缓存结果是否仍然有效
+     */
+    public String key() {
+        StringBuilder sb = new StringBuilder();
+        for (double weight : vector) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(weight);
+        }
+        return sb.toString();
+    }
+
+    public Map<String, Double> toMap() {
+        Map<String, Double> map = new LinkedHashMap<>();
+        map.put("cuisine", vector[CUISINE]);
+        map.put("flavor", vector[FLAVOR]);
+        map.put("ingredient", vector[INGREDIENT]);
+        map.put("health", vector[HEALTH]);
+        map.put("nutrition", vector[NUTRITION]);
+        map.put("collaborative", vector[COLLABORATIVE]);
+        map.put("popularity", vector[POPULARITY]);
+        return map;
+    }
+}
@@ -0,0 +1,115 @@
+package com.restaurant.recommendation.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 评分权重管理
+ * 权重组来自 recommendation.scoring.weights.sets.*，另可指定外部配置文件，运行时重新加载文件即可更新权重组；
+ * 当前生效的权重组以不可变对象整体替换，进行中的请求始终使用同一组权重
+ */
+@Service
+public class ScoringWeightsService {
+
+    private static final String SETS_PREFIX = "recommendation.scoring.weights.sets";
+
+    @Value("${recommendation.scoring.weights.active:default}")
+    private String initialActive;
+
+    @Value("${recommendation.scoring.weights.file:}")
+    private String weightsFile;
+
+    @Autowired
+    private Environment environment;
+
+    private volatile Map<String, ScoringWeights> weightSets = Collections.emptyMap();
+    private volatile ScoringWeights active = ScoringWeights.DEFAULT;
+
+    @PostConstruct
+    public void init() {
+        this.weightSets = loadWeightSets();
+        activate(initialActive);
+    }
+
+    /**
+     * 当前生效的权重
+     */
+    public ScoringWeights current() {
+        return active;
+    }
+
+    public Map<String, ScoringWeights> getWeightSets() {
+        return weightSets;
+    }
+
+    /**
+     * 切换生效的权重组
+     */
+    public synchronized ScoringWeights activate(String name) {
+        ScoringWeights weights = weightSets.get(name);
+        if (weights == null) {
+            throw new RuntimeException("权重组不存在：" + name);
+        }
+        this.active = weights;
+        return weights;
+    }
+
+    /**
+     * 重新加载权重组，当前生效的权重组按名称更新为新取值
+     */
+    public synchronized ScoringWeights reload() {
+        Map<String, ScoringWeights> loaded = loadWeightSets();
+        if (!loaded.containsKey(active.getName())) {
+            throw new RuntimeException("重新加载后缺少当前权重组：" + active.getName());
+        }
+        this.weightSets = loaded;
+        return activate(active.getName());
+    }
+
+    private Map<String, ScoringWeights> loadWeightSets() {
+        Map<String, String> specs = new LinkedHashMap<>(Binder.get(environment)
+                .bind(SETS_PREFIX, Bindable.mapOf(String.class, String.class))
+                .orElse(Collections.<String, String>emptyMap()));
+        if (!weightsFile.isEmpty()) {
+            specs.putAll(readWeightsFile());
+        }
+
+        Map<String, ScoringWeights> sets = new LinkedHashMap<>();
+        sets.put(ScoringWeights.DEFAULT.getName(), ScoringWeights.DEFAULT);
+        for (Map.Entry<String, String> spec : specs.entrySet()) {
+            sets.put(spec.getKey(), ScoringWeights.parse(spec.getKey(), spec.getValue()));
+        }
+        return Collections.unmodifiableMap(sets);
+    }
+
+    /**
+     * 读取外部权重文件，格式为 名称=逗号分隔的权重（至少五个）
+     */
+    private Map<String, String> readWeightsFile() {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Paths.get(weightsFile), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new RuntimeException("读取权重文件失败：" + weightsFile);
+        }
+        Map<String, String> specs = new LinkedHashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            specs.put(name, properties.getProperty(name));
+        }
+        return specs;
+    }
+}
@@ -0,0 +1,39 @@
+package com.restaurant.recommendation.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * 数据库序列号段分配器
+ * 与 Hibernate pooled-lo 优化器约定一致：序列每次取值 v 代表号段 [v, v + allocationSize)，
+ * 因此可以和实体上的 @SequenceGenerator 共用同一个序列而不会产生重复ID
+ */
+public class SequenceIdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nextValueSql;
+    private final int allocationSize;
+
+    private long next;
+    private long limit;
+
+    public SequenceIdAllocator(JdbcTemplate jdbcTemplate, String nextValueSql, int allocationSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nextValueSql = nextValueSql;
+        this.allocationSize = allocationSize;
+    }
+
+    /**
+     * 分配下一个ID，当前号段用完时访问一次数据库
+     */
+    public synchronized long nextId() {
+        if (next == 0 || next >= limit) {
+            Long value = jdbcTemplate.queryForObject(nextValueSql, Long.class);
+            if (value == null) {
+                throw new IllegalStateException("无法获取序列值");
+            }
+            next = Math.max(1, value);
+            limit = value + allocationSize;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,102 @@
+package com.restaurant.recommendation.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 多值标签列（不可变）
+ * 标签字典编码后，每道菜品对应一段定长位图，按菜品顺序连续存放在一个 long 数组中，
+ * 标签匹配判断即为若干次按位与运算
+ */
+public final class TagColumn {
+
+    private final TermDictionary dictionary;
+    private final int words;
+    private final long[] bits;
+
+    private TagColumn(TermDictionary dictionary, int words, long[] bits) {
+        this.dictionary = dictionary;
+        this.words = words;
+        this.bits = bits;
+    }
+
+    /**
+     * 根据每道菜品的标签列表构建位图列
+     */
+    public static TagColumn of(List<List<String>> tagsPerDish) {
+        TermDictionary.Builder builder = new TermDictionary.Builder();
+        int size = tagsPerDish.size();
+        int[][] codes = new int[size][];
+        for (int i = 0; i < size; i++) {
+            List<String> tags = tagsPerDish.get(i);
+            if (tags == null) {
+                codes[i] = new int[0];
+                continue;
+            }
+            codes[i] = new int[tags.size()];
+            for (int j = 0; j < tags.size(); j++) {
+                codes[i][j] = builder.intern(tags.get(j));
+            }
+        }
+
+        TermDictionary dictionary = builder.build();
+        int words = Math.max(1, (dictionary.size() + 63) >>> 6);
+        long[] bits = new long[size * words];
+        for (int i = 0; i < size; i++) {
+            for (int code : codes[i]) {
+                if (code != TermDictionary.NONE) {
+                    bits[i * words + (code >>> 6)] |= 1L << code;
+                }
+            }
+        }
+        return new TagColumn(dictionary, words, bits);
+    }
+
+    /**
+     * 将若干取值集合编译为查询掩码；字典中不存在的取值直接忽略，
+     * 没有任何可匹配取值时返回 null
+     */
+    @SafeVarargs
+    public final long[] mask(Collection<String>... valueSets) {
+        long[] mask = null;
+        for (Collection<String> values : valueSets) {
+            if (values == null) continue;
+            for (String value : values) {
+                int code = dictionary.code(value);
+                if (code == TermDictionary.NONE) continue;
+                if (mask == null) {
+                    mask = new long[words];
+                }
+                mask[code >>> 6] |= 1L << code;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 判断菜品标签是否与掩码有交集
+     */
+    public boolean intersects(int index, long[] mask) {
+        if (mask == null) return false;
+        int offset = index * words;
+        for (int w = 0; w < words; w++) {
+            if ((bits[offset + w] & mask[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断菜品是否带有某个标签
+     */
+    public boolean contains(int index, String tag) {
+        int code = dictionary.code(tag);
+        if (code == TermDictionary.NONE) return false;
+        return (bits[index * words + (code >>> 6)] & (1L << code)) != 0;
+    }
+
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
+}
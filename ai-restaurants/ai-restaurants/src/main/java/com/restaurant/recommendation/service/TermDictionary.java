@@ -0,0 +1,68 @@
+package com.restaurant.recommendation.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 字符串字典编码（不可变）
+ * 将菜系、口味等取值有限的字符串映射为从0开始的连续整数编码
+ */
+public final class TermDictionary {
+
+    /** 未收录或为空的取值 */
+    public static final int NONE = -1;
+
+    private final String[] terms;
+    private final Map<String, Integer> codes;
+
+    private TermDictionary(List<String> terms, Map<String, Integer> codes) {
+        this.terms = terms.toArray(new String[0]);
+        this.codes = Collections.unmodifiableMap(new HashMap<>(codes));
+    }
+
+    /**
+     * 获取取值的编码，未收录返回 {@link #NONE}
+     */
+    public int code(String term) {
+        if (term == null) return NONE;
+        Integer code = codes.get(term);
+        return code != null ? code : NONE;
+    }
+
+    /**
+     * 根据编码获取原始取值
+     */
+    public String term(int code) {
+        return code >= 0 && code < terms.length ? terms[code] : null;
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    /**
+     * 字典构建器，按首次出现顺序分配编码
+     */
+    public static class Builder {
+        private final List<String> terms = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        public int intern(String term) {
+            if (term == null) return NONE;
+            Integer code = codes.get(term);
+            if (code == null) {
+                code = terms.size();
+                terms.add(term);
+                codes.put(term, code);
+            }
+            return code;
+        }
+
+        public TermDictionary build() {
+            return new TermDictionary(terms, codes);
+        }
+    }
+}
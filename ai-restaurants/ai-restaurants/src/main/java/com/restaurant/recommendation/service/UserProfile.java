@@ -0,0 +1,117 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.dto.RecommendationRequest;
+import com.restaurant.recommendation.entity.User;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 编译后的用户偏好画像（不可变）
+ * 用户资料中的偏好、限制集合以及BMI、BMR、每餐目标热量只计算一次；
+ * 推荐请求中的临时偏好通过 {@link #withRequest} 叠加，未携带覆盖项时直接复用原画像
+ */
+public final class UserProfile {
+
+    private final User user;
+    private final long version;
+
+    private final Set<String> preferredCuisines;
+    private final Set<String> preferredFlavors;
+    private final Set<String> preferredIngredients;
+    private final Set<String> allergies;
+    private final Set<String> dietaryRestrictions;
+    private final Set<String> diseases;
+
+    private final Double bmi;
+    private final Double bmr;
+    private final double mealCalorieTarget;   // 每餐目标热量，BMR缺失时为 NaN
+
+    private UserProfile(User user, long version,
+                        Set<String> preferredCuisines, Set<String> preferredFlavors,
+                        Set<String> preferredIngredients, Set<String> allergies,
+                        Set<String> dietaryRestrictions, Set<String> diseases,
+                        Double bmi, Double bmr) {
+        this.user = user;
+        this.version = version;
+        this.preferredCuisines = preferredCuisines;
+        this.preferredFlavors = preferredFlavors;
+        this.preferredIngredients = preferredIngredients;
+        this.allergies = allergies;
+        this.dietaryRestrictions = dietaryRestrictions;
+        this.diseases = diseases;
+        this.bmi = bmi;
+        this.bmr = bmr;
+        // 简化的日常热量需求为 BMR*1.5，按一日三餐平均分配
+        this.mealCalorieTarget = bmr != null ? bmr * 1.5 / 3 : Double.NaN;
+    }
+
+    /**
+     * 根据用户资料编译画像
+     */
+    public static UserProfile of(User user, long version) {
+        return new UserProfile(user, version,
+                toSet(user.getPreferredCuisines()),
+                toSet(user.getPreferredFlavors()),
+                toSet(user.getPreferredIngredients()),
+                toSet(user.getAllergies()),
+                toSet(user.getDietaryRestrictions()),
+                toSet(user.getDiseases()),
+                user.getBMI(), user.getBMR());
+    }
+
+    /**
+     * 叠加推荐请求中的临时偏好和限制，返回新的画像；请求未携带任何覆盖项时返回自身
+     */
+    public UserProfile withRequest(RecommendationRequest request) {
+        if (isEmpty(request.getPreferredCuisines()) && isEmpty(request.getPreferredFlavors())
+                && isEmpty(request.getPreferredIngredients()) && isEmpty(request.getAllergies())
+                && isEmpty(request.getDietaryRestrictions())) {
+            return this;
+        }
+        return new UserProfile(user, version,
+                merge(preferredCuisines, request.getPreferredCuisines()),
+                merge(preferredFlavors, request.getPreferredFlavors()),
+                merge(preferredIngredients, request.getPreferredIngredients()),
+                merge(allergies, request.getAllergies()),
+                merge(dietaryRestrictions, request.getDietaryRestrictions()),
+                diseases, bmi, bmr);
+    }
+
+    private static boolean isEmpty(Collection<String> values) {
+        return values == null || values.isEmpty();
+    }
+
+    private static Set<String> toSet(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new HashSet<>(values));
+    }
+
+    private static Set<String> merge(Set<String> base, List<String> extra) {
+        if (isEmpty(extra)) {
+            return base;
+        }
+        Set<String> merged = new HashSet<>(base);
+        merged.addAll(extra);
+        return Collections.unmodifiableSet(merged);
+    }
+
+    public User getUser() { return user; }
+    public Long getUserId() { return user.getId(); }
+    public long getVersion() { return version; }
+
+    public Set<String> getPreferredCuisines() { return preferredCuisines; }
+    public Set<String> getPreferredFlavors() { return preferredFlavors; }
+    public Set<String> getPreferredIngredients() { return preferredIngredients; }
+    public Set<String> getAllergies() { return allergies; }
+    public Set<String> getDietaryRestrictions() { return dietaryRestrictions; }
+    public Set<String> getDiseases() { return diseases; }
+
+    public Double getBmi() { return bmi; }
+    public Double getBmr() { return bmr; }
+    public double getMealCalorieTarget() { return mealCalorieTarget; }
+}
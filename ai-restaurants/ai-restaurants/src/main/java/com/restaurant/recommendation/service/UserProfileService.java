@@ -0,0 +1,138 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.User;
+import com.restaurant.recommendation.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户画像缓存
+ * 每个用户的画像只编译一次，用户资料更新或删除时失效；
+ * 画像版本号全局递增，可作为下游缓存的失效依据
+ */
+@Service
+public class UserProfileService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final Map<Long, UserProfile> profiles = new ConcurrentHashMap<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * 获取用户画像，缓存未命中时从数据库加载
+     */
+    @Transactional(readOnly = true)
+    public UserProfile getProfile(Long userId) {
+        UserProfile profile = profiles.get(userId);
+        if (profile != null) {
+            return profile;
+        }
+        // 加载期间若发生失效，加载结果可能已过期，只返回不缓存
+        long seen = invalidations.get();
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("用户不存在"));
+        return compile(user, seen);
+    }
+
+    /**
+     * 批量获取用户画像，未命中的用户一次性加载；不存在的用户不出现在结果中
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, UserProfile> getProfiles(Collection<Long> userIds) {
+        Map<Long, UserProfile> result = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long userId : userIds) {
+            UserProfile profile = profiles.get(userId);
+            if (profile != null) {
+                result.put(userId, profile);
+            } else if (!result.containsKey(userId)) {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long seen = invalidations.get();
+            for (User user : userRepository.findAllById(missing)) {
+                result.put(user.getId(), compile(user, seen));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取用户画像但不写入缓存：已缓存的直接使用，未命中的临时编译；
+     * 供遍历全部用户的批量任务使用，避免缓存随用户总数增长
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, UserProfile> loadProfiles(Collection<Long> userIds) {
+        Map<Long, UserProfile> result = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long userId : userIds) {
+            UserProfile profile = profiles.get(userId);
+            if (profile != null) {
+                result.put(userId, profile);
+            } else if (!result.containsKey(userId)) {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (User user : userRepository.findAllById(missing)) {
+                result.put(user.getId(), build(user));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 先放入缓存再检查加载期间是否发生失效，发生过则按值移除；
+     * 先检查再放入时，检查与放入之间的失效会被放入的旧画像覆盖
+     */
+    private UserProfile compile(User user, long seenInvalidations) {
+        UserProfile profile = build(user);
+        profiles.put(user.getId(), profile);
+        if (invalidations.get() != seenInvalidations) {
+            profiles.remove(user.getId(), profile);
+        }
+        return profile;
+    }
+
+    private UserProfile build(User user) {
+        initializeCollections(user);
+        return UserProfile.of(user, versionSequence.incrementAndGet());
+    }
+
+    /**
+     * 用户资料变更或删除后使画像失效
+     */
+    public void invalidate(Long userId) {
+        invalidations.incrementAndGet();
+        profiles.remove(userId);
+    }
+
+    /**
+     * 画像中的用户实体会脱离持久化上下文，需提前加载延迟集合
+     */
+    private static void initializeCollections(User user) {
+        touch(user.getDiseases());
+        touch(user.getPreferredCuisines());
+        touch(user.getPreferredFlavors());
+        touch(user.getPreferredIngredients());
+        touch(user.getAllergies());
+        touch(user.getDietaryRestrictions());
+    }
+
+    private static void touch(List<String> values) {
+        if (values != null) {
+            values.size();
+        }
+    }
+}
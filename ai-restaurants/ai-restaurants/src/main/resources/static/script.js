@@ -91,30 +91,40 @@ function showSection(sectionId) {
 async function loadStatistics() {
     try {
         const [usersResponse, dishesResponse] = await Promise.all([
-            fetch(`${API_BASE}/users`),
-            fetch(`${API_BASE}/dishes`)
+            fetch(`${API_BASE}/users/count`),
+            fetch(`${API_BASE}/dishes/count`)
         ]);
         
         if (usersResponse.ok && dishesResponse.ok) {
-            const users = await usersResponse.json();
-            const dishes = await dishesResponse.json();
-            
-            document.getElementById('total-users').textContent = users.length;
-            document.getElementById('total-dishes').textContent = dishes.length;
+            document.getElementById('total-users').textContent = await usersResponse.json();
+            document.getElementById('total-dishes').textContent = await dishesResponse.json();
         }
     } catch (error) {
         console.error('加载统计数据失败:', error);
     }
 }
 
+// 按 X-Next-Cursor 响应头依次读取分页列表的全部数据
+async function fetchAllPages(url) {
+    const items = [];
+    let cursor = null;
+    do {
+        const separator = url.includes('?') ? '&' : '?';
+        const response = await fetch(cursor ? `${url}${separator}cursor=${encodeURIComponent(cursor)}` : url);
+        if (!response.ok) {
+            throw new Error(`请求失败: ${response.status}`);
+        }
+        items.push(...await response.json());
+        cursor = response.headers.get('X-Next-Cursor');
+    } while (cursor);
+    return items;
+}
+
 // 加载菜品数据
 async function loadDishes() {
     try {
-        const response = await fetch(`${API_BASE}/dishes`);
-        if (response.ok) {
-            allDishes = await response.json();
-            populateFilters();
-        }
+        allDishes = await fetchAllPages(`${API_BASE}/dishes`);
+        populateFilters();
     } catch (error) {
         console.error('加载菜品数据失败:', error);
         showToast('加载菜品数据失败', 'error');
@@ -0,0 +1,136 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.service.ColumnarFileWriter.Column;
+import com.restaurant.recommendation.service.ColumnarFileWriter.ColumnType;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * ColumnarFileReader：读回 ColumnarFileWriter 写出的空值位图、差值编码、布尔位图和跨行组重置的字符串字典
+ */
+class ColumnarFileReaderTest {
+
+    private static final List<Column> COLUMNS = Arrays.asList(
+            new Column("id", ColumnType.LONG),
+            new Column("servings", ColumnType.INT),
+            new Column("score", ColumnType.DOUBLE),
+            new Column("clicked", ColumnType.BOOLEAN),
+            new Column("created_at", ColumnType.TIMESTAMP),
+            new Column("report_day", ColumnType.DATE),
+            new Column("dish_name", ColumnType.STRING));
+
+    @Test
+    void roundTripsEveryColumnTypeAcrossRowGroups() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        // 整数列有升有降（负差值）且包含极值，各列都有空值，字符串超过字典上限后重置
+        long[] ids = {5, 3, Long.MAX_VALUE, -7, 0, Long.MIN_VALUE, 42, 41, 40, 1_000_000_000_000L, 9};
+        String[] names = {"宫保鸡丁", "清蒸鲈鱼", null, "麻婆豆腐", "清炒时蔬", "宫保鸡丁", "", "鱼香肉丝",
+                "宫保鸡丁", null, "清蒸鲈鱼"};
+        for (int i = 0; i < ids.length; i++) {
+            rows.add(new Object[] {
+                    i == 4 ? null : ids[i],
+                    i % 3 == 0 ? null : i * 7 - 30,
+                    i == 2 ? null : i * 1.25 - 3,
+                    i % 4 == 1 ? null : i % 2 == 0,
+                    i == 6 ? null : LocalDateTime.of(2026, 10, 18, 12, 0).minusMinutes(i * 97L).withNano(i * 1_000_000),
+                    i == 7 ? null : LocalDate.of(2026, 10, 18).minusDays(i * 40L - 100),
+                    names[i]});
+        }
+
+        byte[] file = write(rows, 4, 3);
+
+        try (ColumnarFileReader reader = new ColumnarFileReader(new ByteArrayInputStream(file))) {
+            assertEquals("recommendations", reader.getTable());
+            assertEquals(COLUMNS.size(), reader.getColumns().size());
+            for (int c = 0; c < COLUMNS.size(); c++) {
+                assertEquals(COLUMNS.get(c).getName(), reader.getColumns().get(c).getName());
+                assertEquals(COLUMNS.get(c).getType(), reader.getColumns().get(c).getType());
+            }
+            for (Object[] expected : rows) {
+                assertEquals(true, reader.next());
+                Object[] actual = new Object[COLUMNS.size()];
+                for (int c = 0; c < actual.length; c++) {
+                    actual[c] = reader.get(c);
+                }
+                assertArrayEquals(expected, actual);
+            }
+            assertFalse(reader.next());
+            assertFalse(reader.next());
+            assertEquals(rows.size(), reader.getRowsRead());
+        }
+    }
+
+    @Test
+    void emptyFileHasHeaderOnly() throws Exception {
+        byte[] file = write(new ArrayList<>(), 4, 3);
+
+        try (ColumnarFileReader reader = new ColumnarFileReader(new ByteArrayInputStream(file))) {
+            assertEquals(COLUMNS.size(), reader.getColumns().size());
+            assertFalse(reader.next());
+            assertEquals(0, reader.getRowsRead());
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write("PAR1 not a columnar export".getBytes("UTF-8"));
+        }
+        assertThrows(IOException.class, () -> new ColumnarFileReader(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    /**
+     * 把行写入 H2 内存表，再以结果集交给写入器
+     */
+    private static byte[] write(List<Object[]> rows, int rowGroupSize, int maxDictionarySize)
+            throws SQLException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:columnar_reader_test");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE export_rows (seq INT PRIMARY KEY, id BIGINT, servings INT, "
+                    + "score DOUBLE PRECISION, clicked BOOLEAN, created_at TIMESTAMP, report_day DATE, "
+                    + "dish_name VARCHAR(64))");
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO export_rows VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < rows.size(); i++) {
+                    insert.setInt(1, i);
+                    for (int c = 0; c < COLUMNS.size(); c++) {
+                        insert.setObject(c + 2, rows.get(i)[c]);
+                    }
+                    insert.executeUpdate();
+                }
+            }
+            try (ColumnarFileWriter writer = new ColumnarFileWriter(bytes, "recommendations", COLUMNS,
+                    rowGroupSize, maxDictionarySize);
+                 ResultSet rs = statement.executeQuery("SELECT id, servings, score, clicked, created_at, "
+                         + "report_day, dish_name FROM export_rows ORDER BY seq")) {
+                while (rs.next()) {
+                    writer.addRow(rs);
+                }
+            } finally {
+                statement.execute("DROP TABLE export_rows");
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
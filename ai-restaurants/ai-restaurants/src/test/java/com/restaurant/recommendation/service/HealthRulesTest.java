@@ -0,0 +1,173 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.service.HealthRules.Metric;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * HealthRules：按内置规则表评估得分、状态和建议码，空值处理，以及按语言回退渲染文本
+ */
+class HealthRulesTest {
+
+    private static HealthRules rules;
+
+    @BeforeAll
+    static void loadBuiltinRules() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(
+                HealthRulesTest.class.getResourceAsStream("/health-rules.properties"), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        rules = HealthRules.parse(properties);
+    }
+
+    @Test
+    void balancedIntakeKeepsFullScoreAndDefaultAdvice() {
+        HealthRules.Result result = rules.evaluate(balanced(), Collections.emptyList());
+
+        assertEquals(100, result.getScore());
+        assertEquals("健康", result.getStatus());
+        assertEquals("", result.getWarningCodes());
+        assertEquals("advice.balanced", result.getAdviceCodes());
+    }
+
+    @Test
+    void matchedRulesDeductPenaltiesAndRecordValuesWithThresholds() {
+        double[] vector = balanced();
+        vector[Metric.TOTAL_CALORIES.ordinal()] = 2500;
+        vector[Metric.TOTAL_SODIUM.ordinal()] = 3000;
+
+        HealthRules.Result result = rules.evaluate(vector, null);
+
+        assertEquals(65, result.getScore());
+        assertEquals("需改善", result.getStatus());
+        assertEquals("warning.calories-exceeded:2500:2200;warning.sodium-high:3000:2300", result.getWarningCodes());
+        // 建议码同样带条件参数；sodium-high 只有警告，没有建议
+        assertEquals("advice.calories-exceeded:2500:2200", result.getAdviceCodes());
+    }
+
+    @Test
+    void parametersAreRoundedToOneDecimal() {
+        double[] vector = balanced();
+        vector[Metric.TOTAL_CALORIES.ordinal()] = 2500.04;
+        vector[Metric.RECOMMENDED_CALORIES.ordinal()] = 1999;
+
+        HealthRules.Result result = rules.evaluate(vector, null);
+
+        assertEquals("warning.calories-exceeded:2500:2198.9", result.getWarningCodes());
+    }
+
+    @Test
+    void diseaseRulesApplyOnlyToMatchingDiseasesAndOnlyOnce() {
+        double[] vector = balanced();
+        vector[Metric.TOTAL_SODIUM.ordinal()] = 2000;
+
+        assertEquals(100, rules.evaluate(vector, Collections.singletonList("糖尿病")).getScore());
+
+        HealthRules.Result result = rules.evaluate(vector, Arrays.asList("高血压", "高血压"));
+        assertEquals(75, result.getScore());
+        assertEquals("需改善", result.getStatus());
+        assertEquals("warning.hypertension-sodium:2000:1500", result.getWarningCodes());
+        assertEquals("advice.hypertension", result.getAdviceCodes());
+    }
+
+    @Test
+    void scoreDoesNotDropBelowZero() {
+        double[] vector = balanced();
+        vector[Metric.TOTAL_CALORIES.ordinal()] = 2500;
+        vector[Metric.TOTAL_PROTEIN.ordinal()] = 10;
+        vector[Metric.TOTAL_SODIUM.ordinal()] = 3000;
+        vector[Metric.TOTAL_CARBOHYDRATE.ordinal()] = 400;
+        vector[Metric.NUTRITION_BALANCE.ordinal()] = 10;
+
+        HealthRules.Result result = rules.evaluate(vector, Arrays.asList("糖尿病", "高血压"));
+
+        assertEquals(0, result.getScore());
+        assertEquals("不健康", result.getStatus());
+    }
+
+    @Test
+    void missingValuesNeverMatchACondition() {
+        double[] vector = new double[HealthRules.DIMENSIONS];
+        Arrays.fill(vector, Double.NaN);
+
+        HealthRules.Result result = rules.evaluate(vector, Collections.singletonList("高血压"));
+
+        // 只有不带条件的疾病建议命中
+        assertEquals(100, result.getScore());
+        assertEquals("", result.getWarningCodes());
+        assertEquals("advice.hypertension", result.getAdviceCodes());
+
+        double[] partial = balanced();
+        partial[Metric.RECOMMENDED_CALORIES.ordinal()] = Double.NaN;
+        partial[Metric.TOTAL_CALORIES.ordinal()] = 5000;
+        assertEquals(100, rules.evaluate(partial, null).getScore());
+    }
+
+    @Test
+    void renderFallsBackFromRegionToLanguageToDefault() {
+        String codes = "warning.sodium-high:3000:2300";
+        String english = "Sodium intake too high (3000 mg, limit 2300 mg); reduce salt.";
+        String chinese = "钠摄入过高（3000毫克，上限2300毫克），建议减少盐分摄入；";
+
+        assertEquals(english, rules.render(codes, "en"));
+        assertEquals(english, rules.render(codes, "en_US"));
+        assertEquals(english, rules.render(codes, "en-GB"));
+        assertEquals(chinese, rules.render(codes, "fr"));
+        assertEquals(chinese, rules.render(codes, null));
+        assertEquals(Collections.singletonList("en"), rules.locales());
+    }
+
+    @Test
+    void renderJoinsCodesAndKeepsUnknownKeys() {
+        assertEquals("Sodium intake too high (3000 mg, limit 2300 mg); reduce salt. "
+                        + "Unbalanced macronutrients (balance 22.8, below 70); adjust your diet.",
+                rules.render("warning.sodium-high:3000:2300;warning.unbalanced:22.8:70", "en"));
+        assertEquals("advice.removed", rules.render("advice.removed:1:2", "en"));
+        assertEquals("", rules.render("", "en"));
+    }
+
+    @Test
+    void parseRejectsUnknownMetrics() {
+        Properties properties = new Properties();
+        properties.setProperty("message.warning.x", "x");
+        properties.setProperty("rules", "x");
+        properties.setProperty("rule.x.when", "totalSugar > 10");
+        properties.setProperty("rule.x.warning", "warning.x");
+
+        assertThrows(RuntimeException.class, () -> HealthRules.parse(properties));
+    }
+
+    /**
+     * 各项规则均不命中的营养向量
+     */
+    private static double[] balanced() {
+        double[] vector = new double[HealthRules.DIMENSIONS];
+        vector[Metric.TOTAL_CALORIES.ordinal()] = 2000;
+        vector[Metric.TOTAL_PROTEIN.ordinal()] = 80;
+        vector[Metric.TOTAL_FAT.ordinal()] = 60;
+        vector[Metric.TOTAL_CARBOHYDRATE.ordinal()] = 250;
+        vector[Metric.TOTAL_FIBER.ordinal()] = 25;
+        vector[Metric.TOTAL_SODIUM.ordinal()] = 1000;
+        vector[Metric.TOTAL_CHOLESTEROL.ordinal()] = 200;
+        vector[Metric.RECOMMENDED_CALORIES.ordinal()] = 2000;
+        vector[Metric.RECOMMENDED_PROTEIN.ordinal()] = 75;
+        vector[Metric.RECOMMENDED_FAT.ordinal()] = 67;
+        vector[Metric.RECOMMENDED_CARBOHYDRATE.ordinal()] = 275;
+        vector[Metric.PROTEIN_PERCENTAGE.ordinal()] = 16;
+        vector[Metric.FAT_PERCENTAGE.ordinal()] = 27;
+        vector[Metric.CARBOHYDRATE_PERCENTAGE.ordinal()] = 50;
+        vector[Metric.NUTRITION_BALANCE.ordinal()] = 90;
+        return vector;
+    }
+}
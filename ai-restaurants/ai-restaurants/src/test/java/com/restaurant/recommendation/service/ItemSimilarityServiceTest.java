@@ -0,0 +1,81 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.repository.RecommendationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ItemSimilarityService：启动加载期间到达的反馈不丢失，快照已包含的反馈重复通知时不重复计数
+ */
+class ItemSimilarityServiceTest {
+
+    private RecommendationRepository repository;
+    private ItemSimilarityService service;
+
+    @BeforeEach
+    void createService() {
+        repository = mock(RecommendationRepository.class);
+        service = new ItemSimilarityService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "minRating", 4);
+        ReflectionTestUtils.setField(service, "recommendationRepository", repository);
+    }
+
+    @Test
+    void feedbackDuringBootstrapIsReplayedOnce() {
+        // 推荐记录1、2在快照中；记录3在查询之后提交，记录2在查询之前提交但通知晚到
+        when(repository.findPositiveFeedbackPairs(anyInt())).thenAnswer(invocation -> {
+            service.onFeedback(3L, 1L, 30L, true);
+            service.onFeedback(2L, 2L, 10L, true);
+            return rows(new long[] {1, 1, 10}, new long[] {2, 2, 10});
+        });
+
+        service.bootstrap();
+
+        assertEquals(3, service.getStats().get("positiveRecommendations"));
+        assertEquals(2, service.getStats().get("items"));
+        // 用户1喜欢10和30，用户2只喜欢10：sim(10,30) = 1 / sqrt(2 * 1)
+        assertEquals(1 / Math.sqrt(2), service.affinity(2L).get(30L), 1e-9);
+
+        // 加载完成后才到达的重复通知
+        service.onFeedback(1L, 1L, 10L, true);
+        assertEquals(1 / Math.sqrt(2), service.affinity(2L).get(30L), 1e-9);
+    }
+
+    @Test
+    void removalDuringBootstrapWinsOverTheSnapshot() {
+        when(repository.findPositiveFeedbackPairs(anyInt())).thenAnswer(invocation -> {
+            List<Object[]> snapshot = rows(new long[] {1, 1, 10}, new long[] {2, 1, 30});
+            service.onFeedback(2L, 1L, 30L, false);
+            return snapshot;
+        });
+
+        service.bootstrap();
+
+        assertEquals(1, service.getStats().get("positiveRecommendations"));
+        assertEquals(0L, service.getStats().get("pairs"));
+
+        service.onFeedback(1L, 1L, 10L, false);
+        service.onFeedback(1L, 1L, 10L, false);
+        assertNull(service.affinity(1L));
+        assertEquals(0, service.getStats().get("items"));
+    }
+
+    private static List<Object[]> rows(long[]... rows) {
+        List<Object[]> result = new ArrayList<>();
+        for (long[] row : rows) {
+            result.add(Arrays.stream(row).boxed().toArray());
+        }
+        return result;
+    }
+}
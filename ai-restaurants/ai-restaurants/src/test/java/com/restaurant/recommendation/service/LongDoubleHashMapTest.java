@@ -0,0 +1,48 @@
+package com.restaurant.recommendation.service;
+
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * LongDoubleHashMap：累加、默认值、扩容和整体缩放
+ */
+class LongDoubleHashMapTest {
+
+    @Test
+    void accumulatesAndReturnsDefaultsForMissingKeys() {
+        LongDoubleHashMap map = new LongDoubleHashMap(4);
+        map.addTo(3, 1.5);
+        map.addTo(3, 2.0);
+        map.addTo(9, -1.0);
+
+        assertEquals(3.5, map.get(3));
+        assertEquals(-1.0, map.get(9));
+        assertEquals(0.0, map.get(4));
+        assertEquals(Double.NaN, map.getOrDefault(4, Double.NaN));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void rehashAndScaleKeepAllEntries() {
+        Random random = new Random(7);
+        LongDoubleHashMap map = new LongDoubleHashMap(1);
+        Map<Long, Double> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            long key = 1 + random.nextInt(2000);
+            double delta = random.nextDouble();
+            map.addTo(key, delta);
+            expected.merge(key, delta, Double::sum);
+        }
+        assertEquals(expected.size(), map.size());
+
+        map.scale(0.5);
+        for (Map.Entry<Long, Double> entry : expected.entrySet()) {
+            assertEquals(entry.getValue() * 0.5, map.get(entry.getKey()), 1e-9);
+        }
+        assertEquals(0.0, map.get(2001));
+    }
+}
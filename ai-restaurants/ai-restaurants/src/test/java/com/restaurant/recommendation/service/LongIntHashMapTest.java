@@ -0,0 +1,148 @@
+package com.restaurant.recommendation.service;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * LongIntHashMap：删除时探测链的回移、扩容后的查找，以及与 HashMap 的随机对照
+ */
+class LongIntHashMapTest {
+
+    // 初始容量为 16 的表（expectedSize 8），插入第 9 个键时扩容
+    private static final int MASK = 15;
+
+    @Test
+    void removeKeepsLaterKeysOnTheSameProbeChainReachable() {
+        List<Long> keys = keysWithHome(3, 4);
+        LongIntHashMap map = new LongIntHashMap(8);
+        for (int i = 0; i < keys.size(); i++) {
+            map.addTo(keys.get(i), i + 1);
+        }
+
+        // 删除链首，后续三个键须前移
+        assertEquals(0, map.addTo(keys.get(0), -1));
+        assertEquals(3, map.size());
+        assertEquals(0, map.get(keys.get(0)));
+        for (int i = 1; i < keys.size(); i++) {
+            assertEquals(i + 1, map.get(keys.get(i)));
+        }
+
+        // 删除链中间的键
+        assertEquals(0, map.addTo(keys.get(2), -3));
+        assertEquals(2, map.get(keys.get(1)));
+        assertEquals(4, map.get(keys.get(3)));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void removeShiftsAcrossTheEndOfTheTable() {
+        // 三个键落在最后一个槽位，探测链绕回表头；另一个键的原始槽位是 0，被挤到槽位 2
+        List<Long> wrapping = keysWithHome(MASK, 3);
+        long homeZero = keysWithHome(0, 1).get(0);
+        LongIntHashMap map = new LongIntHashMap(8);
+        for (long key : wrapping) {
+            map.addTo(key, 1);
+        }
+        map.addTo(homeZero, 7);
+
+        map.addTo(wrapping.get(0), -1);
+        assertEquals(1, map.get(wrapping.get(1)));
+        assertEquals(1, map.get(wrapping.get(2)));
+        assertEquals(7, map.get(homeZero));
+        assertEquals(3, map.size());
+
+        // 继续删除，剩下的键前移回自己的原始槽位后仍可查到
+        map.addTo(wrapping.get(1), -1);
+        map.addTo(wrapping.get(2), -1);
+        assertEquals(7, map.get(homeZero));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void rehashKeepsAllEntries() {
+        LongIntHashMap map = new LongIntHashMap(2);
+        for (long key = 1; key <= 1000; key++) {
+            map.addTo(key, (int) key);
+        }
+        assertEquals(1000, map.size());
+        for (long key = 1; key <= 1000; key++) {
+            assertEquals((int) key, map.get(key));
+        }
+        assertEquals(0, map.get(1001));
+
+        long[] sum = new long[2];
+        map.forEach((key, value) -> {
+            sum[0] += key;
+            sum[1] += value;
+        });
+        assertEquals(500500, sum[0]);
+        assertEquals(500500, sum[1]);
+
+        for (long key = 1; key <= 1000; key += 2) {
+            map.addTo(key, (int) -key);
+        }
+        assertEquals(500, map.size());
+        for (long key = 1; key <= 1000; key++) {
+            assertEquals(key % 2 == 0 ? (int) key : 0, map.get(key));
+        }
+    }
+
+    @Test
+    void addingZeroToAMissingKeyDoesNotInsert() {
+        LongIntHashMap map = new LongIntHashMap();
+        assertEquals(0, map.addTo(5, 0));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void matchesHashMapUnderRandomAddsAndRemoves() {
+        Random random = new Random(42);
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int op = 0; op < 50_000; op++) {
+            // 键的范围小，计数频繁归零，反复触发删除和重新插入
+            long key = 1 + random.nextInt(64);
+            int delta = random.nextInt(7) - 3;
+            int value = expected.getOrDefault(key, 0) + delta;
+            if (value == 0) {
+                expected.remove(key);
+            } else {
+                expected.put(key, value);
+            }
+            assertEquals(value, map.addTo(key, delta));
+
+            if (op % 1000 == 0) {
+                assertEquals(expected.size(), map.size());
+                for (long k = 1; k <= 64; k++) {
+                    assertEquals((int) expected.getOrDefault(k, 0), map.get(k), "key " + k);
+                }
+            }
+        }
+        Map<Long, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(0, map.get(1));
+    }
+
+    /**
+     * 在容量 16 的表中原始槽位为 home 的前 count 个正整数键
+     */
+    private static List<Long> keysWithHome(int home, int count) {
+        List<Long> keys = new ArrayList<>(count);
+        for (long key = 1; keys.size() < count; key++) {
+            if ((LongIntHashMap.hash(key) & MASK) == home) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
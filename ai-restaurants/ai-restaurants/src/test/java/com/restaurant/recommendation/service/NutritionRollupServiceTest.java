@@ -0,0 +1,111 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.entity.NutritionRollup;
+import org.junit.jupiter.api.Test;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * NutritionRollupService.decompose：日期范围按整月、整周和零散日期拆分，月、周边界处的取舍
+ */
+class NutritionRollupServiceTest {
+
+    @Test
+    void wholeMonthUsesTheMonthRollup() {
+        NutritionRollupService.Periods periods = decompose("2026-09-01", "2026-09-30");
+
+        assertEquals(days("2026-09-01"), periods.months);
+        assertEquals(Collections.emptyList(), periods.weeks);
+        assertEquals(Collections.emptyList(), periods.rawDays);
+    }
+
+    @Test
+    void daysBeforeTheFirstMondayAreRead() {
+        // 2026-10-14 是周三，10-19 是周一
+        NutritionRollupService.Periods periods = decompose("2026-10-14", "2026-10-25");
+
+        assertEquals(Collections.emptyList(), periods.months);
+        assertEquals(days("2026-10-19"), periods.weeks);
+        assertEquals(days("2026-10-14", "2026-10-15", "2026-10-16", "2026-10-17", "2026-10-18"), periods.rawDays);
+    }
+
+    @Test
+    void weekCrossingIntoACompleteMonthIsReadDayByDay() {
+        // 2026-09-28 所在周跨到10月，整周汇总会挡住10月的月汇总
+        NutritionRollupService.Periods periods = decompose("2026-09-28", "2026-10-31");
+
+        assertEquals(days("2026-10-01"), periods.months);
+        assertEquals(Collections.emptyList(), periods.weeks);
+        assertEquals(days("2026-09-28", "2026-09-29", "2026-09-30"), periods.rawDays);
+    }
+
+    @Test
+    void weekCrossingIntoAnIncompleteMonthKeepsTheWeekRollup() {
+        NutritionRollupService.Periods periods = decompose("2026-09-28", "2026-10-30");
+
+        assertEquals(Collections.emptyList(), periods.months);
+        assertEquals(days("2026-09-28", "2026-10-05", "2026-10-12", "2026-10-19"), periods.weeks);
+        assertEquals(days("2026-10-26", "2026-10-27", "2026-10-28", "2026-10-29", "2026-10-30"), periods.rawDays);
+    }
+
+    @Test
+    void singleDayAndReversedRange() {
+        NutritionRollupService.Periods periods = decompose("2026-10-19", "2026-10-19");
+        assertEquals(days("2026-10-19"), periods.rawDays);
+        assertTrue(periods.months.isEmpty() && periods.weeks.isEmpty());
+
+        assertThrows(RuntimeException.class, () -> decompose("2026-10-19", "2026-10-18"));
+    }
+
+    @Test
+    void randomRangesAreCoveredExactlyOnceByWholePeriods() {
+        Random random = new Random(11);
+        LocalDate origin = LocalDate.of(2025, 12, 1);
+        for (int i = 0; i < 2000; i++) {
+            LocalDate start = origin.plusDays(random.nextInt(500));
+            LocalDate end = start.plusDays(random.nextInt(200));
+            NutritionRollupService.Periods periods = NutritionRollupService.decompose(start, end);
+
+            Set<LocalDate> covered = new HashSet<>();
+            for (LocalDate month : periods.months) {
+                assertEquals(1, month.getDayOfMonth());
+                cover(covered, month, NutritionRollup.periodEnd(NutritionRollup.MONTH, month));
+            }
+            for (LocalDate week : periods.weeks) {
+                assertEquals(DayOfWeek.MONDAY, week.getDayOfWeek());
+                cover(covered, week, NutritionRollup.periodEnd(NutritionRollup.WEEK, week));
+            }
+            for (LocalDate day : periods.rawDays) {
+                cover(covered, day, day);
+            }
+            assertEquals(end.toEpochDay() - start.toEpochDay() + 1, covered.size(), start + ".." + end);
+            for (LocalDate day : covered) {
+                assertTrue(!day.isBefore(start) && !day.isAfter(end), start + ".." + end + " " + day);
+            }
+        }
+    }
+
+    private static void cover(Set<LocalDate> covered, LocalDate from, LocalDate to) {
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            assertTrue(covered.add(day), "重复覆盖 " + day);
+        }
+    }
+
+    private static NutritionRollupService.Periods decompose(String start, String end) {
+        return NutritionRollupService.decompose(LocalDate.parse(start), LocalDate.parse(end));
+    }
+
+    private static List<LocalDate> days(String... days) {
+        return Arrays.asList(Arrays.stream(days).map(LocalDate::parse).toArray(LocalDate[]::new));
+    }
+}
@@ -0,0 +1,131 @@
+package com.restaurant.recommendation.service;
+
+import com.restaurant.recommendation.dto.RecommendationRequest;
+import com.restaurant.recommendation.entity.Dish;
+import com.restaurant.recommendation.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * RecommendationCache：菜品新增或修改后只在可能改变前K名时失效
+ */
+class RecommendationCacheTest {
+
+    private RecommendationCache cache;
+    private UserProfile profile;
+    private RecommendationRequest request;
+    // 菜品ID -> 得分，NaN 表示未通过过滤
+    private final Map<Long, Double> scores = new HashMap<>();
+    private DishCatalog catalog;
+
+    @BeforeEach
+    void createCache() {
+        cache = new RecommendationCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxWeight", 1000L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        User user = new User("u1", "u1@example.com");
+        user.setId(1L);
+        profile = UserProfile.of(user, 1);
+        request = new RecommendationRequest();
+        request.setCount(2);
+
+        List<Dish> dishes = new ArrayList<>();
+        for (long id = 1; id <= 4; id++) {
+            dishes.add(dish(id));
+            scores.put(id, (double) id);
+        }
+        catalog = DishCatalog.of(1, dishes);
+        // 前2名为菜品4、3，末位得分3
+        cache.put(profile, request, catalog, "w", scorer(), indexes(4, 3));
+    }
+
+    @Test
+    void upsertBelowTheCutoffKeepsTheEntry() {
+        upsert(5, 2.5);
+        upsert(2, 2.9);
+        upsert(6, Double.NaN);
+        upsert(1, 100.0);
+        catalog = catalog.withoutDish(1L);
+
+        assertArrayEquals(indexes(4, 3), cache.get(profile, request, catalog, "w", scorer()));
+    }
+
+    @Test
+    void upsertReachingTheCutoffInvalidates() {
+        upsert(5, 3.0);
+
+        assertNull(cache.get(profile, request, catalog, "w", scorer()));
+    }
+
+    @Test
+    void changingACachedDishInvalidates() {
+        upsert(3, 3.5);
+
+        assertNull(cache.get(profile, request, catalog, "w", scorer()));
+    }
+
+    @Test
+    void anyAcceptedDishInvalidatesAShortResult() {
+        request.setCount(10);
+        cache.put(profile, request, catalog, "w", scorer(), indexes(4, 3, 2, 1));
+        upsert(5, Double.NaN);
+        assertNotNull(cache.get(profile, request, catalog, "w", scorer()));
+
+        upsert(6, -50.0);
+        assertNull(cache.get(profile, request, catalog, "w", scorer()));
+    }
+
+    @Test
+    void entryOlderThanTheUpsertLogInvalidates() {
+        for (int i = 0; i < 64; i++) {
+            upsert(1, 0.0);
+        }
+        assertNotNull(cache.get(profile, request, catalog, "w", scorer()));
+
+        // 上一次命中已确认到当前版本，再修改64次后日志仍能覆盖
+        for (int i = 0; i < 64; i++) {
+            upsert(2, 0.0);
+        }
+        assertNotNull(cache.get(profile, request, catalog, "w", scorer()));
+
+        for (int i = 0; i < 65; i++) {
+            upsert(2, 0.0);
+        }
+        assertNull(cache.get(profile, request, catalog, "w", scorer()));
+    }
+
+    private void upsert(long id, double score) {
+        scores.put(id, score);
+        catalog = catalog.withDish(dish(id));
+    }
+
+    private IntToDoubleFunction scorer() {
+        DishCatalog current = catalog;
+        return index -> scores.get(current.id(index));
+    }
+
+    private int[] indexes(long... ids) {
+        int[] result = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = catalog.indexOf(ids[i]);
+        }
+        return result;
+    }
+
+    private static Dish dish(long id) {
+        Dish dish = new Dish("菜品" + id, "川菜", "辣");
+        dish.setId(id);
+        return dish;
+    }
+}
@@ -0,0 +1,85 @@
+package com.restaurant.recommendation.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ScoringEngine：顺序与并行路径的前K名与全量排序一致，K 超过候选数时返回全部候选且堆只按候选数分配
+ */
+class ScoringEngineTest {
+
+    private ScoringEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new ScoringEngine(2);
+        ReflectionTestUtils.setField(engine, "parallelThreshold", 64);
+        ReflectionTestUtils.setField(engine, "partitionSize", 16);
+        ReflectionTestUtils.setField(engine, "batchChunkSize", 2);
+    }
+
+    @AfterEach
+    void shutdown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void topKMatchesFullSortOnBothPaths() {
+        IntToDoubleFunction scorer = candidate -> (candidate * 37) % 11;
+        for (int size : new int[] {10, 1000}) {
+            int[] candidates = IntStream.range(0, size).map(i -> size - i).toArray();
+            int[] sorted = fullSort(candidates, scorer);
+            assertArrayEquals(Arrays.copyOf(sorted, 5), engine.selectTopK(candidates, 5, scorer));
+            assertArrayEquals(sorted, engine.selectTopK(candidates, size, scorer));
+        }
+    }
+
+    @Test
+    void hugeCountReturnsEveryCandidateWithoutSizingHeapsByCount() {
+        // 按 K 分配堆时，Integer.MAX_VALUE 个元素的数组会直接抛出 OutOfMemoryError
+        IntToDoubleFunction scorer = candidate -> candidate % 7;
+        for (int size : new int[] {10, 1000}) {
+            int[] candidates = IntStream.range(0, size).toArray();
+            int[] result = engine.selectTopK(candidates, Integer.MAX_VALUE, scorer);
+            assertEquals(size, result.length);
+            assertArrayEquals(fullSort(candidates, scorer), result);
+        }
+    }
+
+    @Test
+    void batchLimitsAreCappedAtCatalogSize() {
+        int catalogSize = 300;
+        int[] limits = {Integer.MAX_VALUE, 3, 0, -1, Integer.MAX_VALUE};
+        // 每隔5道菜品过滤一道
+        int[][] results = engine.selectTopKBatch(catalogSize, limits,
+                (user, dish) -> dish % 5 == 0 ? Double.NaN : (dish * (user + 3)) % 13);
+
+        assertEquals(240, results[0].length);
+        assertEquals(3, results[1].length);
+        assertEquals(0, results[2].length);
+        assertEquals(0, results[3].length);
+        assertEquals(240, results[4].length);
+        assertArrayEquals(Arrays.copyOf(results[0], 3),
+                engine.selectTopKBatch(catalogSize, new int[] {3},
+                        (user, dish) -> dish % 5 == 0 ? Double.NaN : (dish * 3) % 13)[0]);
+    }
+
+    /**
+     * 得分降序、同分时保持候选原有顺序的全量排序结果
+     */
+    private static int[] fullSort(int[] candidates, IntToDoubleFunction scorer) {
+        Integer[] positions = IntStream.range(0, candidates.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(positions, Comparator.<Integer>comparingDouble(p -> -scorer.applyAsDouble(candidates[p]))
+                .thenComparingInt(p -> p));
+        return Arrays.stream(positions).mapToInt(p -> candidates[p]).toArray();
+    }
+}